@@ -45,6 +45,7 @@
 	  <xsl:apply-templates select="frame"/>
 	</td>
       </tr>
+      <xsl:apply-templates select="summary"/>
       <tr>
 	<td bgcolor="EECF00">
 	  <nobr>
@@ -58,6 +59,24 @@
   </td>
 </xsl:template>
 
+<xsl:template match="summary">
+  <tr>
+    <td bgcolor="EECF00">
+      <nobr>
+	SUMMARY
+	scc=<xsl:value-of select="@scc"/>
+	pure=<xsl:value-of select="@pure"/>
+	<xsl:if test="@effects!=''">
+	  effects=<xsl:value-of select="@effects"/>
+	</xsl:if>
+	<xsl:if test="../callee">
+	  calls=<xsl:for-each select="../callee"><font style="font-family:courier new"><xsl:value-of select="@label"/></font><xsl:text> </xsl:text></xsl:for-each>
+	</xsl:if>
+      </nobr>
+    </td>
+  </tr>
+</xsl:template>
+
 <xsl:template match="stmt">
   <tr>
     <xsl:apply-templates select="imc"/>
@@ -136,8 +136,17 @@
 	      label:<font style="font-family:courier new"><xsl:value-of select="@label"/></font>
 	      depth:<xsl:value-of select="@depth"/> 
 	      size:<xsl:value-of select="@size"/> 
+	      <xsl:if test="@origsize!=''">
+		(was <xsl:value-of select="@origsize"/>)
+	      </xsl:if>
 	      locs:<xsl:value-of select="@locssize"/>
+	      <xsl:if test="@origlocssize!=''">
+		(was <xsl:value-of select="@origlocssize"/>)
+	      </xsl:if>
 	      args:<xsl:value-of select="@argssize"/>
+	      <xsl:if test="@conv!=''">
+		conv:<xsl:value-of select="@conv"/>
+	      </xsl:if>
 	    </nobr>
 	  </td>
 	</tr>
@@ -168,6 +177,9 @@
 	      <xsl:if test="@depth!=''">
 		depth:<xsl:value-of select="@depth"/>
 	      </xsl:if>
+	      <xsl:if test="@temp!=''">
+		temp:T<xsl:value-of select="@temp"/>
+	      </xsl:if>
 	    </nobr>
 	  </td>
 	</tr>
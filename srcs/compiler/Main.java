@@ -48,6 +48,13 @@ public class Main {
 
 			// Scan the command line.
 			for (int argc = 0; argc < args.length; argc++) {
+				if (args[argc].matches("-O[0-2]")) {
+					// Optimization level.
+					if (cmdLine.get("-O") == null) {
+						cmdLine.put("-O", args[argc].substring(2));
+						continue;
+					}
+				}
 				if (args[argc].startsWith("--")) {
 					// Command-line switch.
 					if (args[argc].matches("--target-phase=(" + phases + "|all)")) {
@@ -74,6 +81,106 @@ public class Main {
 							continue;
 						}
 					}
+					if (args[argc].matches("--pack-frames")) {
+						cmdLine.put("--pack-frames", "true");
+						continue;
+					}
+					if (args[argc].matches("--dead-elim")) {
+						cmdLine.put("--dead-elim", "true");
+						continue;
+					}
+					if (args[argc].matches("--specialize")) {
+						cmdLine.put("--specialize", "true");
+						continue;
+					}
+					if (args[argc].matches("--ctfe")) {
+						cmdLine.put("--ctfe", "true");
+						continue;
+					}
+					if (args[argc].matches("--load-elim")) {
+						cmdLine.put("--load-elim", "true");
+						continue;
+					}
+					if (args[argc].matches("--hash-cons")) {
+						cmdLine.put("--hash-cons", "true");
+						continue;
+					}
+					if (args[argc].matches("--commute")) {
+						cmdLine.put("--commute", "true");
+						continue;
+					}
+					if (args[argc].matches("--fuse")) {
+						cmdLine.put("--fuse", "true");
+						continue;
+					}
+					if (args[argc].matches("--memoize")) {
+						cmdLine.put("--memoize", "true");
+						continue;
+					}
+					if (args[argc].matches("--stack-alloc")) {
+						cmdLine.put("--stack-alloc", "true");
+						continue;
+					}
+					if (args[argc].matches("--unroll=[0-9]+")) {
+						if (cmdLine.get("--unroll") == null) {
+							cmdLine.put("--unroll", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
+					if (args[argc].matches("--profile-gen=.+")) {
+						if (cmdLine.get("--profile-gen") == null) {
+							cmdLine.put("--profile-gen", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
+					if (args[argc].matches("--profile-use=.+")) {
+						if (cmdLine.get("--profile-use") == null) {
+							cmdLine.put("--profile-use", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
+					if (args[argc].matches("--passes=.+")) {
+						if (cmdLine.get("--passes") == null) {
+							cmdLine.put("--passes", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
+					if (args[argc].matches("--pass-stats")) {
+						cmdLine.put("--pass-stats", "true");
+						continue;
+					}
+					if (args[argc].matches("--packed-tokens")) {
+						cmdLine.put("--packed-tokens", "true");
+						continue;
+					}
+					if (args[argc].matches("--max-errors=[0-9]+")) {
+						if (cmdLine.get("--max-errors") == null) {
+							cmdLine.put("--max-errors", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
+					if (args[argc].matches("--pipeline")) {
+						cmdLine.put("--pipeline", "true");
+						continue;
+					}
+					if (args[argc].matches("--watch")) {
+						cmdLine.put("--watch", "true");
+						continue;
+					}
+					if (args[argc].matches("--der-tree")) {
+						cmdLine.put("--der-tree", "true");
+						continue;
+					}
+					if (args[argc].matches("--debug")) {
+						cmdLine.put("--debug", "true");
+						continue;
+					}
+					if (args[argc].matches("--reg-args=[0-9]+")) {
+						if (cmdLine.get("--reg-args") == null) {
+							cmdLine.put("--reg-args", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
 					Report.warning("Command line argument '" + args[argc] + "' ignored.");
 				} else {
 					// Source file name.
@@ -93,6 +200,14 @@ public class Main {
 			if (cmdLine.get("--target-phase") == null) {
 				cmdLine.put("--target-phase", phases.replaceFirst("^.*\\|", ""));
 			}
+			if ("1".equals(cmdLine.get("-O")) || "2".equals(cmdLine.get("-O"))) {
+				cmdLine.putIfAbsent("--commute", "true");
+			}
+			if ("2".equals(cmdLine.get("-O"))) {
+				cmdLine.putIfAbsent("--hash-cons", "true");
+				cmdLine.putIfAbsent("--dead-elim", "true");
+				cmdLine.putIfAbsent("--unroll", "4");
+			}
 
 			// Compile, phase by phase.
 			do {
@@ -101,23 +216,37 @@ public class Main {
 				// Lexical analysis.
 				if (cmdLine.get("--target-phase").equals("lexan")) {
 					try (LexAn lexan = new LexAn()) {
-						while (lexan.lexer().token != compiler.data.symbol.Symbol.Term.EOF)
-							;
+						if (cmdLine.get("--packed-tokens") != null) {
+							while (lexan.tokens().kind(lexan.scan()) != compiler.data.symbol.Symbol.Term.EOF)
+								;
+						} else {
+							while (lexan.lexer().token != compiler.data.symbol.Symbol.Term.EOF)
+								;
+						}
 					}
 					break;
 				}
 
 				// Syntax analysis.
+				if (cmdLine.get("--watch") != null) {
+					// The source file is reparsed incrementally after each change.
+					Reparser.watch(cmdLine.get("--src-file-name"));
+					break;
+				}
 				try (SynAn synan = new SynAn()) {
 					synan.parser();
-					SynAn.derTree.accept(new DerLogger(synan.logger), null);
+					if (SynAn.derTree != null)
+						SynAn.derTree.accept(new DerLogger(synan.logger), null);
 				}
 				if (cmdLine.get("--target-phase").equals("synan"))
 					break;
 
 				// Abstract syntax.
 				try (Abstr abstr = new Abstr()) {
-					Abstr.absTree = SynAn.derTree.accept(new AbsTreeConstructor(), null);
+					if (SynAn.derTree != null)
+						Abstr.absTree = SynAn.derTree.accept(new AbsTreeConstructor(), null);
+					else
+						Abstr.absTree = SynAn.absTree;
 					AbsLogger logger = new AbsLogger(abstr.logger);
 					Abstr.absTree.accept(logger, null);
 				}
@@ -147,6 +276,8 @@ public class Main {
 					Abstr.absTree.accept(new FrmEvaluator(), null);
 					Frames.frames.lock();
 					Frames.accesses.lock();
+					Frames.stackAllocs.lock();
+					Frames.stackDels.lock();
 
 					AbsLogger logger = new AbsLogger(frames.logger);
 					logger.addSubvisitor(new SemLogger(frames.logger));
@@ -171,12 +302,80 @@ public class Main {
 				
 				// Chunks.
 				try (Chunks chunks = new Chunks()) {
-					Abstr.absTree.accept(new ChunkGenerator(), null);
+					Chunks.callGraph = new CallGraph(Abstr.absTree);
+					Set<compiler.data.layout.Label> liveLabels = null;
+					if (cmdLine.get("--dead-elim") != null) {
+						for (compiler.data.layout.Label label : Chunks.callGraph.funLabels()) {
+							if (label.name.equals("_main"))
+								liveLabels = Chunks.callGraph.reachable(label);
+						}
+					}
+					Abstr.absTree.accept(new ChunkGenerator(liveLabels), null);
+					if ((cmdLine.get("--hash-cons") != null) && (cmdLine.get("--pass-stats") != null)) {
+						int numRequests = 0;
+						int numNodes = 0;
+						for (compiler.data.imcode.ImcFactory factory : ImcGen.factories.values()) {
+							numRequests += factory.numRequests();
+							numNodes += factory.numNodes();
+						}
+						Report.info(String.format("Hash-consing: %d pure expression nodes for %d requested.", numNodes,
+								numRequests));
+					}
+					// The factories are needed only until the chunks are generated.
+					ImcGen.factories.clear();
+					String pipeline = cmdLine.get("--passes");
+					if ((pipeline == null) && "1".equals(cmdLine.get("-O")))
+						pipeline = PassManager.O1;
+					if ((pipeline == null) && "2".equals(cmdLine.get("-O")))
+						pipeline = PassManager.O2;
+					if (pipeline == null) {
+						pipeline = "";
+						for (String pass : new String[] { "specialize", "ctfe", "load-elim" }) {
+							if (cmdLine.get("--" + pass) != null)
+								pipeline += (pipeline.isEmpty() ? "" : ",") + pass;
+						}
+					}
+					PassManager passManager = new PassManager(Chunks.callGraph, cmdLine.get("--debug") != null);
+					if (cmdLine.get("--debug") != null)
+						new IrValidator("chunks").validate();
+					passManager.run(pipeline);
+					if (cmdLine.get("--pass-stats") != null)
+						passManager.report();
 					chunks.log();
+					if (cmdLine.get("--fuse") != null) {
+						PeepholeFuser fuser = new PeepholeFuser();
+						fuser.fuse();
+						if (cmdLine.get("--pass-stats") != null)
+							Report.info(String.format("Fused %d copies, %d computations, %d loads and %d compare-and-jumps.",
+									fuser.numCopies(), fuser.numComputes(), fuser.numLoads(), fuser.numCmpJumps()));
+					}
 
 					 Interpreter interpreter = new Interpreter(Chunks.dataChunks,
 					 Chunks.codeChunks);
+					 boolean memoize = cmdLine.get("--memoize") != null;
+					 for (compiler.data.layout.Label label : Chunks.callGraph.funLabels()) {
+						 if (memoize && Chunks.callGraph.isMemoizable(label))
+							 interpreter.memoize(label);
+					 }
+					 Profile profile = null;
+					 if (cmdLine.get("--profile-gen") != null) {
+						 profile = new Profile();
+						 HashMap<compiler.data.layout.Label, String> funs = new HashMap<compiler.data.layout.Label, String>();
+						 for (compiler.data.chunk.CodeChunk codeChunk : Chunks.codeChunks)
+							 funs.put(codeChunk.frame.label, Profile.funName(Chunks.callGraph.funDef(codeChunk.frame.label)));
+						 interpreter.profile(profile, funs, ImcGen.labelPoints);
+					 }
 					 System.out.println("EXIT CODE: " + interpreter.run("_main"));
+					 if (profile != null)
+						 profile.write(cmdLine.get("--profile-gen"));
+					 for (compiler.data.layout.Label label : Chunks.callGraph.funLabels()) {
+						 if (memoize && Chunks.callGraph.isMemoizable(label)) {
+							 long calls = interpreter.memoCalls(label);
+							 long hits = interpreter.memoHits(label);
+							 Report.info(Chunks.callGraph.funDef(label), String.format("Memoized %s: %d calls, %d hits (%.1f%%).",
+									 label.name, calls, hits, calls == 0 ? 0.0 : 100.0 * hits / calls));
+						 }
+					 }
 				}
 				if (cmdLine.get("--target-phase").equals("chunks"))
 					break;
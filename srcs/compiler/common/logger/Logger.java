@@ -5,10 +5,8 @@ package compiler.common.logger;
 
 import java.io.*;
 import java.util.*;
+import java.nio.charset.*;
 import javax.xml.parsers.*;
-import javax.xml.transform.*;
-import javax.xml.transform.dom.*;
-import javax.xml.transform.stream.*;
 import org.w3c.dom.*;
 import compiler.common.report.*;
 
@@ -49,6 +47,9 @@ public class Logger implements AutoCloseable {
 		} catch (ParserConfigurationException ex) {
 			throw new Report.InternalError();
 		}
+		// Elements are only appended as new leaves, so checking that an element is not
+		// appended to its own descendant (by walking up to the root) is not needed.
+		doc.setStrictErrorChecking(false);
 
 		// Create the root element representing the entire phase.
 		Element phase = doc.createElement(phaseName);
@@ -72,17 +73,91 @@ public class Logger implements AutoCloseable {
 			throw new InternalError();
 
 		// Dump the log document out.
-		try {
-			TransformerFactory transformerFactory = TransformerFactory.newInstance();
-			javax.xml.transform.Transformer transformer = transformerFactory.newTransformer();
-			DOMSource source = new DOMSource(doc);
-			StreamResult result = new StreamResult(new File(xmlFileName));
-			transformer.transform(source, result);
-		} catch (TransformerException ex) {
+		try (Writer out = new BufferedWriter(
+				new OutputStreamWriter(new FileOutputStream(xmlFileName), StandardCharsets.UTF_8))) {
+			out.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>");
+			for (Node node = doc.getFirstChild(); node != null; node = node.getNextSibling()) {
+				if (node instanceof ProcessingInstruction) {
+					ProcessingInstruction instruction = (ProcessingInstruction) node;
+					out.write("<?" + instruction.getTarget() + " " + instruction.getData() + "?>");
+				} else
+					write(out, (Element) node);
+			}
+		} catch (IOException ex) {
 			Report.warning("Cannot open log file '" + xmlFileName + "'.");
 		}
 	}
 
+	/**
+	 * Writes out an XML element and all its descendants. The elements are
+	 * traversed in a loop rather than recursively (as the XML transformer would
+	 * do) so that deeply nested logs, e.g., of derivation trees of long lists, do
+	 * not exhaust the stack.
+	 * 
+	 * @param out  The writer the XML element is written to.
+	 * @param root The XML element.
+	 * @throws IOException If the XML element cannot be written.
+	 */
+	private static void write(Writer out, Element root) throws IOException {
+		Node node = root;
+		while (true) {
+			Element element = (Element) node;
+			out.write("<" + element.getTagName());
+			NamedNodeMap attrs = element.getAttributes();
+			for (int attr = 0; attr < attrs.getLength(); attr++) {
+				Attr attrNode = (Attr) attrs.item(attr);
+				out.write(" " + attrNode.getName() + "=\"" + escape(attrNode.getValue()) + "\"");
+			}
+			if (element.hasChildNodes()) {
+				out.write(">");
+				node = element.getFirstChild();
+				continue;
+			}
+			out.write("/>");
+			while ((node != root) && (node.getNextSibling() == null)) {
+				node = node.getParentNode();
+				out.write("</" + ((Element) node).getTagName() + ">");
+			}
+			if (node == root)
+				return;
+			node = node.getNextSibling();
+		}
+	}
+
+	/**
+	 * Escapes the characters of an attribute value the same way the XML
+	 * transformer does.
+	 * 
+	 * @param value The attribute value.
+	 * @return The escaped attribute value.
+	 */
+	private static String escape(String value) {
+		StringBuilder escaped = new StringBuilder(value.length());
+		for (int index = 0; index < value.length(); index++) {
+			char c = value.charAt(index);
+			switch (c) {
+			case '&':
+				escaped.append("&amp;");
+				break;
+			case '<':
+				escaped.append("&lt;");
+				break;
+			case '>':
+				escaped.append("&gt;");
+				break;
+			case '"':
+				escaped.append("&quot;");
+				break;
+			default:
+				if (c < ' ')
+					escaped.append("&#" + (int) c + ";");
+				else
+					escaped.append(c);
+			}
+		}
+		return escaped.toString();
+	}
+
 	/**
 	 * Starts a new XML element (within the active XML element) and makes it active.
 	 * Only one XML element can be active at each moment.
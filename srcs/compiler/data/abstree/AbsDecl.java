@@ -5,7 +5,7 @@ package compiler.data.abstree;
 
 import compiler.common.report.*;
 
-public abstract class AbsDecl extends Location implements AbsTree {
+public abstract class AbsDecl extends AbsNode {
 
 	public final String name;
 
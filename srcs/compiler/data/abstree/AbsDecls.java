@@ -7,7 +7,7 @@ import java.util.*;
 import compiler.common.report.*;
 import compiler.data.abstree.visitor.*;
 
-public class AbsDecls extends Location implements AbsTree {
+public class AbsDecls extends AbsNode {
 
 	private final Vector<AbsDecl> decls;
 
@@ -5,7 +5,7 @@ package compiler.data.abstree;
 
 import compiler.common.report.*;
 
-public abstract class AbsExpr extends Location implements AbsTree {
+public abstract class AbsExpr extends AbsNode {
 
 	public AbsExpr(Locatable location) {
 		super(location);
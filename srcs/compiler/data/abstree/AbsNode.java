@@ -0,0 +1,33 @@
+/**
+ * @author sliva
+ */
+package compiler.data.abstree;
+
+import compiler.common.report.*;
+
+/**
+ * A node of the abstract syntax tree. Nodes are numbered densely in the order
+ * of construction, so that attributes can be stored in arrays indexed by node
+ * ids (see {@link compiler.data.abstree.attribute.AbsAttribute}).
+ * 
+ * @author sliva
+ */
+public abstract class AbsNode extends Location implements AbsTree {
+
+	/** The number of nodes constructed so far. */
+	private static int numNodes = 0;
+
+	/** The id of this node. */
+	private final int id;
+
+	public AbsNode(Locatable location) {
+		super(location);
+		this.id = numNodes++;
+	}
+
+	@Override
+	public int id() {
+		return id;
+	}
+
+}
@@ -7,7 +7,7 @@ import java.util.*;
 import compiler.common.report.*;
 import compiler.data.abstree.visitor.*;
 
-public class AbsStmts extends Location implements AbsTree {
+public class AbsStmts extends AbsNode {
 
 	private final Vector<AbsStmt> stmts;
 
@@ -11,6 +11,13 @@ import compiler.data.abstree.visitor.*;
  */
 public interface AbsTree extends Locatable {
 
+	/**
+	 * Returns the id of this node, i.e., its index in the order of construction.
+	 * 
+	 * @return The id of this node.
+	 */
+	public abstract int id();
+
 	public abstract <Result, Arg> Result accept(AbsVisitor<Result, Arg> visitor, Arg accArg);
 
 }
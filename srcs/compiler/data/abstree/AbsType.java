@@ -5,7 +5,7 @@ package compiler.data.abstree;
 
 import compiler.common.report.*;
 
-public abstract class AbsType extends Location implements AbsTree {
+public abstract class AbsType extends AbsNode {
 
 	public AbsType(Locatable location) {
 		super(location);
@@ -10,6 +10,9 @@ import compiler.data.abstree.*;
 /**
  * An attribute of the abstract syntax tree node.
  * 
+ * Values are stored in an array indexed by node ids (see {@link AbsTree#id()})
+ * that grows as needed.
+ * 
  * @author sliva
  *
  * @param <Node> Nodes that values are associated with.
@@ -17,15 +20,15 @@ import compiler.data.abstree.*;
  */
 public class AbsAttribute<Node extends AbsTree, Value> {
 
-	/** Mapping of nodes to values. */
-	private HashMap<Node, Value> mapping;
+	/** Values indexed by node ids. */
+	private Object[] values;
 
 	/** Whether this attribute can no longer be modified or not. */
 	private boolean lock;
 
 	/** Constructs a new attribute. */
 	public AbsAttribute() {
-		mapping = new HashMap<Node, Value>();
+		values = new Object[0];
 		lock = false;
 	}
 
@@ -39,7 +42,10 @@ public class AbsAttribute<Node extends AbsTree, Value> {
 	public Value put(Node node, Value value) {
 		if (lock)
 			throw new Report.InternalError();
-		mapping.put(node, value);
+		int id = node.id();
+		if (id >= values.length)
+			values = Arrays.copyOf(values, capacity(values.length, id));
+		values[id] = value;
 		return value;
 	}
 
@@ -49,8 +55,10 @@ public class AbsAttribute<Node extends AbsTree, Value> {
 	 * @param node The specified abstract syntax tree node.
 	 * @return The value.
 	 */
+	@SuppressWarnings("unchecked")
 	public Value get(Node node) {
-		return mapping.get(node);
+		int id = node.id();
+		return id < values.length ? (Value) values[id] : null;
 	}
 
 	/**
@@ -60,4 +68,21 @@ public class AbsAttribute<Node extends AbsTree, Value> {
 		lock = true;
 	}
 
+	/**
+	 * Tells whether this attribute can no longer be modified or not.
+	 * 
+	 * @return {@code true} if this attribute can no longer be modified.
+	 */
+	protected boolean locked() {
+		return lock;
+	}
+
+	/**
+	 * Returns the new length of an array indexed by node ids that must hold the
+	 * specified id.
+	 */
+	protected static int capacity(int length, int id) {
+		return Math.max(id + 1, Math.max(1024, 2 * length));
+	}
+
 }
@@ -0,0 +1,56 @@
+/**
+ * @author sliva
+ */
+package compiler.data.abstree.attribute;
+
+import java.util.*;
+import compiler.common.report.*;
+import compiler.data.abstree.*;
+
+/**
+ * A boolean attribute of the abstract syntax tree node.
+ * 
+ * Values are stored in a byte array indexed by node ids: 0 denotes no value, 1
+ * denotes {@code false} and 2 denotes {@code true}.
+ * 
+ * @author sliva
+ *
+ * @param <Node> Nodes that values are associated with.
+ */
+public class AbsBoolAttribute<Node extends AbsTree> extends AbsAttribute<Node, Boolean> {
+
+	/** Values indexed by node ids. */
+	private byte[] values;
+
+	/** Constructs a new attribute. */
+	public AbsBoolAttribute() {
+		values = new byte[0];
+	}
+
+	@Override
+	public Boolean put(Node node, Boolean value) {
+		if (locked())
+			throw new Report.InternalError();
+		int id = node.id();
+		if (id >= values.length)
+			values = Arrays.copyOf(values, capacity(values.length, id));
+		values[id] = (byte) (value == null ? 0 : value ? 2 : 1);
+		return value;
+	}
+
+	@Override
+	public Boolean get(Node node) {
+		int id = node.id();
+		if (id >= values.length)
+			return null;
+		switch (values[id]) {
+		case 1:
+			return Boolean.FALSE;
+		case 2:
+			return Boolean.TRUE;
+		default:
+			return null;
+		}
+	}
+
+}
@@ -3,6 +3,7 @@
  */
 package compiler.data.chunk;
 
+import java.util.*;
 import compiler.data.layout.*;
 
 /**
@@ -18,9 +19,38 @@ public class DataChunk extends Chunk {
 	/** The size of data. */
 	public final long size;
 
+	/**
+	 * The initial image of data mapping offsets to 8-byte values, or {@code null}
+	 * if data is not initialized.
+	 */
+	private final TreeMap<Long, Long> init;
+
 	public DataChunk(AbsAccess absAccess) {
-		this.label = absAccess.label;
-		this.size = absAccess.size;
+		this(absAccess.label, absAccess.size, null);
+	}
+
+	/**
+	 * Constructs a new data chunk.
+	 * 
+	 * @param label The label where data is placed at.
+	 * @param size  The size of data.
+	 * @param init  The initial image of data mapping offsets to 8-byte values, or
+	 *              {@code null} if data is not initialized.
+	 */
+	public DataChunk(Label label, long size, Map<Long, Long> init) {
+		this.label = label;
+		this.size = size;
+		this.init = (init == null) ? null : new TreeMap<Long, Long>(init);
+	}
+
+	/**
+	 * Returns the initial image of data.
+	 * 
+	 * @return The initial image of data mapping offsets to 8-byte values, or
+	 *         {@code null} if data is not initialized.
+	 */
+	public SortedMap<Long, Long> init() {
+		return (init == null) ? null : Collections.unmodifiableSortedMap(init);
 	}
 
 }
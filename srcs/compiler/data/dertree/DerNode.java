@@ -29,12 +29,25 @@ public class DerNode extends DerTree {
 	/** The CFG nonterminal this node represents. */
 	public final Nont label;
 
+	/** No subtrees. */
+	private static final DerTree[] noSubtrees = new DerTree[0];
+
 	/** A list of subtrees (from left to right, ordered). */
-	private final Vector<DerTree> subtrees;
+	private DerTree[] subtrees;
+
+	/** The number of subtrees. */
+	private int numSubtrees;
 
 	/** Location of a part of the program represented by this node. */
 	private Location location;
 
+	/**
+	 * Whether the location has been computed from the subtrees appended so far
+	 * (it is computed only when requested rather than each time a subtree is
+	 * appended).
+	 */
+	private boolean located = true;
+
 	/**
 	 * Constructs a new internal node of the derivation tree. Immediately after
 	 * construction, the list of subtrees is empty as no subtrees have been appended
@@ -44,7 +57,8 @@ public class DerNode extends DerTree {
 	 */
 	public DerNode(Nont label) {
 		this.label = label;
-		this.subtrees = new Vector<DerTree>();
+		this.subtrees = noSubtrees;
+		this.numSubtrees = 0;
 	}
 
 	/**
@@ -54,10 +68,10 @@ public class DerNode extends DerTree {
 	 * @return This node.
 	 */
 	public DerNode add(DerTree subtree) {
-		subtrees.addElement(subtree);
-		Location location = subtree.location();
-		this.location = (this.location == null) ? location
-				: ((location == null) ? this.location : new Location(this.location, location));
+		if (numSubtrees == subtrees.length)
+			subtrees = Arrays.copyOf(subtrees, Math.max(2, 2 * numSubtrees));
+		subtrees[numSubtrees++] = subtree;
+		located = false;
 		return this;
 	}
 
@@ -67,7 +81,7 @@ public class DerNode extends DerTree {
 	 * @return The list of subtrees.
 	 */
 	public Vector<DerTree> subtrees() {
-		return new Vector<DerTree>(subtrees);
+		return new Vector<DerTree>(Arrays.asList(subtrees).subList(0, numSubtrees));
 	}
 
 	/**
@@ -77,7 +91,9 @@ public class DerNode extends DerTree {
 	 * @return The specified subtree.
 	 */
 	public DerTree subtree(int index) {
-		return subtrees.elementAt(index);
+		if (index >= numSubtrees)
+			throw new ArrayIndexOutOfBoundsException(index);
+		return subtrees[index];
 	}
 
 	/**
@@ -86,11 +102,26 @@ public class DerNode extends DerTree {
 	 * @return The number of subtrees of this node.
 	 */
 	public int numSubtrees() {
-		return subtrees.size();
+		return numSubtrees;
 	}
 
 	@Override
 	public Location location() {
+		if (!located) {
+			// Only the first and the last located subtree are inspected (so that
+			// subtrees in between, e.g., long lists, are never traversed).
+			Location begLocation = null;
+			Location endLocation = null;
+			int beg = 0;
+			while ((beg < numSubtrees) && (begLocation = subtrees[beg].location()) == null)
+				beg++;
+			for (int end = numSubtrees - 1; (end > beg) && (endLocation == null); end--)
+				endLocation = subtrees[end].location();
+			if (endLocation == null)
+				endLocation = begLocation;
+			location = (begLocation == endLocation) ? begLocation : new Location(begLocation, endLocation);
+			located = true;
+		}
 		return location;
 	}
 
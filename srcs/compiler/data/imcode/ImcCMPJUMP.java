@@ -0,0 +1,40 @@
+/**
+ * @author sliva
+ */
+package compiler.data.imcode;
+
+import compiler.data.layout.*;
+import compiler.data.imcode.visitor.*;
+
+/**
+ * A fused {@code CJUMP(BINOP(oper, TEMP(fst), TEMP(snd)), posLabel, negLabel)}
+ * where {@code oper} is a relational operator.
+ * 
+ * @author sliva
+ */
+public class ImcCMPJUMP extends ImcStmt {
+
+	public final ImcBINOP.Oper oper;
+
+	public final Temp fst;
+
+	public final Temp snd;
+
+	public final Label posLabel;
+
+	public final Label negLabel;
+
+	public ImcCMPJUMP(ImcBINOP.Oper oper, Temp fst, Temp snd, Label posLabel, Label negLabel) {
+		this.oper = oper;
+		this.fst = fst;
+		this.snd = snd;
+		this.posLabel = posLabel;
+		this.negLabel = negLabel;
+	}
+
+	@Override
+	public <Result, Arg> Result accept(ImcVisitor<Result, Arg> visitor, Arg accArg) {
+		return visitor.visit(this, accArg);
+	}
+
+}
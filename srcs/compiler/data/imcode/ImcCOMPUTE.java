@@ -0,0 +1,36 @@
+/**
+ * @author sliva
+ */
+package compiler.data.imcode;
+
+import compiler.data.layout.*;
+import compiler.data.imcode.visitor.*;
+
+/**
+ * A fused {@code MOVE(TEMP(dst), BINOP(oper, TEMP(fst), TEMP(snd)))}.
+ * 
+ * @author sliva
+ */
+public class ImcCOMPUTE extends ImcStmt {
+
+	public final Temp dst;
+
+	public final ImcBINOP.Oper oper;
+
+	public final Temp fst;
+
+	public final Temp snd;
+
+	public ImcCOMPUTE(Temp dst, ImcBINOP.Oper oper, Temp fst, Temp snd) {
+		this.dst = dst;
+		this.oper = oper;
+		this.fst = fst;
+		this.snd = snd;
+	}
+
+	@Override
+	public <Result, Arg> Result accept(ImcVisitor<Result, Arg> visitor, Arg accArg) {
+		return visitor.visit(this, accArg);
+	}
+
+}
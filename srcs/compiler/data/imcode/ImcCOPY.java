@@ -0,0 +1,30 @@
+/**
+ * @author sliva
+ */
+package compiler.data.imcode;
+
+import compiler.data.layout.*;
+import compiler.data.imcode.visitor.*;
+
+/**
+ * A fused {@code MOVE(TEMP(dst), TEMP(src))}.
+ * 
+ * @author sliva
+ */
+public class ImcCOPY extends ImcStmt {
+
+	public final Temp dst;
+
+	public final Temp src;
+
+	public ImcCOPY(Temp dst, Temp src) {
+		this.dst = dst;
+		this.src = src;
+	}
+
+	@Override
+	public <Result, Arg> Result accept(ImcVisitor<Result, Arg> visitor, Arg accArg) {
+		return visitor.visit(this, accArg);
+	}
+
+}
@@ -0,0 +1,199 @@
+/**
+ * @author sliva
+ */
+package compiler.data.imcode;
+
+import compiler.data.layout.*;
+
+/**
+ * A factory of intermediate code expressions.
+ *
+ * If hash-consing is used, structurally identical pure expressions (constants,
+ * names, temporary variables, memory accesses and operators applied to pure
+ * expressions) produced by the same factory are represented by the same node,
+ * so that expressions form a DAG instead of a tree. Calls and statement
+ * expressions are never shared. As shared nodes may appear at several places,
+ * expressions produced by a hash-consing factory must never be modified.
+ *
+ * @author sliva
+ */
+public class ImcFactory {
+
+	/** Whether structurally identical pure expressions are shared. */
+	private final boolean hashCons;
+
+	/**
+	 * The pure expression nodes produced by this factory: an open-addressing hash
+	 * table keyed by the structure of the nodes (with subexpressions compared by
+	 * identity), so that each node costs a single slot ({@code null} if
+	 * hash-consing is not used).
+	 */
+	private ImcExpr[] nodes;
+
+	/** The number of pure expression nodes produced by this factory. */
+	private int numNodes = 0;
+
+	/** The number of expressions requested. */
+	private int numRequests = 0;
+
+	/**
+	 * Constructs a new factory.
+	 *
+	 * @param hashCons Whether structurally identical pure expressions are
+	 *                 shared.
+	 */
+	public ImcFactory(boolean hashCons) {
+		this.hashCons = hashCons;
+		this.nodes = hashCons ? new ImcExpr[8] : null;
+	}
+
+	public ImcExpr constant(long value) {
+		return node(new ImcCONST(value));
+	}
+
+	public ImcExpr name(Label label) {
+		return node(new ImcNAME(label));
+	}
+
+	public ImcExpr temp(Temp temp) {
+		return node(new ImcTEMP(temp));
+	}
+
+	public ImcExpr mem(ImcExpr addr) {
+		return node(new ImcMEM(addr));
+	}
+
+	public ImcExpr binop(ImcBINOP.Oper oper, ImcExpr fstExpr, ImcExpr sndExpr) {
+		return node(new ImcBINOP(oper, fstExpr, sndExpr));
+	}
+
+	public ImcExpr unop(ImcUNOP.Oper oper, ImcExpr subExpr) {
+		return node(new ImcUNOP(oper, subExpr));
+	}
+
+	/**
+	 * Returns the number of expressions requested from this factory.
+	 *
+	 * @return The number of expressions requested.
+	 */
+	public int numRequests() {
+		return numRequests;
+	}
+
+	/**
+	 * Returns the number of distinct pure expression nodes produced by this
+	 * factory.
+	 *
+	 * @return The number of nodes.
+	 */
+	public int numNodes() {
+		return numNodes;
+	}
+
+	/**
+	 * Returns the node of a pure expression, i.e., an existing node of the same
+	 * structure or the new one. Subexpressions are compared by identity, which
+	 * suffices as they have been produced by this factory as well; an expression
+	 * with a subexpression that has not been produced by this factory is never
+	 * shared.
+	 */
+	private ImcExpr node(ImcExpr expr) {
+		numRequests++;
+		if (!hashCons)
+			return expr;
+		for (ImcExpr subExpr : subExprs(expr)) {
+			if (nodes[slot(subExpr)] != subExpr)
+				return expr;
+		}
+		int slot = slot(expr);
+		if (nodes[slot] != null)
+			return nodes[slot];
+		nodes[slot] = expr;
+		numNodes++;
+		if (2 * numNodes > nodes.length) {
+			ImcExpr[] oldNodes = nodes;
+			nodes = new ImcExpr[2 * oldNodes.length];
+			for (ImcExpr node : oldNodes) {
+				if (node != null)
+					nodes[slot(node)] = node;
+			}
+		}
+		return expr;
+	}
+
+	/**
+	 * Returns the slot of the hash table holding the node of the same structure
+	 * as an expression or the empty slot the expression belongs to.
+	 */
+	private int slot(ImcExpr expr) {
+		int mask = nodes.length - 1;
+		int hash = hash(expr) * 0x9E3779B9;
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		while ((nodes[slot] != null) && !sameNode(nodes[slot], expr))
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	/**
+	 * Returns the immediate subexpressions of a pure expression.
+	 */
+	private static ImcExpr[] subExprs(ImcExpr expr) {
+		if (expr instanceof ImcMEM)
+			return new ImcExpr[] { ((ImcMEM) expr).addr };
+		if (expr instanceof ImcBINOP)
+			return new ImcExpr[] { ((ImcBINOP) expr).fstExpr, ((ImcBINOP) expr).sndExpr };
+		if (expr instanceof ImcUNOP)
+			return new ImcExpr[] { ((ImcUNOP) expr).subExpr };
+		return new ImcExpr[0];
+	}
+
+	/**
+	 * Returns the hash code of the structure of a pure expression (with
+	 * subexpressions hashed by identity).
+	 */
+	private static int hash(ImcExpr expr) {
+		if (expr instanceof ImcCONST)
+			return 1 + 31 * Long.hashCode(((ImcCONST) expr).value);
+		if (expr instanceof ImcNAME)
+			return 2 + 31 * System.identityHashCode(((ImcNAME) expr).label);
+		if (expr instanceof ImcTEMP)
+			return 3 + 31 * System.identityHashCode(((ImcTEMP) expr).temp);
+		if (expr instanceof ImcMEM)
+			return 4 + 31 * System.identityHashCode(((ImcMEM) expr).addr);
+		if (expr instanceof ImcBINOP) {
+			ImcBINOP binOp = (ImcBINOP) expr;
+			return 5 + 31 * (binOp.oper.ordinal()
+					+ 31 * (System.identityHashCode(binOp.fstExpr) + 31 * System.identityHashCode(binOp.sndExpr)));
+		}
+		if (expr instanceof ImcUNOP) {
+			ImcUNOP unOp = (ImcUNOP) expr;
+			return 6 + 31 * (unOp.oper.ordinal() + 31 * System.identityHashCode(unOp.subExpr));
+		}
+		// Calls and statement expressions are never nodes.
+		return 0;
+	}
+
+	/**
+	 * Returns whether two pure expressions have the same structure (with
+	 * subexpressions compared by identity).
+	 */
+	private static boolean sameNode(ImcExpr fst, ImcExpr snd) {
+		if (fst.getClass() != snd.getClass())
+			return false;
+		if (fst instanceof ImcCONST)
+			return ((ImcCONST) fst).value == ((ImcCONST) snd).value;
+		if (fst instanceof ImcNAME)
+			return ((ImcNAME) fst).label == ((ImcNAME) snd).label;
+		if (fst instanceof ImcTEMP)
+			return ((ImcTEMP) fst).temp == ((ImcTEMP) snd).temp;
+		if (fst instanceof ImcMEM)
+			return ((ImcMEM) fst).addr == ((ImcMEM) snd).addr;
+		if (fst instanceof ImcBINOP)
+			return (((ImcBINOP) fst).oper == ((ImcBINOP) snd).oper)
+					&& (((ImcBINOP) fst).fstExpr == ((ImcBINOP) snd).fstExpr)
+					&& (((ImcBINOP) fst).sndExpr == ((ImcBINOP) snd).sndExpr);
+		return (((ImcUNOP) fst).oper == ((ImcUNOP) snd).oper)
+				&& (((ImcUNOP) fst).subExpr == ((ImcUNOP) snd).subExpr);
+	}
+
+}
@@ -0,0 +1,33 @@
+/**
+ * @author sliva
+ */
+package compiler.data.imcode;
+
+import compiler.data.layout.*;
+import compiler.data.imcode.visitor.*;
+
+/**
+ * A fused {@code MOVE(TEMP(dst), MEM(BINOP(ADD, TEMP(base), CONST(offset))))}.
+ * 
+ * @author sliva
+ */
+public class ImcLOAD extends ImcStmt {
+
+	public final Temp dst;
+
+	public final Temp base;
+
+	public final long offset;
+
+	public ImcLOAD(Temp dst, Temp base, long offset) {
+		this.dst = dst;
+		this.base = base;
+		this.offset = offset;
+	}
+
+	@Override
+	public <Result, Arg> Result accept(ImcVisitor<Result, Arg> visitor, Arg accArg) {
+		return visitor.visit(this, accArg);
+	}
+
+}
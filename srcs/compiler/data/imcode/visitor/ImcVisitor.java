@@ -28,10 +28,22 @@ public interface ImcVisitor<Result, Arg> {
 		throw new Report.InternalError();
 	}
 
+	public default Result visit(ImcCMPJUMP cmpJump, Arg visArg) {
+		throw new Report.InternalError();
+	}
+
+	public default Result visit(ImcCOMPUTE compute, Arg visArg) {
+		throw new Report.InternalError();
+	}
+
 	public default Result visit(ImcCONST constant, Arg visArg) {
 		throw new Report.InternalError();
 	}
 
+	public default Result visit(ImcCOPY copy, Arg visArg) {
+		throw new Report.InternalError();
+	}
+
 	public default Result visit(ImcESTMT eStmt, Arg visArg) {
 		throw new Report.InternalError();
 	}
@@ -44,6 +56,10 @@ public interface ImcVisitor<Result, Arg> {
 		throw new Report.InternalError();
 	}
 
+	public default Result visit(ImcLOAD load, Arg visArg) {
+		throw new Report.InternalError();
+	}
+
 	public default Result visit(ImcMEM mem, Arg visArg) {
 		throw new Report.InternalError();
 	}
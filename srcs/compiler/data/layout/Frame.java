@@ -28,6 +28,16 @@ public class Frame implements Loggable {
 
 	/** The size of the block of arguments within a frame. */
 	public final long argsSize;
+
+	/** The size of the block of local variables before it has been packed. */
+	public final long origLocsSize;
+
+	/**
+	 * Registers holding arguments passed in registers indexed by the position of
+	 * an argument (the static link is at position 0), or {@code null} if the
+	 * function uses the memory calling convention.
+	 */
+	private final Temp[] argTemps;
 	
 	/** The register to hold the frame pointer. */
 	public final Temp FP;
@@ -44,15 +54,70 @@ public class Frame implements Loggable {
 	 * @param argsSize The size of the block of arguments within a frame.
 	 */
 	public Frame(Label label, int depth, long locsSize, long argsSize) {
+		this(label, depth, locsSize, argsSize, locsSize, null);
+	}
+
+	/**
+	 * Constructs a new frame with a packed block of local variables and with no
+	 * temporary variables and no saved registers.
+	 * 
+	 * @param label        The function's entry label.
+	 * @param depth        The function's static depth.
+	 * @param locsSize     The size of the block of local variables within a
+	 *                     frame.
+	 * @param argsSize     The size of the block of arguments within a frame.
+	 * @param origLocsSize The size of the block of local variables before it has
+	 *                     been packed.
+	 * @param argTemps     Registers holding arguments passed in registers indexed
+	 *                     by the position of an argument ({@code null} for
+	 *                     arguments passed in memory), or {@code null} if the
+	 *                     function uses the memory calling convention.
+	 */
+	public Frame(Label label, int depth, long locsSize, long argsSize, long origLocsSize, Temp[] argTemps) {
 		this.label = label;
 		this.depth = depth;
 		this.locsSize = locsSize;
 		this.argsSize = argsSize;
+		this.origLocsSize = origLocsSize;
+		this.argTemps = (argTemps == null) ? null : argTemps.clone();
 		this.size = this.locsSize + 2 * (new SemPtrType(new SemVoidType())).size() + this.argsSize;
 		this.FP = new Temp();
 		this.RV = new Temp();
 	}
 
+	/**
+	 * Returns whether the function passes arguments and the result in registers.
+	 * 
+	 * @return {@code true} if the register calling convention is used.
+	 */
+	public boolean regConv() {
+		return argTemps != null;
+	}
+
+	/**
+	 * Returns the register an argument is passed in.
+	 * 
+	 * @param index The position of an argument (the static link is at position
+	 *              0).
+	 * @return The register or {@code null} if the argument is passed in memory.
+	 */
+	public Temp argTemp(int index) {
+		if ((argTemps == null) || (index >= argTemps.length))
+			return null;
+		return argTemps[index];
+	}
+
+	/**
+	 * Returns the number of positions of arguments {@link #argTemp(int)} can be
+	 * asked about.
+	 * 
+	 * @return The number of positions (0 unless the register calling convention
+	 *         is used).
+	 */
+	public int numArgTemps() {
+		return (argTemps == null) ? 0 : argTemps.length;
+	}
+
 	@Override
 	public void log(Logger logger) {
 		if (logger == null)
@@ -63,8 +128,14 @@ public class Frame implements Loggable {
 		logger.addAttribute("locssize", Long.toString(locsSize));
 		logger.addAttribute("argssize", Long.toString(argsSize));
 		logger.addAttribute("size", Long.toString(size));
+		if (origLocsSize != locsSize) {
+			logger.addAttribute("origlocssize", Long.toString(origLocsSize));
+			logger.addAttribute("origsize", Long.toString(size - locsSize + origLocsSize));
+		}
 		logger.addAttribute("FP", FP.toString());
 		logger.addAttribute("RV", RV.toString());
+		if (argTemps != null)
+			logger.addAttribute("conv", "reg");
 		logger.endElement();
 	}
 
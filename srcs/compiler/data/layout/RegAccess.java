@@ -0,0 +1,39 @@
+/**
+ * @author sliva
+ */
+package compiler.data.layout;
+
+import compiler.common.logger.*;
+
+/**
+ * An access to a variable kept in a temporary variable (i.e., a register).
+ * 
+ * @author sliva
+ */
+public class RegAccess extends Access {
+
+	/** The temporary variable holding the variable. */
+	public final Temp temp;
+
+	/**
+	 * Constructs a new register access.
+	 * 
+	 * @param size The size of the variable.
+	 * @param temp The temporary variable holding the variable.
+	 */
+	public RegAccess(long size, Temp temp) {
+		super(size);
+		this.temp = temp;
+	}
+
+	@Override
+	public void log(Logger logger) {
+		if (logger == null)
+			return;
+		logger.begElement("access");
+		logger.addAttribute("size", Long.toString(size));
+		logger.addAttribute("temp", Long.toString(temp.temp));
+		logger.endElement();
+	}
+
+}
@@ -0,0 +1,138 @@
+/**
+ * @author sliva
+ */
+package compiler.data.symbol;
+
+/**
+ * A table of interned lexemes.
+ *
+ * Lexemes are looked up as slices of a source buffer using open addressing, so
+ * a string is created only for the first occurrence of each lexeme. Keywords
+ * are entered in advance together with their tokens; all other lexemes are
+ * entered with token {@link Symbol.Term#IDENTIFIER}.
+ *
+ * @author sliva
+ */
+public class LexemeTable {
+
+	/** The interned lexemes. */
+	private String[] lexemes = new String[1024];
+
+	/** The tokens of interned lexemes. */
+	private Symbol.Term[] tokens = new Symbol.Term[1024];
+
+	/** The number of interned lexemes. */
+	private int size = 0;
+
+	/**
+	 * Constructs a new table containing all keywords.
+	 */
+	public LexemeTable() {
+		keyword("arr", Symbol.Term.ARR);
+		keyword("bool", Symbol.Term.BOOL);
+		keyword("char", Symbol.Term.CHAR);
+		keyword("del", Symbol.Term.DEL);
+		keyword("do", Symbol.Term.DO);
+		keyword("else", Symbol.Term.ELSE);
+		keyword("end", Symbol.Term.END);
+		keyword("fun", Symbol.Term.FUN);
+		keyword("if", Symbol.Term.IF);
+		keyword("int", Symbol.Term.INT);
+		keyword("new", Symbol.Term.NEW);
+		keyword("ptr", Symbol.Term.PTR);
+		keyword("then", Symbol.Term.THEN);
+		keyword("typ", Symbol.Term.TYP);
+		keyword("var", Symbol.Term.VAR);
+		keyword("void", Symbol.Term.VOID);
+		keyword("where", Symbol.Term.WHERE);
+		keyword("while", Symbol.Term.WHILE);
+		keyword("none", Symbol.Term.VOIDCONST);
+		keyword("true", Symbol.Term.BOOLCONST);
+		keyword("false", Symbol.Term.BOOLCONST);
+		keyword("null", Symbol.Term.PTRCONST);
+	}
+
+	private void keyword(String keyword, Symbol.Term token) {
+		tokens[slot(keyword.toCharArray(), 0, keyword.length())] = token;
+	}
+
+	/**
+	 * Returns the slot of a lexeme given as a slice of a buffer, interning the
+	 * lexeme if it has not been seen before. The slot is valid until the next
+	 * lexeme is interned.
+	 *
+	 * @param src    The buffer.
+	 * @param beg    The index of the first character of the lexeme.
+	 * @param length The length of the lexeme.
+	 * @return The slot of the lexeme.
+	 */
+	public int slot(char[] src, int beg, int length) {
+		int hash = 0;
+		for (int i = beg; i < beg + length; i++)
+			hash = 31 * hash + src[i];
+		int mask = lexemes.length - 1;
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		while (lexemes[slot] != null) {
+			if (matches(lexemes[slot], src, beg, length))
+				return slot;
+			slot = (slot + 1) & mask;
+		}
+		if (2 * (size + 1) > lexemes.length) {
+			grow();
+			return slot(src, beg, length);
+		}
+		lexemes[slot] = new String(src, beg, length);
+		tokens[slot] = Symbol.Term.IDENTIFIER;
+		size++;
+		return slot;
+	}
+
+	/**
+	 * Returns the interned lexeme in a slot.
+	 *
+	 * @param slot The slot.
+	 * @return The lexeme.
+	 */
+	public String lexeme(int slot) {
+		return lexemes[slot];
+	}
+
+	/**
+	 * Returns the token of the interned lexeme in a slot.
+	 *
+	 * @param slot The slot.
+	 * @return The token.
+	 */
+	public Symbol.Term token(int slot) {
+		return tokens[slot];
+	}
+
+	private static boolean matches(String lexeme, char[] src, int beg, int length) {
+		if (lexeme.length() != length)
+			return false;
+		for (int i = 0; i < length; i++) {
+			if (lexeme.charAt(i) != src[beg + i])
+				return false;
+		}
+		return true;
+	}
+
+	private void grow() {
+		String[] oldLexemes = lexemes;
+		Symbol.Term[] oldTokens = tokens;
+		lexemes = new String[2 * oldLexemes.length];
+		tokens = new Symbol.Term[2 * oldTokens.length];
+		int mask = lexemes.length - 1;
+		for (int i = 0; i < oldLexemes.length; i++) {
+			if (oldLexemes[i] == null)
+				continue;
+			int hash = oldLexemes[i].hashCode();
+			int slot = (hash ^ (hash >>> 16)) & mask;
+			while (lexemes[slot] != null)
+				slot = (slot + 1) & mask;
+			lexemes[slot] = oldLexemes[i];
+			tokens[slot] = oldTokens[i];
+		}
+	}
+
+}
@@ -31,9 +31,15 @@ public class Symbol implements Locatable, Loggable {
 	/** The lexeme. */
 	public final String lexeme;
 
-	/** The location within a source file. */
+	/** The location within a source file (or {@code null} if not materialized yet). */
 	private Location location;
 
+	/** The packed token stream the location is taken from if not materialized yet. */
+	private TokenStream tokens = null;
+
+	/** The index of the symbol within the packed token stream. */
+	private int index;
+
 	/**
 	 * Constructs a new symbol.
 	 * 
@@ -47,8 +53,26 @@ public class Symbol implements Locatable, Loggable {
 		this.location = location.location();
 	}
 
+	/**
+	 * Constructs a new symbol for a token of a packed token stream. The location
+	 * is materialized only when requested.
+	 * 
+	 * @param tokens The packed token stream.
+	 * @param index  The index of the token.
+	 */
+	public Symbol(TokenStream tokens, int index) {
+		this.token = tokens.kind(index);
+		this.lexeme = tokens.lexeme(index);
+		this.tokens = tokens;
+		this.index = index;
+	}
+
 	@Override
 	public Location location() {
+		if (location == null) {
+			location = tokens.location(index);
+			tokens = null;
+		}
 		return location;
 	}
 
@@ -59,7 +83,7 @@ public class Symbol implements Locatable, Loggable {
 		logger.begElement("term");
 		logger.addAttribute("token", token.toString());
 		logger.addAttribute("lexeme", lexeme);
-		location.log(logger);
+		location().log(logger);
 		logger.endElement();
 	}
 
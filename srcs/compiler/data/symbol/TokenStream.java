@@ -0,0 +1,201 @@
+/**
+ * @author sliva
+ */
+package compiler.data.symbol;
+
+import java.util.*;
+import compiler.common.report.*;
+
+/**
+ * A packed stream of tokens.
+ *
+ * Tokens are stored in parallel primitive arrays: the kind of a token, the
+ * index of its first character within the source buffer and its length.
+ * Locations are computed from a table of line offsets only when requested, and
+ * so are objects representing lexemes and symbols, i.e., when a symbol is
+ * passed to the parser, logged or reported.
+ *
+ * @author sliva
+ */
+public class TokenStream {
+
+	/** All tokens (indexed by ordinals). */
+	private static final Symbol.Term[] terms = Symbol.Term.values();
+
+	/** The source buffer. */
+	private final char[] src;
+
+	/** The table lexemes are interned in. */
+	private final LexemeTable lexemes;
+
+	/** The kinds of tokens (ordinals of {@link Symbol.Term}). */
+	private byte[] kinds = new byte[1024];
+
+	/** The indices of the first characters of tokens within the source buffer. */
+	private int[] starts = new int[1024];
+
+	/** The lengths of tokens. */
+	private int[] lengths = new int[1024];
+
+	/** The number of tokens. */
+	private int size = 0;
+
+	/**
+	 * The indices of characters the columns are counted from, i.e., of the
+	 * characters following the ends of lines (in increasing order).
+	 */
+	private int[] lineStarts = new int[256];
+
+	/** The numbers of lines starting at the corresponding {@link #lineStarts}. */
+	private int[] lines = new int[256];
+
+	/** The number of line offsets. */
+	private int numLines = 0;
+
+	/**
+	 * Constructs a new empty token stream.
+	 *
+	 * @param src     The source buffer.
+	 * @param lexemes The table lexemes are interned in.
+	 */
+	public TokenStream(char[] src, LexemeTable lexemes) {
+		this.src = src;
+		this.lexemes = lexemes;
+	}
+
+	/**
+	 * Appends a token.
+	 *
+	 * @param kind      The kind of the token.
+	 * @param start     The index of the first character within the source buffer.
+	 * @param length    The length of the token.
+	 * @param line      The line of the token.
+	 * @param lineStart The index of the character the columns of the line are
+	 *                  counted from.
+	 * @return The index of the token.
+	 */
+	public int add(Symbol.Term kind, int start, int length, int line, int lineStart) {
+		if (size == kinds.length) {
+			kinds = Arrays.copyOf(kinds, 2 * size);
+			starts = Arrays.copyOf(starts, 2 * size);
+			lengths = Arrays.copyOf(lengths, 2 * size);
+		}
+		kinds[size] = (byte) kind.ordinal();
+		starts[size] = start;
+		lengths[size] = length;
+		if ((numLines == 0) || (lineStarts[numLines - 1] != lineStart)) {
+			if (numLines == lineStarts.length) {
+				lineStarts = Arrays.copyOf(lineStarts, 2 * numLines);
+				lines = Arrays.copyOf(lines, 2 * numLines);
+			}
+			lineStarts[numLines] = lineStart;
+			lines[numLines] = line;
+			numLines++;
+		}
+		return size++;
+	}
+
+	/**
+	 * Returns the number of tokens.
+	 *
+	 * @return The number of tokens.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the kind of a token.
+	 *
+	 * @param index The index of the token.
+	 * @return The kind of the token.
+	 */
+	public Symbol.Term kind(int index) {
+		return terms[kinds[index]];
+	}
+
+	/**
+	 * Returns the index of the first character of a token within the source
+	 * buffer.
+	 *
+	 * @param index The index of the token.
+	 * @return The index of the first character.
+	 */
+	public int start(int index) {
+		return starts[index];
+	}
+
+	/**
+	 * Returns the length of a token.
+	 *
+	 * @param index The index of the token.
+	 * @return The length of the token.
+	 */
+	public int length(int index) {
+		return lengths[index];
+	}
+
+	/**
+	 * Returns the (interned) lexeme of a token.
+	 *
+	 * @param index The index of the token.
+	 * @return The lexeme of the token.
+	 */
+	public String lexeme(int index) {
+		if (kinds[index] == Symbol.Term.EOF.ordinal())
+			return "EOF";
+		return lexemes.lexeme(lexemes.slot(src, starts[index], lengths[index]));
+	}
+
+	/**
+	 * Returns the location of a token.
+	 *
+	 * The columns are those produced by the lexer: the first column of an
+	 * operator is the column before it, the first column of a word or an integer
+	 * constant is its own column except for keywords of five letters that start
+	 * a column later, and a character constant is located at its closing quote.
+	 *
+	 * @param index The index of the token.
+	 * @return The location of the token.
+	 */
+	public Location location(int index) {
+		int start = starts[index];
+		int length = lengths[index];
+		Symbol.Term kind = terms[kinds[index]];
+
+		int lo = 0;
+		int hi = numLines - 1;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (lineStarts[mid] <= start)
+				lo = mid;
+			else
+				hi = mid - 1;
+		}
+		int line = lines[lo];
+		int column = start - lineStarts[lo];
+
+		if (kind == Symbol.Term.EOF)
+			return new Location(line, column, line, column);
+		if (kind == Symbol.Term.CHARCONST)
+			return new Location(line, column + 2, line, column + 2);
+		char first = src[start];
+		if ((first >= 'a' && first <= 'z') || (first >= 'A' && first <= 'Z') || (first >= '0' && first <= '9')) {
+			boolean keyword = (kind != Symbol.Term.IDENTIFIER) && (kind != Symbol.Term.INTCONST);
+			return new Location(line, column + ((keyword && length == 5) ? 2 : 1), line, column + length);
+		}
+		return new Location(line, column, line, column + length);
+	}
+
+	/**
+	 * Returns the symbol of a token; its location is materialized only if
+	 * requested.
+	 *
+	 * @param index The index of the token.
+	 * @return The symbol of the token.
+	 */
+	public Symbol symbol(int index) {
+		return new Symbol(this, index);
+	}
+
+}
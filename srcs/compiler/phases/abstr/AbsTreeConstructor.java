@@ -31,23 +31,27 @@ public class AbsTreeConstructor implements DerVisitor<AbsTree, AbsTree> {
             // Source -> Decls .
             case Source: {
                 AbsDecls decls = (AbsDecls) node.subtree(0).accept(this, null);
-                return new AbsSource(node.location(), decls);
+                return new AbsSource(decls.location(), decls);
             }
 
 
             /*
             Decls -> Decl DeclsRst .
+            The entire list is collected along the chain of DeclsRst nodes.
              */
             case Decls: {
                 Vector<AbsDecl> allDecls = new Vector<AbsDecl>();
                 if (node.numSubtrees() == 0)
                     return null;
-                AbsDecl decl = (AbsDecl) node.subtree(0).accept(this, null);
-                allDecls.add(decl);
-                AbsDecls decls = (AbsDecls) node.subtree(1).accept(this, null);
-                if (decls != null)
-                    allDecls.addAll(decls.decls());
-                return new AbsDecls(node.location(), allDecls);
+                DerNode decls = node;
+                while (true) {
+                    allDecls.add((AbsDecl) decls.subtree(0).accept(this, null));
+                    DerNode declsRest = (DerNode) decls.subtree(1);
+                    if (declsRest.numSubtrees() == 0)
+                        break;
+                    decls = (DerNode) declsRest.subtree(0);
+                }
+                return new AbsDecls(new Location(node.subtree(0), decls.subtree(0)), allDecls);
             }
 
 
@@ -109,18 +113,21 @@ public class AbsTreeConstructor implements DerVisitor<AbsTree, AbsTree> {
                 return node.subtree(0).accept(this, null);
             }
 
-            // ParDecls -> ParDecl ParDeclsRest .
+            /*
+            ParDecls -> ParDecl ParDeclsRest .
+            The entire list is collected along the chain of ParDeclsRest nodes.
+             */
             case ParDecls: {
                 Vector<AbsParDecl> allParDecls = new Vector<AbsParDecl>();
-
-                AbsParDecl decl = ((AbsParDecl) node.subtree(0).accept(this, null));
-                allParDecls.add(decl);
-
-                AbsParDecls decls = ((AbsParDecls) node.subtree(1).accept(this, null));
-                if (decls != null)
-                    allParDecls.addAll(decls.parDecls());
-
-                return new AbsParDecls(node.location(), allParDecls);
+                DerNode parDecls = node;
+                while (true) {
+                    allParDecls.add((AbsParDecl) parDecls.subtree(0).accept(this, null));
+                    DerNode parDeclsRest = (DerNode) parDecls.subtree(1);
+                    if (parDeclsRest.numSubtrees() == 0)
+                        break;
+                    parDecls = (DerNode) parDeclsRest.subtree(1);
+                }
+                return new AbsParDecls(new Location(node.subtree(0), parDecls.subtree(0)), allParDecls);
             }
 
             // ParDecl -> identifier : Type .
@@ -187,15 +194,21 @@ public class AbsTreeConstructor implements DerVisitor<AbsTree, AbsTree> {
                 }
 
 
-                // Stmts -> Stmt StmtsRest .
+            /*
+            Stmts -> Stmt StmtsRest .
+            The entire list is collected along the chain of StmtsRest nodes.
+             */
             case Stmts: {
                 Vector<AbsStmt> allStms = new Vector<AbsStmt>();
-                AbsStmt absStmt = ((AbsStmt) node.subtree(0).accept(this, null));
-                allStms.add(absStmt);
-                AbsStmts absStmts = ((AbsStmts) node.subtree(1).accept(this, null));
-                if (absStmts != null)
-                    allStms.addAll(absStmts.stmts());
-                return new AbsStmts(node.location(), allStms);
+                DerNode stmts = node;
+                while (true) {
+                    allStms.add((AbsStmt) stmts.subtree(0).accept(this, null));
+                    DerNode stmtsRest = (DerNode) stmts.subtree(1);
+                    if (stmtsRest.numSubtrees() == 0)
+                        break;
+                    stmts = (DerNode) stmtsRest.subtree(1);
+                }
+                return new AbsStmts(new Location(node.subtree(0), stmts.subtree(0)), allStms);
             }
 
             /*
@@ -504,18 +517,21 @@ public class AbsTreeConstructor implements DerVisitor<AbsTree, AbsTree> {
             /*
             ArgsEps -> .
             ArgsEps -> Args ArgsRest .
+            The entire list is collected along the chain of ArgsRest nodes.
              */
             case ArgsEps: {
                 if (node.numSubtrees() == 0)
                     return new AbsArgs(new Location(0, 0), new Vector<AbsExpr>());
                 Vector<AbsExpr> allArgs = new Vector<AbsExpr>();
-                AbsExpr absExpr = ((AbsExpr) node.subtree(0).accept(this, null));
-                allArgs.add(absExpr);
-                AbsArgs argsRest = (AbsArgs) node.subtree(1).accept(this, null);
-                if (argsRest != null) {
-                    allArgs.addAll(argsRest.args());
+                DerTree args = node.subtree(0);
+                DerNode argsRest = (DerNode) node.subtree(1);
+                allArgs.add((AbsExpr) args.accept(this, null));
+                while (argsRest.numSubtrees() != 0) {
+                    args = argsRest.subtree(1);
+                    allArgs.add((AbsExpr) args.accept(this, null));
+                    argsRest = (DerNode) argsRest.subtree(2);
                 }
-                return new AbsArgs(node.location(), allArgs);
+                return new AbsArgs(new Location(node.subtree(0), args), allArgs);
             }
 
             /*
@@ -0,0 +1,271 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.chunks;
+
+import java.util.*;
+import compiler.data.layout.*;
+import compiler.data.imcode.*;
+import compiler.data.chunk.*;
+
+/**
+ * Base-based alias analysis of memory accesses within a code chunk.
+ *
+ * Each address is described symbolically as a base and an offset. A base is
+ * the frame (the frame pointer), a global variable (the label of a data chunk)
+ * or a temporary variable defined once and holding a pointer that cannot be
+ * traced any further; the offset is either a constant or unknown. Indexing is
+ * assumed to stay within the object indexed. All memory accesses are 8 bytes
+ * wide.
+ *
+ * @author sliva
+ */
+public class AliasAnalysis {
+
+	/**
+	 * A symbolic address.
+	 *
+	 * @author sliva
+	 */
+	public static class Addr {
+
+		/**
+		 * The frame pointer, the label of a data chunk, a temporary variable or
+		 * {@code null} if the base is unknown (or the value is not an address).
+		 */
+		public final Object base;
+
+		/** The offset from the base or {@code null} if unknown. */
+		public final Long offset;
+
+		/**
+		 * The temporary variable holding an address with an unknown offset, or
+		 * {@code null} if the offset is known.
+		 */
+		public final Temp temp;
+
+		public Addr(Object base, Long offset, Temp temp) {
+			this.base = base;
+			this.offset = offset;
+			this.temp = (offset == null) ? temp : null;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Addr))
+				return false;
+			Addr that = (Addr) obj;
+			return Objects.equals(this.base, that.base) && Objects.equals(this.offset, that.offset)
+					&& Objects.equals(this.temp, that.temp);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(base, offset, temp);
+		}
+
+	}
+
+	/** The frame of the code chunk. */
+	private final Frame frame;
+
+	/** Maps temporary variables to the number of their definitions. */
+	private final HashMap<Temp, Integer> numDefs = new HashMap<Temp, Integer>();
+
+	/** Maps temporary variables defined once to their definitions. */
+	private final HashMap<Temp, ImcExpr> defs = new HashMap<Temp, ImcExpr>();
+
+	/** Maps temporary variables to their symbolic values. */
+	private final HashMap<Temp, Addr> temps = new HashMap<Temp, Addr>();
+
+	/** Whether an address within the frame is passed anywhere else than to a memory access. */
+	private boolean frameExposed = false;
+
+	/**
+	 * Constructs the alias analysis of a code chunk.
+	 *
+	 * @param codeChunk The code chunk.
+	 */
+	public AliasAnalysis(CodeChunk codeChunk) {
+		this.frame = codeChunk.frame;
+		Vector<ImcStmt> stmts = codeChunk.stmts();
+		// Registers holding arguments are defined on entry.
+		for (int a = 0; a < frame.numArgTemps(); a++) {
+			if (frame.argTemp(a) != null)
+				numDefs.put(frame.argTemp(a), 1);
+		}
+		for (ImcStmt stmt : stmts) {
+			if ((stmt instanceof ImcMOVE) && (((ImcMOVE) stmt).dst instanceof ImcTEMP)) {
+				Temp temp = ((ImcTEMP) ((ImcMOVE) stmt).dst).temp;
+				numDefs.put(temp, numDefs.getOrDefault(temp, 0) + 1);
+				defs.put(temp, ((ImcMOVE) stmt).src);
+			}
+		}
+
+		for (ImcStmt stmt : stmts) {
+			if (stmt instanceof ImcMOVE) {
+				ImcMOVE move = (ImcMOVE) stmt;
+				if ((move.dst instanceof ImcMEM) && inFrame(addr(move.src)))
+					frameExposed = true;
+				if ((move.dst instanceof ImcTEMP) && !isSingleDef(((ImcTEMP) move.dst).temp) && inFrame(addr(move.src)))
+					frameExposed = true;
+			}
+			ImcCALL call = call(stmt);
+			if (call != null) {
+				Vector<ImcExpr> args = call.args();
+				for (int a = 1; a < args.size(); a++) {
+					if (inFrame(addr(args.get(a))))
+						frameExposed = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns whether a temporary variable is defined at most once (and thus its
+	 * value cannot change between its definition and its uses within the same
+	 * iteration of a loop).
+	 *
+	 * @param temp The temporary variable.
+	 * @return {@code true} if it is defined at most once.
+	 */
+	public boolean isSingleDef(Temp temp) {
+		return numDefs.getOrDefault(temp, 0) <= 1;
+	}
+
+	/**
+	 * Returns whether an address within the frame might be accessed through a
+	 * pointer.
+	 *
+	 * @return {@code true} if the frame is exposed.
+	 */
+	public boolean frameExposed() {
+		return frameExposed;
+	}
+
+	/**
+	 * Returns whether a symbolic address lies within the frame.
+	 *
+	 * @param addr The symbolic address.
+	 * @return {@code true} if the address lies within the frame.
+	 */
+	public boolean inFrame(Addr addr) {
+		return addr.base == frame.FP;
+	}
+
+	/**
+	 * Returns whether a symbolic address lies within a global variable.
+	 *
+	 * @param addr The symbolic address.
+	 * @return {@code true} if the address lies within a global variable.
+	 */
+	public boolean inGlobal(Addr addr) {
+		return addr.base instanceof Label;
+	}
+
+	/**
+	 * Computes the symbolic value of an expression.
+	 *
+	 * @param expr The expression.
+	 * @return The symbolic value.
+	 */
+	public Addr addr(ImcExpr expr) {
+		if (expr instanceof ImcCONST)
+			return new Addr(null, ((ImcCONST) expr).value, null);
+		if (expr instanceof ImcNAME)
+			return new Addr(((ImcNAME) expr).label, 0L, null);
+		if (expr instanceof ImcTEMP)
+			return addr(((ImcTEMP) expr).temp);
+		if (expr instanceof ImcBINOP) {
+			ImcBINOP binOp = (ImcBINOP) expr;
+			Addr fstAddr = addr(binOp.fstExpr);
+			Addr sndAddr = addr(binOp.sndExpr);
+			switch (binOp.oper) {
+			case ADD:
+				if ((fstAddr.base == null) && (sndAddr.base != null))
+					return new Addr(sndAddr.base, sum(fstAddr.offset, sndAddr.offset), null);
+				if (fstAddr.base != null)
+					return new Addr(fstAddr.base, sum(fstAddr.offset, sndAddr.offset), null);
+				return new Addr(null, sum(fstAddr.offset, sndAddr.offset), null);
+			case SUB:
+				if ((fstAddr.base != null) && (sndAddr.base == null))
+					return new Addr(fstAddr.base, (sndAddr.offset == null) ? null : sum(fstAddr.offset, -sndAddr.offset), null);
+				if ((fstAddr.base == null) && (sndAddr.base == null) && (fstAddr.offset != null) && (sndAddr.offset != null))
+					return new Addr(null, fstAddr.offset - sndAddr.offset, null);
+				return new Addr(null, null, null);
+			default:
+				if ((fstAddr.base == null) && (sndAddr.base == null) && (fstAddr.offset != null) && (sndAddr.offset != null))
+					return new Addr(null, ConstFolder.fold(binOp.oper, fstAddr.offset, sndAddr.offset), null);
+				return new Addr(null, null, null);
+			}
+		}
+		return new Addr(null, null, null);
+	}
+
+	/**
+	 * Computes the symbolic value of a temporary variable.
+	 */
+	private Addr addr(Temp temp) {
+		Addr addr = temps.get(temp);
+		if (addr != null)
+			return addr;
+		if (temp == frame.FP)
+			addr = new Addr(frame.FP, 0L, null);
+		else if (!isSingleDef(temp))
+			addr = new Addr(null, null, null);
+		else {
+			ImcExpr def = defs.get(temp);
+			// Guards against cyclic definitions within loops.
+			temps.put(temp, new Addr(null, null, null));
+			if ((def == null) || (def instanceof ImcMEM) || (def instanceof ImcCALL))
+				addr = new Addr(temp, 0L, null);
+			else
+				addr = addr(def);
+		}
+		if ((addr.offset == null) && (addr.base != null))
+			addr = new Addr(addr.base, null, temp);
+		temps.put(temp, addr);
+		return addr;
+	}
+
+	private static Long sum(Long fst, Long snd) {
+		return ((fst == null) || (snd == null)) ? null : fst + snd;
+	}
+
+	/**
+	 * Returns whether two memory accesses might overlap.
+	 *
+	 * @param fst The address of the first access.
+	 * @param snd The address of the second access.
+	 * @return {@code true} if the accesses might overlap.
+	 */
+	public boolean mayAlias(Addr fst, Addr snd) {
+		if (inFrame(fst) != inFrame(snd)) {
+			// An unknown pointer can point into the frame only if it is exposed.
+			Addr other = inFrame(fst) ? snd : fst;
+			return frameExposed && !inGlobal(other);
+		}
+		if (inGlobal(fst) && inGlobal(snd) && !fst.base.equals(snd.base))
+			return false;
+		if ((fst.base == null) || (snd.base == null) || !fst.base.equals(snd.base))
+			return true;
+		if ((fst.offset == null) || (snd.offset == null))
+			return true;
+		return Math.abs(fst.offset - snd.offset) < 8;
+	}
+
+	/**
+	 * Returns the call performed by a statement.
+	 *
+	 * @param stmt The statement.
+	 * @return The call or {@code null} if there is none.
+	 */
+	public static ImcCALL call(ImcStmt stmt) {
+		if ((stmt instanceof ImcMOVE) && (((ImcMOVE) stmt).src instanceof ImcCALL))
+			return (ImcCALL) ((ImcMOVE) stmt).src;
+		if ((stmt instanceof ImcESTMT) && (((ImcESTMT) stmt).expr instanceof ImcCALL))
+			return (ImcCALL) ((ImcESTMT) stmt).expr;
+		return null;
+	}
+
+}
@@ -0,0 +1,541 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.chunks;
+
+import java.util.*;
+import compiler.common.logger.*;
+import compiler.data.abstree.*;
+import compiler.data.abstree.visitor.*;
+import compiler.data.layout.*;
+import compiler.data.imcode.*;
+import compiler.data.imcode.visitor.*;
+import compiler.data.type.*;
+import compiler.phases.frames.*;
+import compiler.phases.imcgen.*;
+import compiler.phases.seman.*;
+
+/**
+ * The call graph of a program together with the summaries of functions.
+ *
+ * Functions are identified by the labels of their frames. The graph is built
+ * from the intermediate code of function bodies (before canonization) so that
+ * the shape of each memory access still tells which memory it refers to. The
+ * strongly connected components are listed bottom-up, i.e., the callees before
+ * the callers, and the summaries are propagated along the same order.
+ *
+ * @author sliva
+ */
+public class CallGraph {
+
+	/**
+	 * The summary of the side effects of a function (including the side effects
+	 * of all functions it calls directly or indirectly).
+	 *
+	 * @author sliva
+	 */
+	public static class Summary implements Loggable {
+
+		/** The index of the strongly connected component of the function. */
+		public int scc = -1;
+
+		/** Whether global variables are read. */
+		public boolean readsGlobals = false;
+
+		/** Whether global variables are written. */
+		public boolean writesGlobals = false;
+
+		/** Whether memory is read through pointers. */
+		public boolean readsPtrs = false;
+
+		/** Whether memory is written through pointers. */
+		public boolean writesPtrs = false;
+
+		/** Whether the frames of enclosing functions are accessed. */
+		public boolean outerFrames = false;
+
+		/** Whether {@code new} or {@code del} is called. */
+		public boolean allocates = false;
+
+		/** Whether input or output is performed, i.e., external functions called. */
+		public boolean performsIO = false;
+
+		/**
+		 * Returns whether the function is pure, i.e., whether its result depends on
+		 * its arguments only (the static link excluded) and it has no side effects
+		 * apart from accessing its own frame.
+		 *
+		 * @return {@code true} if the function is pure.
+		 */
+		public boolean pure() {
+			return !(readsGlobals || writesGlobals || readsPtrs || writesPtrs || outerFrames || allocates
+					|| performsIO);
+		}
+
+		/**
+		 * Adds the side effects of another function to this summary.
+		 *
+		 * @param that The summary of another function.
+		 */
+		public void add(Summary that) {
+			readsGlobals |= that.readsGlobals;
+			writesGlobals |= that.writesGlobals;
+			readsPtrs |= that.readsPtrs;
+			writesPtrs |= that.writesPtrs;
+			outerFrames |= that.outerFrames;
+			allocates |= that.allocates;
+			performsIO |= that.performsIO;
+		}
+
+		@Override
+		public void log(Logger logger) {
+			if (logger == null)
+				return;
+			logger.begElement("summary");
+			logger.addAttribute("scc", Integer.toString(scc));
+			StringBuffer effects = new StringBuffer();
+			if (readsGlobals)
+				effects.append(" readsglobals");
+			if (writesGlobals)
+				effects.append(" writesglobals");
+			if (readsPtrs)
+				effects.append(" readsptrs");
+			if (writesPtrs)
+				effects.append(" writesptrs");
+			if (outerFrames)
+				effects.append(" outerframes");
+			if (allocates)
+				effects.append(" allocates");
+			if (performsIO)
+				effects.append(" io");
+			logger.addAttribute("effects", effects.toString().trim());
+			logger.addAttribute("pure", pure() ? "true" : "false");
+			logger.endElement();
+		}
+
+	}
+
+	/** The labels of all functions in the order of their definitions. */
+	private final Vector<Label> funLabels = new Vector<Label>();
+
+	/** Maps labels to function definitions. */
+	private final HashMap<Label, AbsFunDef> funDefs = new HashMap<Label, AbsFunDef>();
+
+	/** Maps labels of functions to labels of functions they call. */
+	private final HashMap<Label, LinkedHashSet<Label>> callees = new HashMap<Label, LinkedHashSet<Label>>();
+
+	/** Maps labels of functions to labels of functions calling them. */
+	private final HashMap<Label, LinkedHashSet<Label>> callers = new HashMap<Label, LinkedHashSet<Label>>();
+
+	/** Maps labels of functions to labels of global variables their bodies refer to. */
+	private final HashMap<Label, LinkedHashSet<Label>> globals = new HashMap<Label, LinkedHashSet<Label>>();
+
+	/** Maps labels of functions to the side effects of their bodies alone. */
+	private final HashMap<Label, Summary> localSummaries = new HashMap<Label, Summary>();
+
+	/** Maps labels of functions to their summaries. */
+	private final HashMap<Label, Summary> summaries = new HashMap<Label, Summary>();
+
+	/** The strongly connected components, callees before callers. */
+	private final Vector<Vector<Label>> sccs = new Vector<Vector<Label>>();
+
+	/**
+	 * Constructs the call graph of a program and computes the summaries of all
+	 * functions.
+	 *
+	 * @param source The abstract syntax tree of a program (with frames and
+	 *               intermediate code already computed).
+	 */
+	public CallGraph(AbsTree source) {
+		source.accept(new AbsFullVisitor<Object, Object>() {
+			@Override
+			public Object visit(AbsFunDef funDef, Object visArg) {
+				Label label = Frames.frames.get(funDef).label;
+				funLabels.add(label);
+				funDefs.put(label, funDef);
+				callees.put(label, new LinkedHashSet<Label>());
+				callers.put(label, new LinkedHashSet<Label>());
+				globals.put(label, new LinkedHashSet<Label>());
+				return super.visit(funDef, visArg);
+			}
+		}, null);
+
+		for (Label label : funLabels) {
+			Frame frame = Frames.frames.get(funDefs.get(label));
+			Summary summary = new Summary();
+			ImcGen.exprImCode.get(funDefs.get(label).value).accept(new EffectCollector(frame, summary), false);
+			localSummaries.put(label, summary);
+		}
+
+		// Tarjan's algorithm lists the components callees first.
+		for (Label label : funLabels) {
+			if (!index.containsKey(label))
+				strongConnect(label);
+		}
+
+		for (int scc = 0; scc < sccs.size(); scc++) {
+			Summary summary = new Summary();
+			summary.scc = scc;
+			for (Label label : sccs.get(scc)) {
+				summary.add(localSummaries.get(label));
+				for (Label callee : callees.get(label)) {
+					Summary calleeSummary = summaries.get(callee);
+					if (calleeSummary != null)
+						summary.add(calleeSummary);
+				}
+			}
+			for (Label label : sccs.get(scc))
+				summaries.put(label, summary);
+		}
+	}
+
+	/**
+	 * Registers a clone of a function (e.g., one specialized for constant
+	 * arguments); the clone shares the definition, the callees and the summary
+	 * of the original function but is not listed among the functions.
+	 *
+	 * @param clone The label of the clone.
+	 * @param label The label of the original function.
+	 */
+	public void addClone(Label clone, Label label) {
+		funDefs.put(clone, funDefs.get(label));
+		globals.put(clone, new LinkedHashSet<Label>(globals.get(label)));
+		callees.put(clone, new LinkedHashSet<Label>(callees.get(label)));
+		callers.put(clone, new LinkedHashSet<Label>());
+		for (Label callee : callees.get(label))
+			callers.get(callee).add(clone);
+		summaries.put(clone, summaries.get(label));
+	}
+
+	/**
+	 * Returns the labels of all functions in the order of their definitions.
+	 *
+	 * @return The labels of all functions.
+	 */
+	public Vector<Label> funLabels() {
+		return new Vector<Label>(funLabels);
+	}
+
+	/**
+	 * Returns whether a function is defined within the program.
+	 *
+	 * @param label The label of a function.
+	 * @return {@code true} if the function is defined within the program,
+	 *         {@code false} if it is external.
+	 */
+	public boolean isDefined(Label label) {
+		return funDefs.containsKey(label);
+	}
+
+	/**
+	 * Returns the definition of a function.
+	 *
+	 * @param label The label of a function.
+	 * @return The definition of a function or {@code null} if the function is
+	 *         external.
+	 */
+	public AbsFunDef funDef(Label label) {
+		return funDefs.get(label);
+	}
+
+	/**
+	 * Returns the functions called by a function.
+	 *
+	 * @param label The label of a function.
+	 * @return The labels of functions defined within the program that are called.
+	 */
+	public Set<Label> callees(Label label) {
+		return Collections.unmodifiableSet(callees.get(label));
+	}
+
+	/**
+	 * Returns the functions calling a function.
+	 *
+	 * @param label The label of a function.
+	 * @return The labels of functions calling the function.
+	 */
+	public Set<Label> callers(Label label) {
+		return Collections.unmodifiableSet(callers.get(label));
+	}
+
+	/**
+	 * Returns the functions and global variables reachable from a function over
+	 * calls and references to global variables.
+	 *
+	 * @param label The label of a function.
+	 * @return The labels of functions and global variables reachable (the
+	 *         function itself included).
+	 */
+	public Set<Label> reachable(Label label) {
+		LinkedHashSet<Label> reachable = new LinkedHashSet<Label>();
+		Stack<Label> work = new Stack<Label>();
+		work.push(label);
+		while (!work.isEmpty()) {
+			Label funLabel = work.pop();
+			if (!reachable.add(funLabel))
+				continue;
+			reachable.addAll(globals.get(funLabel));
+			for (Label callee : callees.get(funLabel))
+				work.push(callee);
+		}
+		return reachable;
+	}
+
+	/**
+	 * Returns the strongly connected components of the call graph, callees before
+	 * callers.
+	 *
+	 * @return The strongly connected components.
+	 */
+	public Vector<Vector<Label>> sccs() {
+		return new Vector<Vector<Label>>(sccs);
+	}
+
+	/**
+	 * Returns the summary of a function.
+	 *
+	 * @param label The label of a function.
+	 * @return The summary or {@code null} if the function is external.
+	 */
+	public Summary summary(Label label) {
+		return summaries.get(label);
+	}
+
+	/**
+	 * Returns whether a function is recursive (directly or indirectly).
+	 *
+	 * @param label The label of a function.
+	 * @return {@code true} if the function is recursive.
+	 */
+	public boolean isRecursive(Label label) {
+		return (sccs.get(summaries.get(label).scc).size() > 1) || callees.get(label).contains(label);
+	}
+
+	/**
+	 * Returns whether calls of a function can be answered from a memo table, i.e.,
+	 * whether the function is pure and recursive and its parameters and result
+	 * are scalars.
+	 *
+	 * @param label The label of a function.
+	 * @return {@code true} if the function can be memoized.
+	 */
+	public boolean isMemoizable(Label label) {
+		AbsFunDef funDef = funDefs.get(label);
+		if ((funDef == null) || !summaries.get(label).pure() || !isRecursive(label))
+			return false;
+		long scalarSize = new SemPtrType(new SemVoidType()).size();
+		for (AbsParDecl parDecl : funDef.parDecls.parDecls()) {
+			if (Frames.accesses.get(parDecl).size > scalarSize)
+				return false;
+		}
+		return SemAn.isType.get(funDef.type).size() <= scalarSize;
+	}
+
+	// Tarjan's algorithm.
+
+	private final HashMap<Label, Integer> index = new HashMap<Label, Integer>();
+
+	private final HashMap<Label, Integer> lowLink = new HashMap<Label, Integer>();
+
+	private final Stack<Label> stack = new Stack<Label>();
+
+	private void strongConnect(Label label) {
+		index.put(label, index.size());
+		lowLink.put(label, index.get(label));
+		stack.push(label);
+		for (Label callee : callees.get(label)) {
+			if (!index.containsKey(callee)) {
+				strongConnect(callee);
+				lowLink.put(label, Math.min(lowLink.get(label), lowLink.get(callee)));
+			} else if (stack.contains(callee))
+				lowLink.put(label, Math.min(lowLink.get(label), index.get(callee)));
+		}
+		if (lowLink.get(label).equals(index.get(label))) {
+			Vector<Label> scc = new Vector<Label>();
+			Label member;
+			do {
+				member = stack.pop();
+				scc.add(member);
+			} while (member != label);
+			sccs.add(scc);
+		}
+	}
+
+	/**
+	 * The kind of memory an address points to.
+	 */
+	private enum Base {
+		/** The frame of the function itself. */
+		FRAME,
+		/** The frame of an enclosing function. */
+		OUTER,
+		/** A global variable. */
+		GLOBAL,
+		/** Anything else, i.e., memory accessed through a pointer. */
+		PTR
+	}
+
+	/**
+	 * Collects the calls and the side effects of a function body. The argument
+	 * tells whether the visited expression is written to.
+	 *
+	 * @author sliva
+	 */
+	private class EffectCollector implements ImcVisitor<Object, Boolean> {
+
+		private final Frame frame;
+
+		private final Summary summary;
+
+		public EffectCollector(Frame frame, Summary summary) {
+			this.frame = frame;
+			this.summary = summary;
+		}
+
+		@Override
+		public Object visit(ImcBINOP binOp, Boolean visArg) {
+			binOp.fstExpr.accept(this, false);
+			binOp.sndExpr.accept(this, false);
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcCALL call, Boolean visArg) {
+			for (ImcExpr arg : call.args())
+				arg.accept(this, false);
+			if (funDefs.containsKey(call.label)) {
+				callees.get(frame.label).add(call.label);
+				callers.get(call.label).add(frame.label);
+			} else if (call.label.name.equals("_new") || call.label.name.equals("_del"))
+				summary.allocates = true;
+			else
+				summary.performsIO = true;
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcCJUMP cjump, Boolean visArg) {
+			cjump.cond.accept(this, false);
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcCONST constant, Boolean visArg) {
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcESTMT eStmt, Boolean visArg) {
+			eStmt.expr.accept(this, false);
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcJUMP jump, Boolean visArg) {
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcLABEL label, Boolean visArg) {
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcMEM mem, Boolean visArg) {
+			switch (base(mem.addr)) {
+			case FRAME:
+				break;
+			case OUTER:
+				summary.outerFrames = true;
+				break;
+			case GLOBAL:
+				if (visArg)
+					summary.writesGlobals = true;
+				else
+					summary.readsGlobals = true;
+				break;
+			case PTR:
+				if (visArg)
+					summary.writesPtrs = true;
+				else
+					summary.readsPtrs = true;
+				break;
+			}
+			mem.addr.accept(this, false);
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcMOVE move, Boolean visArg) {
+			move.dst.accept(this, true);
+			move.src.accept(this, false);
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcNAME name, Boolean visArg) {
+			globals.get(frame.label).add(name.label);
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcSEXPR sExpr, Boolean visArg) {
+			sExpr.stmt.accept(this, false);
+			sExpr.expr.accept(this, false);
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcSTMTS stmts, Boolean visArg) {
+			for (ImcStmt stmt : stmts.stmts())
+				stmt.accept(this, false);
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcTEMP temp, Boolean visArg) {
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcUNOP unOp, Boolean visArg) {
+			unOp.subExpr.accept(this, false);
+			return null;
+		}
+
+		/**
+		 * Returns the kind of memory an address points to.
+		 */
+		private Base base(ImcExpr addr) {
+			if (addr instanceof ImcNAME)
+				return Base.GLOBAL;
+			if ((addr instanceof ImcTEMP) && (((ImcTEMP) addr).temp == frame.FP))
+				return Base.FRAME;
+			if ((addr instanceof ImcMEM) && staticLink(((ImcMEM) addr).addr))
+				return Base.OUTER;
+			if ((addr instanceof ImcBINOP) && ((((ImcBINOP) addr).oper == ImcBINOP.Oper.ADD)
+					|| (((ImcBINOP) addr).oper == ImcBINOP.Oper.SUB))) {
+				// Indexing is assumed to stay within the object indexed.
+				Base fstBase = base(((ImcBINOP) addr).fstExpr);
+				if (fstBase != Base.PTR)
+					return fstBase;
+				if (((ImcBINOP) addr).oper == ImcBINOP.Oper.ADD)
+					return base(((ImcBINOP) addr).sndExpr);
+			}
+			return Base.PTR;
+		}
+
+		/**
+		 * Returns whether an expression follows the chain of static links.
+		 */
+		private boolean staticLink(ImcExpr expr) {
+			if ((expr instanceof ImcTEMP) && (((ImcTEMP) expr).temp == frame.FP))
+				return true;
+			if (expr instanceof ImcMEM)
+				return staticLink(((ImcMEM) expr).addr);
+			return false;
+		}
+
+	}
+
+}
@@ -18,9 +18,35 @@ import compiler.phases.imcgen.*;
  */
 public class ChunkGenerator extends AbsFullVisitor<Object, Object> {
 
+	/**
+	 * The labels of functions and global variables chunks are generated for, or
+	 * {@code null} if chunks are generated for all of them.
+	 */
+	private final Set<Label> liveLabels;
+
+	/** Whether operands are hoisted only when side effects require it. */
+	private final boolean commute = compiler.Main.cmdLineArgValue("--commute") != null;
+
+	public ChunkGenerator() {
+		this(null);
+	}
+
+	/**
+	 * Constructs a new chunk generator that omits unreachable functions and
+	 * global variables.
+	 *
+	 * @param liveLabels The labels of functions and global variables chunks are
+	 *                   generated for.
+	 */
+	public ChunkGenerator(Set<Label> liveLabels) {
+		this.liveLabels = liveLabels;
+	}
+
 	public Object visit(AbsFunDef funDef, Object visArg) {
 		funDef.value.accept(this, null);
 		Frame frame = Frames.frames.get(funDef);
+		if ((liveLabels != null) && !liveLabels.contains(frame.label))
+			return null;
 
 		Label entryLabel = new Label();
 		Label exitLabel = new Label();
@@ -28,17 +54,22 @@ public class ChunkGenerator extends AbsFullVisitor<Object, Object> {
 
 		canonStmts.add(new ImcLABEL(entryLabel));
 		ImcExpr bodyExpr = ImcGen.exprImCode.get(funDef.value);
+		ImcFactory factory = ImcGen.factories.get(frame);
+		if (factory == null)
+			factory = new ImcFactory(false);
 		ImcStmt bodyStmt = new ImcMOVE(new ImcTEMP(frame.RV), bodyExpr);
-		canonStmts.addAll(bodyStmt.accept(new StmtCanonizer(), null));
+		canonStmts.addAll(bodyStmt.accept(new StmtCanonizer(commute, factory), null));
 		canonStmts.add(new ImcJUMP(exitLabel));
 		Vector<ImcStmt> linearStmts = linearize(canonStmts);
+		if (Profile.used() != null)
+			linearStmts = layout(linearStmts, Profile.used());
 		Chunks.codeChunks.add(new CodeChunk(frame, linearStmts, entryLabel, exitLabel));
 		return null;
 	}
 
 	public Object visit(AbsVarDecl varDecl, Object visArg) {
 		Access access = Frames.accesses.get(varDecl);
-		if (access instanceof AbsAccess) {
+		if ((access instanceof AbsAccess) && ((liveLabels == null) || liveLabels.contains(((AbsAccess) access).label))) {
 			Chunks.dataChunks.add(new DataChunk((AbsAccess) access));
 		}
 		return null;
@@ -46,6 +77,160 @@ public class ChunkGenerator extends AbsFullVisitor<Object, Object> {
 
 	//
 
+	/**
+	 * Reorders the basic blocks of linearized statements so that each block is
+	 * followed by its more frequent successor, which makes the jump to it
+	 * unnecessary. The profile decides between the targets of a conditional jump
+	 * (inverting its condition if the positive target follows); without the
+	 * counts the negative target is preferred as in the original order.
+	 * Unreachable blocks are dropped.
+	 */
+	private Vector<ImcStmt> layout(Vector<ImcStmt> stmts, Profile profile) {
+		Vector<ControlFlowGraph.Block> cfgBlocks = new ControlFlowGraph(stmts).blocks();
+		Vector<Vector<ImcStmt>> blocks = new Vector<Vector<ImcStmt>>();
+		HashMap<Label, Integer> labelBlocks = new HashMap<Label, Integer>();
+		for (ControlFlowGraph.Block cfgBlock : cfgBlocks) {
+			Vector<ImcStmt> block = new Vector<ImcStmt>(stmts.subList(cfgBlock.beg, cfgBlock.end));
+			if (block.firstElement() instanceof ImcLABEL)
+				labelBlocks.put(((ImcLABEL) block.firstElement()).label, blocks.size());
+			else if (!blocks.isEmpty())
+				continue;
+			// Each block ends with a jump.
+			ImcStmt last = block.lastElement();
+			if (!(last instanceof ImcJUMP) && !(last instanceof ImcCJUMP)) {
+				if (cfgBlock.end == stmts.size())
+					return stmts;
+				block.add(new ImcJUMP(((ImcLABEL) stmts.get(cfgBlock.end)).label));
+			}
+			blocks.add(block);
+		}
+
+		// Conditional jumps skip the jumps inserted by linearization.
+		for (Vector<ImcStmt> block : blocks) {
+			if (!(block.lastElement() instanceof ImcCJUMP))
+				continue;
+			ImcCJUMP cjump = (ImcCJUMP) block.lastElement();
+			Integer negBlock = labelBlocks.get(cjump.negLabel);
+			if ((negBlock != null) && (blocks.get(negBlock).size() == 2) && !ImcGen.labelPoints.containsKey(cjump.negLabel))
+				block.set(block.size() - 1, new ImcCJUMP(cjump.cond, cjump.posLabel,
+						((ImcJUMP) blocks.get(negBlock).lastElement()).label));
+		}
+
+		boolean[] reachable = new boolean[blocks.size()];
+		Stack<Integer> work = new Stack<Integer>();
+		work.push(0);
+		while (!work.isEmpty()) {
+			int b = work.pop();
+			if (reachable[b])
+				continue;
+			reachable[b] = true;
+			for (Label label : targets(blocks.get(b).lastElement())) {
+				if (labelBlocks.containsKey(label))
+					work.push(labelBlocks.get(label));
+			}
+		}
+
+		// Traces following the preferred successors.
+		boolean[] placed = new boolean[blocks.size()];
+		Vector<Integer> order = new Vector<Integer>();
+		for (int b = 0; b < blocks.size(); b++) {
+			int cur = b;
+			while ((cur >= 0) && reachable[cur] && !placed[cur]) {
+				placed[cur] = true;
+				order.add(cur);
+				int next = -1;
+				for (Label label : preferred(blocks.get(cur).lastElement(), profile)) {
+					Integer succ = labelBlocks.get(label);
+					if ((succ != null) && !placed[succ]) {
+						next = succ;
+						break;
+					}
+				}
+				cur = next;
+			}
+		}
+
+		Vector<ImcStmt> layoutStmts = new Vector<ImcStmt>();
+		for (int o = 0; o < order.size(); o++) {
+			Vector<ImcStmt> block = blocks.get(order.get(o));
+			Label nextLabel = (o + 1 < order.size()) ? ((ImcLABEL) blocks.get(order.get(o + 1)).firstElement()).label
+					: null;
+			layoutStmts.addAll(block.subList(0, block.size() - 1));
+			ImcStmt last = block.lastElement();
+			if (last instanceof ImcJUMP) {
+				if (((ImcJUMP) last).label != nextLabel)
+					layoutStmts.add(last);
+				continue;
+			}
+			ImcCJUMP cjump = (ImcCJUMP) last;
+			if (cjump.negLabel == nextLabel)
+				layoutStmts.add(cjump);
+			else if (cjump.posLabel == nextLabel)
+				layoutStmts.add(new ImcCJUMP(negate(cjump.cond), cjump.negLabel, cjump.posLabel));
+			else {
+				Label negLabel = new Label();
+				layoutStmts.add(new ImcCJUMP(cjump.cond, cjump.posLabel, negLabel));
+				layoutStmts.add(new ImcLABEL(negLabel));
+				layoutStmts.add(new ImcJUMP(cjump.negLabel));
+			}
+		}
+		return layoutStmts;
+	}
+
+	private Label[] targets(ImcStmt jump) {
+		if (jump instanceof ImcJUMP)
+			return new Label[] { ((ImcJUMP) jump).label };
+		return new Label[] { ((ImcCJUMP) jump).posLabel, ((ImcCJUMP) jump).negLabel };
+	}
+
+	/**
+	 * Returns the targets of a jump, the preferred successor first.
+	 */
+	private Label[] preferred(ImcStmt jump, Profile profile) {
+		if (jump instanceof ImcJUMP)
+			return targets(jump);
+		ImcCJUMP cjump = (ImcCJUMP) jump;
+		long[] counts = null;
+		String posPoint = ImcGen.labelPoints.get(cjump.posLabel);
+		String negPoint = ImcGen.labelPoints.get(cjump.negLabel);
+		if ((posPoint != null) && Profile.isBranch(posPoint))
+			counts = profile.branch(posPoint);
+		else if ((negPoint != null) && Profile.isBranch(negPoint)) {
+			counts = profile.branch(negPoint);
+			if (counts != null)
+				counts = new long[] { counts[1], counts[0] };
+		}
+		if ((counts != null) && (counts[0] > counts[1]))
+			return new Label[] { cjump.posLabel, cjump.negLabel };
+		return new Label[] { cjump.negLabel, cjump.posLabel };
+	}
+
+	/**
+	 * Returns the negation of a condition.
+	 */
+	private ImcExpr negate(ImcExpr cond) {
+		if (cond instanceof ImcBINOP) {
+			ImcBINOP binOp = (ImcBINOP) cond;
+			switch (binOp.oper) {
+			case EQU:
+				return new ImcBINOP(ImcBINOP.Oper.NEQ, binOp.fstExpr, binOp.sndExpr);
+			case NEQ:
+				return new ImcBINOP(ImcBINOP.Oper.EQU, binOp.fstExpr, binOp.sndExpr);
+			case LTH:
+				return new ImcBINOP(ImcBINOP.Oper.GEQ, binOp.fstExpr, binOp.sndExpr);
+			case GEQ:
+				return new ImcBINOP(ImcBINOP.Oper.LTH, binOp.fstExpr, binOp.sndExpr);
+			case GTH:
+				return new ImcBINOP(ImcBINOP.Oper.LEQ, binOp.fstExpr, binOp.sndExpr);
+			case LEQ:
+				return new ImcBINOP(ImcBINOP.Oper.GTH, binOp.fstExpr, binOp.sndExpr);
+			default:
+				break;
+			}
+		}
+		return new ImcUNOP(ImcUNOP.Oper.NOT, cond);
+	}
+
 	private Vector<ImcStmt> linearize(Vector<ImcStmt> stmts) {
 		Vector<ImcStmt> linearStmts = new Vector<ImcStmt>();
 		for (int s = 0; s < stmts.size(); s++) {
@@ -4,6 +4,7 @@
 package compiler.phases.chunks;
 
 import compiler.common.logger.*;
+import compiler.data.layout.*;
 import compiler.data.chunk.*;
 import compiler.data.imcode.*;
 import compiler.data.imcode.visitor.*;
@@ -39,6 +40,12 @@ public class ChunkLogger implements ImcVisitor<Object, Object> {
 		logger.begElement("datachunk");
 		logger.addAttribute("label", dataChunk.label.name);
 		logger.addAttribute("size", Long.toString(dataChunk.size));
+		if (dataChunk.init() != null) {
+			StringBuffer init = new StringBuffer();
+			for (java.util.Map.Entry<Long, Long> value : dataChunk.init().entrySet())
+				init.append((init.length() == 0 ? "" : " ") + "[" + value.getKey() + "]=" + value.getValue());
+			logger.addAttribute("init", init.toString());
+		}
 		logger.endElement();
 	}
 
@@ -49,6 +56,14 @@ public class ChunkLogger implements ImcVisitor<Object, Object> {
 		logger.addAttribute("entrylabel", codeChunk.entryLabel.name);
 		logger.addAttribute("exitlabel", codeChunk.exitLabel.name);
 		codeChunk.frame.log(logger);
+		if ((Chunks.callGraph != null) && (Chunks.callGraph.summary(codeChunk.frame.label) != null)) {
+			Chunks.callGraph.summary(codeChunk.frame.label).log(logger);
+			for (Label callee : Chunks.callGraph.callees(codeChunk.frame.label)) {
+				logger.begElement("callee");
+				logger.addAttribute("label", callee.name);
+				logger.endElement();
+			}
+		}
 		for (ImcStmt stmt : codeChunk.stmts()) {
 			logger.begElement("stmt");
 			stmt.accept(new ChunkLogger(logger), null);
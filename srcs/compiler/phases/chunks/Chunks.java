@@ -16,6 +16,9 @@ public class Chunks extends Phase {
 
 	public static Vector<CodeChunk> codeChunks = new Vector<CodeChunk>();
 
+	/** The call graph of the program. */
+	public static CallGraph callGraph = null;
+
 	public Chunks() {
 		super("chunks");
 	}
@@ -0,0 +1,328 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.chunks;
+
+import java.util.*;
+import compiler.data.layout.*;
+import compiler.data.imcode.*;
+import compiler.data.chunk.*;
+
+/**
+ * Compile-time evaluation of calls and of the initialization of global
+ * variables.
+ *
+ * Within each basic block temporary variables holding constants are tracked.
+ * A call of a pure function with constant arguments is evaluated by the
+ * interpreter (with a limited number of statements executed) and replaced by
+ * its result. Afterwards, the stores of constants to global variables that
+ * {@code _main} performs before anything else are moved into the initial
+ * images of data chunks.
+ *
+ * @author sliva
+ */
+public class CompileTimeEvaluator {
+
+	/** The maximal number of statements executed per evaluated call. */
+	private static final long budget = 100000;
+
+	/**
+	 * A value known at compile time: a constant, an address within a data chunk
+	 * or an address within the frame.
+	 */
+	private static class Value {
+
+		/**
+		 * The label of a data chunk, the frame pointer or {@code null} for a
+		 * constant.
+		 */
+		final Object base;
+
+		/** The constant or the offset within a data chunk. */
+		final long offset;
+
+		Value(Object base, long offset) {
+			this.base = base;
+			this.offset = offset;
+		}
+
+	}
+
+	/** The call graph of the program. */
+	private final CallGraph callGraph;
+
+	/**
+	 * The interpreter evaluating calls (or {@code null} if no call has been
+	 * evaluated yet).
+	 */
+	private Interpreter interpreter = null;
+
+	/** Maps labels of data chunks to data chunks. */
+	private final HashMap<Label, DataChunk> dataChunks = new HashMap<Label, DataChunk>();
+
+	/** Maps labels of data chunks to their initial images. */
+	private final HashMap<Label, TreeMap<Long, Long>> images = new HashMap<Label, TreeMap<Long, Long>>();
+
+	/** The values of temporary variables known within the current basic block. */
+	private final HashMap<Temp, Value> values = new HashMap<Temp, Value>();
+
+	/** The number of calls evaluated. */
+	private int numEvalCalls = 0;
+
+	/** The number of stores moved into the initial images of data chunks. */
+	private int numInitStores = 0;
+
+	/**
+	 * Constructs a new compile-time evaluator.
+	 *
+	 * @param callGraph The call graph of the program.
+	 */
+	public CompileTimeEvaluator(CallGraph callGraph) {
+		this.callGraph = callGraph;
+		for (DataChunk dataChunk : Chunks.dataChunks)
+			dataChunks.put(dataChunk.label, dataChunk);
+	}
+
+	/**
+	 * Evaluates calls within all code chunks and the initialization of global
+	 * variables; {@link Chunks#codeChunks} and {@link Chunks#dataChunks} are
+	 * replaced accordingly.
+	 */
+	public void evaluate() {
+		for (int c = 0; c < Chunks.codeChunks.size(); c++) {
+			CodeChunk codeChunk = Chunks.codeChunks.get(c);
+			Vector<ImcStmt> stmts = evalCalls(codeChunk.stmts());
+			Chunks.codeChunks.set(c, new CodeChunk(codeChunk.frame, stmts, codeChunk.entryLabel, codeChunk.exitLabel));
+		}
+
+		for (int c = 0; c < Chunks.codeChunks.size(); c++) {
+			CodeChunk codeChunk = Chunks.codeChunks.get(c);
+			if (!codeChunk.frame.label.name.equals("_main") || !callGraph.callers(codeChunk.frame.label).isEmpty())
+				continue;
+			Vector<ImcStmt> stmts = evalInit(codeChunk.stmts(), codeChunk.frame);
+			Chunks.codeChunks.set(c, new CodeChunk(codeChunk.frame, stmts, codeChunk.entryLabel, codeChunk.exitLabel));
+		}
+		for (int d = 0; d < Chunks.dataChunks.size(); d++) {
+			DataChunk dataChunk = Chunks.dataChunks.get(d);
+			TreeMap<Long, Long> image = images.get(dataChunk.label);
+			if (image != null)
+				Chunks.dataChunks.set(d, new DataChunk(dataChunk.label, dataChunk.size, image));
+		}
+	}
+
+	/**
+	 * Returns the number of calls evaluated.
+	 *
+	 * @return The number of calls evaluated.
+	 */
+	public int numEvalCalls() {
+		return numEvalCalls;
+	}
+
+	/**
+	 * Returns the number of stores moved into the initial images of data chunks.
+	 *
+	 * @return The number of stores moved.
+	 */
+	public int numInitStores() {
+		return numInitStores;
+	}
+
+	/**
+	 * Replaces calls of pure functions with constant arguments by their results.
+	 */
+	private Vector<ImcStmt> evalCalls(Vector<ImcStmt> stmts) {
+		Vector<ImcStmt> evalStmts = new Vector<ImcStmt>();
+		values.clear();
+		for (ImcStmt stmt : stmts) {
+			if ((stmt instanceof ImcLABEL) || (stmt instanceof ImcJUMP) || (stmt instanceof ImcCJUMP)) {
+				values.clear();
+				evalStmts.add(stmt);
+				continue;
+			}
+			if ((stmt instanceof ImcMOVE) && (((ImcMOVE) stmt).dst instanceof ImcTEMP)) {
+				Temp dst = ((ImcTEMP) ((ImcMOVE) stmt).dst).temp;
+				ImcExpr src = ((ImcMOVE) stmt).src;
+				Value value = null;
+				if (src instanceof ImcCALL) {
+					Long result = evalCall((ImcCALL) src);
+					if (result != null) {
+						stmt = new ImcMOVE(new ImcTEMP(dst), new ImcCONST(result));
+						value = new Value(null, result);
+					}
+				} else
+					value = eval(src, null);
+				if (value == null)
+					values.remove(dst);
+				else
+					values.put(dst, value);
+			}
+			evalStmts.add(stmt);
+		}
+		return evalStmts;
+	}
+
+	/**
+	 * Evaluates a call if the function is pure and all arguments but the static
+	 * link are constant.
+	 *
+	 * @return The result of the call or {@code null} if it cannot be evaluated.
+	 */
+	private Long evalCall(ImcCALL call) {
+		if (!callGraph.isDefined(call.label) || !callGraph.summary(call.label).pure())
+			return null;
+		Vector<ImcExpr> args = call.args();
+		Long[] argValues = new Long[args.size()];
+		argValues[0] = 0L;
+		for (int a = 1; a < args.size(); a++) {
+			Value value = eval(args.get(a), null);
+			if ((value == null) || (value.base != null))
+				return null;
+			argValues[a] = value.offset;
+		}
+		if (interpreter == null)
+			interpreter = new Interpreter(Chunks.dataChunks, Chunks.codeChunks, true);
+		try {
+			Long result = interpreter.evaluate(call.label, argValues, budget);
+			numEvalCalls++;
+			return result;
+		} catch (Interpreter.EvalAbort __) {
+			return null;
+		}
+	}
+
+	/**
+	 * Moves the stores of constants to global variables performed at the very
+	 * beginning of {@code _main} into the initial images of data chunks.
+	 */
+	private Vector<ImcStmt> evalInit(Vector<ImcStmt> stmts, Frame frame) {
+		Vector<ImcStmt> evalStmts = new Vector<ImcStmt>();
+		values.clear();
+		values.put(frame.FP, new Value(frame.FP, 0));
+		int s = 0;
+		if ((s < stmts.size()) && (stmts.get(s) instanceof ImcLABEL))
+			evalStmts.add(stmts.get(s++));
+		for (; s < stmts.size(); s++) {
+			ImcStmt stmt = stmts.get(s);
+			if (!(stmt instanceof ImcMOVE) || (((ImcMOVE) stmt).src instanceof ImcCALL))
+				break;
+			ImcExpr dst = ((ImcMOVE) stmt).dst;
+			ImcExpr src = ((ImcMOVE) stmt).src;
+			if (dst instanceof ImcTEMP) {
+				Value value = eval(src, images);
+				if ((value == null) && !(src instanceof ImcTEMP) && !(src instanceof ImcBINOP)
+						&& !(src instanceof ImcUNOP) && !frameLoad(src))
+					break;
+				// A global read at run time must not see the stores moved after it.
+				if (globalLoad(src))
+					break;
+				if (value == null)
+					values.remove(((ImcTEMP) dst).temp);
+				else
+					values.put(((ImcTEMP) dst).temp, value);
+				evalStmts.add(stmt);
+				continue;
+			}
+			Value addr = eval(((ImcMEM) dst).addr, null);
+			if ((addr != null) && (addr.base == frame.FP)) {
+				// Stores to local variables stay where they are.
+				if (globalLoad(src))
+					break;
+				evalStmts.add(stmt);
+				continue;
+			}
+			Value value = eval(src, images);
+			if ((addr == null) || !(addr.base instanceof Label) || (value == null) || (value.base != null))
+				break;
+			// Only word-aligned stores within a data chunk are moved so that images never overlap.
+			Label label = (Label) addr.base;
+			if ((addr.offset < 0) || (addr.offset % 8 != 0) || (addr.offset + 8 > dataChunks.get(label).size))
+				break;
+			TreeMap<Long, Long> image = images.get(label);
+			if (image == null) {
+				image = new TreeMap<Long, Long>();
+				images.put(label, image);
+			}
+			image.put(addr.offset, value.offset);
+			numInitStores++;
+		}
+		for (; s < stmts.size(); s++)
+			evalStmts.add(stmts.get(s));
+		return evalStmts;
+	}
+
+	/**
+	 * Returns whether an expression is a load from the frame.
+	 */
+	private boolean frameLoad(ImcExpr expr) {
+		if (!(expr instanceof ImcMEM))
+			return false;
+		Value addr = eval(((ImcMEM) expr).addr, null);
+		return (addr != null) && (addr.base instanceof Temp);
+	}
+
+	/**
+	 * Returns whether an expression might load from memory other than the frame.
+	 */
+	private boolean globalLoad(ImcExpr expr) {
+		if ((expr instanceof ImcCONST) || (expr instanceof ImcNAME) || (expr instanceof ImcTEMP))
+			return false;
+		if (expr instanceof ImcBINOP)
+			return globalLoad(((ImcBINOP) expr).fstExpr) || globalLoad(((ImcBINOP) expr).sndExpr);
+		if (expr instanceof ImcUNOP)
+			return globalLoad(((ImcUNOP) expr).subExpr);
+		if (expr instanceof ImcMEM)
+			return !frameLoad(expr) || globalLoad(((ImcMEM) expr).addr);
+		return true;
+	}
+
+	/**
+	 * Evaluates an expression.
+	 *
+	 * @param expr   The expression.
+	 * @param images The initial images of data chunks memory is read from, or
+	 *               {@code null} if memory must not be read.
+	 * @return The value or {@code null} if it is not known at compile time.
+	 */
+	private Value eval(ImcExpr expr, HashMap<Label, TreeMap<Long, Long>> images) {
+		if (expr instanceof ImcCONST)
+			return new Value(null, ((ImcCONST) expr).value);
+		if (expr instanceof ImcNAME)
+			return dataChunks.containsKey(((ImcNAME) expr).label) ? new Value(((ImcNAME) expr).label, 0) : null;
+		if (expr instanceof ImcTEMP)
+			return values.get(((ImcTEMP) expr).temp);
+		if (expr instanceof ImcBINOP) {
+			ImcBINOP binOp = (ImcBINOP) expr;
+			Value fstValue = eval(binOp.fstExpr, images);
+			Value sndValue = eval(binOp.sndExpr, images);
+			if ((fstValue == null) || (sndValue == null))
+				return null;
+			if ((fstValue.base == null) && (sndValue.base == null)) {
+				Long value = ConstFolder.fold(binOp.oper, fstValue.offset, sndValue.offset);
+				return (value == null) ? null : new Value(null, value);
+			}
+			if ((binOp.oper == ImcBINOP.Oper.ADD) && (sndValue.base == null))
+				return new Value(fstValue.base, fstValue.offset + sndValue.offset);
+			if ((binOp.oper == ImcBINOP.Oper.ADD) && (fstValue.base == null))
+				return new Value(sndValue.base, fstValue.offset + sndValue.offset);
+			if ((binOp.oper == ImcBINOP.Oper.SUB) && (sndValue.base == null))
+				return new Value(fstValue.base, fstValue.offset - sndValue.offset);
+			return null;
+		}
+		if (expr instanceof ImcUNOP) {
+			Value subValue = eval(((ImcUNOP) expr).subExpr, images);
+			if ((subValue == null) || (subValue.base != null))
+				return null;
+			return new Value(null, ConstFolder.fold(((ImcUNOP) expr).oper, subValue.offset));
+		}
+		if ((expr instanceof ImcMEM) && (images != null)) {
+			Value addr = eval(((ImcMEM) expr).addr, images);
+			if ((addr == null) || (addr.base == null) || (images.get(addr.base) == null))
+				return null;
+			Long value = images.get(addr.base).get(addr.offset);
+			return (value == null) ? null : new Value(null, value);
+		}
+		return null;
+	}
+
+}
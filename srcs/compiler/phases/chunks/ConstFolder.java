@@ -0,0 +1,75 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.chunks;
+
+import compiler.data.imcode.*;
+
+/**
+ * Folding operators applied to constant operands (with the same semantics as
+ * the interpreter).
+ *
+ * @author sliva
+ */
+public class ConstFolder {
+
+	/**
+	 * Computes the value of a binary operator applied to constant operands.
+	 *
+	 * @param oper   The operator.
+	 * @param fstVal The value of the first operand.
+	 * @param sndVal The value of the second operand.
+	 * @return The value or {@code null} if it is undefined (division by zero).
+	 */
+	public static Long fold(ImcBINOP.Oper oper, long fstVal, long sndVal) {
+		switch (oper) {
+		case IOR:
+			return (fstVal != 0) | (sndVal != 0) ? 1L : 0L;
+		case XOR:
+			return (fstVal != 0) ^ (sndVal != 0) ? 1L : 0L;
+		case AND:
+			return (fstVal != 0) & (sndVal != 0) ? 1L : 0L;
+		case EQU:
+			return (fstVal == sndVal) ? 1L : 0L;
+		case NEQ:
+			return (fstVal != sndVal) ? 1L : 0L;
+		case LEQ:
+			return (fstVal <= sndVal) ? 1L : 0L;
+		case GEQ:
+			return (fstVal >= sndVal) ? 1L : 0L;
+		case LTH:
+			return (fstVal < sndVal) ? 1L : 0L;
+		case GTH:
+			return (fstVal > sndVal) ? 1L : 0L;
+		case ADD:
+			return fstVal + sndVal;
+		case SUB:
+			return fstVal - sndVal;
+		case MUL:
+			return fstVal * sndVal;
+		case DIV:
+			return (sndVal == 0) ? null : fstVal / sndVal;
+		case MOD:
+			return (sndVal == 0) ? null : fstVal % sndVal;
+		}
+		return null;
+	}
+
+	/**
+	 * Computes the value of a unary operator applied to a constant operand.
+	 *
+	 * @param oper   The operator.
+	 * @param subVal The value of the operand.
+	 * @return The value.
+	 */
+	public static Long fold(ImcUNOP.Oper oper, long subVal) {
+		switch (oper) {
+		case NOT:
+			return (subVal == 0) ? 1L : 0L;
+		case NEG:
+			return -subVal;
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,190 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.chunks;
+
+import java.util.*;
+import compiler.data.layout.*;
+import compiler.data.imcode.*;
+import compiler.data.chunk.*;
+
+/**
+ * Constant propagation and folding.
+ *
+ * A temporary variable is constant within a code chunk if all its definitions
+ * assign it the same constant value. Uses of constant temporary variables are
+ * replaced by their values, operators applied to constant operands are folded,
+ * conditional jumps with constant conditions become jumps and basic blocks that
+ * can no longer be reached are removed.
+ *
+ * @author sliva
+ */
+public class ConstPropagator {
+
+	/** The number of statements folded. */
+	private int numFoldedStmts = 0;
+
+	/** The number of unreachable statements removed. */
+	private int numRemovedStmts = 0;
+
+	/**
+	 * Propagates constants within all code chunks; {@link Chunks#codeChunks} is
+	 * replaced accordingly.
+	 *
+	 * @return {@code true} if any code chunk has changed.
+	 */
+	public boolean propagate() {
+		int numChanges = numFoldedStmts + numRemovedStmts;
+		for (int c = 0; c < Chunks.codeChunks.size(); c++) {
+			CodeChunk codeChunk = Chunks.codeChunks.get(c);
+			Vector<ImcStmt> stmts = fold(codeChunk.stmts(), codeChunk.frame, new HashMap<Temp, Long>());
+			Chunks.codeChunks.set(c, new CodeChunk(codeChunk.frame, stmts, codeChunk.entryLabel, codeChunk.exitLabel));
+		}
+		return numFoldedStmts + numRemovedStmts != numChanges;
+	}
+
+	/**
+	 * Returns the number of statements folded.
+	 *
+	 * @return The number of statements folded.
+	 */
+	public int numFoldedStmts() {
+		return numFoldedStmts;
+	}
+
+	/**
+	 * Returns the number of unreachable statements removed.
+	 *
+	 * @return The number of unreachable statements removed.
+	 */
+	public int numRemovedStmts() {
+		return numRemovedStmts;
+	}
+
+	/**
+	 * Folds constants and removes branches that cannot be taken.
+	 *
+	 * @param stmts The linearized statements.
+	 * @param frame The frame of the code chunk.
+	 * @param seeds The values of temporary variables defined on entry.
+	 * @return The folded statements.
+	 */
+	public Vector<ImcStmt> fold(Vector<ImcStmt> stmts, Frame frame, HashMap<Temp, Long> seeds) {
+		HashMap<Temp, Long> consts = constTemps(stmts, frame, seeds);
+		HashMap<Temp, ImcCONST> subst = new HashMap<Temp, ImcCONST>();
+		for (Map.Entry<Temp, Long> entry : consts.entrySet())
+			subst.put(entry.getKey(), new ImcCONST(entry.getValue()));
+		TempSubstitutor substitutor = new TempSubstitutor(subst);
+		Vector<ImcStmt> foldedStmts = new Vector<ImcStmt>();
+		for (ImcStmt stmt : stmts) {
+			ImcStmt foldedStmt = substitutor.subst(stmt);
+			if ((foldedStmt instanceof ImcMOVE) && (((ImcMOVE) foldedStmt).dst instanceof ImcTEMP)
+					&& !(((ImcMOVE) foldedStmt).src instanceof ImcCONST)) {
+				Long value = consts.get(((ImcTEMP) ((ImcMOVE) foldedStmt).dst).temp);
+				if (value != null)
+					foldedStmt = new ImcMOVE(((ImcMOVE) foldedStmt).dst, new ImcCONST(value));
+			}
+			if ((foldedStmt instanceof ImcCJUMP) && (((ImcCJUMP) foldedStmt).cond instanceof ImcCONST)) {
+				ImcCJUMP cjump = (ImcCJUMP) foldedStmt;
+				foldedStmt = new ImcJUMP((((ImcCONST) cjump.cond).value != 0) ? cjump.posLabel : cjump.negLabel);
+			}
+			if (foldedStmt != stmt)
+				numFoldedStmts++;
+			foldedStmts.add(foldedStmt);
+		}
+
+		// Removal of unreachable basic blocks.
+		ControlFlowGraph cfg = new ControlFlowGraph(foldedStmts);
+		boolean[] reachable = cfg.reachable();
+		Vector<ImcStmt> liveStmts = new Vector<ImcStmt>();
+		for (ControlFlowGraph.Block block : cfg.blocks()) {
+			if (reachable[block.index])
+				liveStmts.addAll(foldedStmts.subList(block.beg, block.end));
+			else
+				numRemovedStmts += block.end - block.beg;
+		}
+		return liveStmts;
+	}
+
+	/**
+	 * Computes the temporary variables all definitions of which assign the same
+	 * constant. Registers holding arguments are also defined on entry, by the
+	 * seeds if given and by unknown values otherwise.
+	 *
+	 * @param stmts The linearized statements.
+	 * @param frame The frame of the code chunk.
+	 * @param seeds The values of temporary variables defined on entry.
+	 * @return The constant temporary variables and their values.
+	 */
+	public static HashMap<Temp, Long> constTemps(Vector<ImcStmt> stmts, Frame frame, HashMap<Temp, Long> seeds) {
+		HashMap<Temp, Vector<ImcExpr>> defs = new HashMap<Temp, Vector<ImcExpr>>();
+		for (ImcStmt stmt : stmts) {
+			if ((stmt instanceof ImcMOVE) && (((ImcMOVE) stmt).dst instanceof ImcTEMP)) {
+				Temp temp = ((ImcTEMP) ((ImcMOVE) stmt).dst).temp;
+				if (defs.get(temp) == null)
+					defs.put(temp, new Vector<ImcExpr>());
+				defs.get(temp).add(((ImcMOVE) stmt).src);
+			}
+		}
+		HashSet<Temp> unknownArgs = new HashSet<Temp>();
+		for (int a = 0; a < frame.numArgTemps(); a++) {
+			if ((frame.argTemp(a) != null) && !seeds.containsKey(frame.argTemp(a)))
+				unknownArgs.add(frame.argTemp(a));
+		}
+		HashMap<Temp, Long> consts = new HashMap<Temp, Long>();
+		for (Temp temp : seeds.keySet()) {
+			if (defs.get(temp) == null)
+				consts.put(temp, seeds.get(temp));
+		}
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (Temp temp : defs.keySet()) {
+				if (consts.containsKey(temp) || unknownArgs.contains(temp))
+					continue;
+				Long value = seeds.get(temp);
+				boolean constant = true;
+				for (ImcExpr def : defs.get(temp)) {
+					Long defValue = eval(def, consts);
+					if ((defValue == null) || ((value != null) && !value.equals(defValue))) {
+						constant = false;
+						break;
+					}
+					value = defValue;
+				}
+				if (constant) {
+					consts.put(temp, value);
+					changed = true;
+				}
+			}
+		}
+		return consts;
+	}
+
+	/**
+	 * Evaluates an expression over constant temporary variables.
+	 *
+	 * @param expr   The expression.
+	 * @param consts The constant temporary variables and their values.
+	 * @return The value or {@code null} if it is not constant.
+	 */
+	public static Long eval(ImcExpr expr, HashMap<Temp, Long> consts) {
+		if (expr instanceof ImcCONST)
+			return ((ImcCONST) expr).value;
+		if (expr instanceof ImcTEMP)
+			return consts.get(((ImcTEMP) expr).temp);
+		if (expr instanceof ImcBINOP) {
+			Long fstValue = eval(((ImcBINOP) expr).fstExpr, consts);
+			Long sndValue = eval(((ImcBINOP) expr).sndExpr, consts);
+			if ((fstValue == null) || (sndValue == null))
+				return null;
+			return ConstFolder.fold(((ImcBINOP) expr).oper, fstValue, sndValue);
+		}
+		if (expr instanceof ImcUNOP) {
+			Long subValue = eval(((ImcUNOP) expr).subExpr, consts);
+			return (subValue == null) ? null : ConstFolder.fold(((ImcUNOP) expr).oper, subValue);
+		}
+		return null;
+	}
+
+}
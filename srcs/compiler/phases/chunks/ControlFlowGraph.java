@@ -0,0 +1,129 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.chunks;
+
+import java.util.*;
+import compiler.data.layout.*;
+import compiler.data.imcode.*;
+
+/**
+ * The control flow graph of linearized statements of a code chunk.
+ *
+ * A basic block starts with the first statement, at each label and after each
+ * jump. Jumps to labels outside the statements (i.e., to the exit label of the
+ * code chunk) have no successor.
+ *
+ * @author sliva
+ */
+public class ControlFlowGraph {
+
+	/**
+	 * A basic block.
+	 *
+	 * @author sliva
+	 */
+	public static class Block {
+
+		/** The index of this block. */
+		public final int index;
+
+		/** The index of the first statement of this block. */
+		public final int beg;
+
+		/** The index of the statement following the last statement of this block. */
+		public final int end;
+
+		/** The indices of successor blocks. */
+		public final Vector<Integer> succs = new Vector<Integer>();
+
+		/** The indices of predecessor blocks. */
+		public final Vector<Integer> preds = new Vector<Integer>();
+
+		private Block(int index, int beg, int end) {
+			this.index = index;
+			this.beg = beg;
+			this.end = end;
+		}
+
+	}
+
+	/** The basic blocks in the order of statements. */
+	private final Vector<Block> blocks = new Vector<Block>();
+
+	/**
+	 * Constructs the control flow graph of linearized statements.
+	 *
+	 * @param stmts The linearized statements.
+	 */
+	public ControlFlowGraph(Vector<ImcStmt> stmts) {
+		int beg = 0;
+		for (int s = 0; s < stmts.size(); s++) {
+			ImcStmt stmt = stmts.get(s);
+			if ((stmt instanceof ImcLABEL) && (s > beg)) {
+				blocks.add(new Block(blocks.size(), beg, s));
+				beg = s;
+			}
+			if ((stmt instanceof ImcJUMP) || (stmt instanceof ImcCJUMP)) {
+				blocks.add(new Block(blocks.size(), beg, s + 1));
+				beg = s + 1;
+			}
+		}
+		if (beg < stmts.size())
+			blocks.add(new Block(blocks.size(), beg, stmts.size()));
+
+		HashMap<Label, Integer> labelBlocks = new HashMap<Label, Integer>();
+		for (Block block : blocks) {
+			if (stmts.get(block.beg) instanceof ImcLABEL)
+				labelBlocks.put(((ImcLABEL) stmts.get(block.beg)).label, block.index);
+		}
+		for (Block block : blocks) {
+			ImcStmt last = stmts.get(block.end - 1);
+			if (last instanceof ImcJUMP)
+				addEdge(block, labelBlocks.get(((ImcJUMP) last).label));
+			else if (last instanceof ImcCJUMP) {
+				addEdge(block, labelBlocks.get(((ImcCJUMP) last).posLabel));
+				addEdge(block, labelBlocks.get(((ImcCJUMP) last).negLabel));
+			} else if (block.index + 1 < blocks.size())
+				addEdge(block, block.index + 1);
+		}
+	}
+
+	private void addEdge(Block block, Integer succ) {
+		if ((succ == null) || block.succs.contains(succ))
+			return;
+		block.succs.add(succ);
+		blocks.get(succ).preds.add(block.index);
+	}
+
+	/**
+	 * Returns the basic blocks in the order of statements.
+	 *
+	 * @return The basic blocks.
+	 */
+	public Vector<Block> blocks() {
+		return new Vector<Block>(blocks);
+	}
+
+	/**
+	 * Returns which basic blocks are reachable from the first one.
+	 *
+	 * @return The reachability of basic blocks indexed by their indices.
+	 */
+	public boolean[] reachable() {
+		boolean[] reachable = new boolean[blocks.size()];
+		Stack<Integer> work = new Stack<Integer>();
+		if (!blocks.isEmpty())
+			work.push(0);
+		while (!work.isEmpty()) {
+			int block = work.pop();
+			if (reachable[block])
+				continue;
+			reachable[block] = true;
+			for (int succ : blocks.get(block).succs)
+				work.push(succ);
+		}
+		return reachable;
+	}
+
+}
@@ -0,0 +1,78 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.chunks;
+
+import java.util.*;
+import compiler.data.layout.*;
+import compiler.data.imcode.*;
+import compiler.data.chunk.*;
+
+/**
+ * Copy propagation within basic blocks.
+ *
+ * After a move of one temporary variable to another, uses of the destination
+ * are replaced by uses of the source until either of them is redefined or the
+ * basic block ends. Calls do not kill copies as temporary variables are
+ * preserved across calls.
+ *
+ * @author sliva
+ */
+public class CopyPropagator {
+
+	/** The number of statements a copy has been propagated into. */
+	private int numPropStmts = 0;
+
+	/**
+	 * Propagates copies within all code chunks; {@link Chunks#codeChunks} is
+	 * replaced accordingly.
+	 *
+	 * @return {@code true} if any code chunk has changed.
+	 */
+	public boolean propagate() {
+		int numChanges = numPropStmts;
+		for (int c = 0; c < Chunks.codeChunks.size(); c++) {
+			CodeChunk codeChunk = Chunks.codeChunks.get(c);
+			Vector<ImcStmt> stmts = propagate(codeChunk.stmts());
+			Chunks.codeChunks.set(c, new CodeChunk(codeChunk.frame, stmts, codeChunk.entryLabel, codeChunk.exitLabel));
+		}
+		return numPropStmts != numChanges;
+	}
+
+	/**
+	 * Returns the number of statements a copy has been propagated into.
+	 *
+	 * @return The number of statements.
+	 */
+	public int numPropStmts() {
+		return numPropStmts;
+	}
+
+	/**
+	 * Propagates copies within linearized statements.
+	 */
+	private Vector<ImcStmt> propagate(Vector<ImcStmt> stmts) {
+		HashMap<Temp, ImcTEMP> copies = new HashMap<Temp, ImcTEMP>();
+		TempSubstitutor substitutor = new TempSubstitutor(copies);
+		Vector<ImcStmt> propStmts = new Vector<ImcStmt>();
+		for (ImcStmt stmt : stmts) {
+			if (stmt instanceof ImcLABEL)
+				copies.clear();
+			ImcStmt propStmt = substitutor.subst(stmt);
+			if (propStmt != stmt)
+				numPropStmts++;
+			propStmts.add(propStmt);
+			if ((stmt instanceof ImcJUMP) || (stmt instanceof ImcCJUMP))
+				copies.clear();
+			if ((propStmt instanceof ImcMOVE) && (((ImcMOVE) propStmt).dst instanceof ImcTEMP)) {
+				ImcMOVE move = (ImcMOVE) propStmt;
+				Temp dst = ((ImcTEMP) move.dst).temp;
+				copies.entrySet().removeIf(copy -> (copy.getKey() == dst) || (copy.getValue().temp == dst));
+				if ((move.src instanceof ImcTEMP) && (((ImcTEMP) move.src).temp != dst))
+					copies.put(dst, (ImcTEMP) move.src);
+			}
+		}
+		return propStmts;
+	}
+
+}
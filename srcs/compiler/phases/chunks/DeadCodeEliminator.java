@@ -0,0 +1,147 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.chunks;
+
+import java.util.*;
+import compiler.data.layout.*;
+import compiler.data.imcode.*;
+import compiler.data.chunk.*;
+
+/**
+ * Dead code elimination.
+ *
+ * Moves to temporary variables that are never used anywhere within the code
+ * chunk (the frame pointer and the return value excluded) are removed unless
+ * they perform a call, and so are moves of temporary variables to themselves,
+ * expression statements without calls and basic blocks that cannot be
+ * reached. The elimination is repeated until no further statement can be
+ * removed.
+ *
+ * @author sliva
+ */
+public class DeadCodeEliminator {
+
+	/** The number of statements removed. */
+	private int numRemovedStmts = 0;
+
+	/**
+	 * Eliminates dead code within all code chunks; {@link Chunks#codeChunks} is
+	 * replaced accordingly.
+	 *
+	 * @return {@code true} if any code chunk has changed.
+	 */
+	public boolean eliminate() {
+		int numChanges = numRemovedStmts;
+		for (int c = 0; c < Chunks.codeChunks.size(); c++) {
+			CodeChunk codeChunk = Chunks.codeChunks.get(c);
+			Vector<ImcStmt> stmts = eliminate(codeChunk);
+			Chunks.codeChunks.set(c, new CodeChunk(codeChunk.frame, stmts, codeChunk.entryLabel, codeChunk.exitLabel));
+		}
+		return numRemovedStmts != numChanges;
+	}
+
+	/**
+	 * Returns the number of statements removed.
+	 *
+	 * @return The number of statements removed.
+	 */
+	public int numRemovedStmts() {
+		return numRemovedStmts;
+	}
+
+	/**
+	 * Eliminates dead code within a code chunk.
+	 */
+	private Vector<ImcStmt> eliminate(CodeChunk codeChunk) {
+		Vector<ImcStmt> stmts = codeChunk.stmts();
+
+		ControlFlowGraph cfg = new ControlFlowGraph(stmts);
+		boolean[] reachable = cfg.reachable();
+		Vector<ImcStmt> liveStmts = new Vector<ImcStmt>();
+		for (ControlFlowGraph.Block block : cfg.blocks()) {
+			if (reachable[block.index])
+				liveStmts.addAll(stmts.subList(block.beg, block.end));
+		}
+		numRemovedStmts += stmts.size() - liveStmts.size();
+		stmts = liveStmts;
+
+		boolean changed = true;
+		while (changed) {
+			HashSet<Temp> used = new HashSet<Temp>();
+			used.add(codeChunk.frame.FP);
+			used.add(codeChunk.frame.RV);
+			for (ImcStmt stmt : stmts)
+				uses(stmt, used);
+			liveStmts = new Vector<ImcStmt>();
+			for (ImcStmt stmt : stmts) {
+				if (!isDead(stmt, used))
+					liveStmts.add(stmt);
+			}
+			changed = liveStmts.size() != stmts.size();
+			numRemovedStmts += stmts.size() - liveStmts.size();
+			stmts = liveStmts;
+		}
+		return stmts;
+	}
+
+	/**
+	 * Returns whether a statement can be removed.
+	 */
+	private boolean isDead(ImcStmt stmt, HashSet<Temp> used) {
+		if (stmt instanceof ImcESTMT)
+			return !hasCall(((ImcESTMT) stmt).expr);
+		if (!(stmt instanceof ImcMOVE) || !(((ImcMOVE) stmt).dst instanceof ImcTEMP))
+			return false;
+		ImcMOVE move = (ImcMOVE) stmt;
+		Temp dst = ((ImcTEMP) move.dst).temp;
+		if ((move.src instanceof ImcTEMP) && (((ImcTEMP) move.src).temp == dst))
+			return true;
+		return !used.contains(dst) && !hasCall(move.src);
+	}
+
+	/**
+	 * Collects temporary variables used (i.e., read) by an instruction.
+	 *
+	 * @param instr The instruction.
+	 * @param used  The set the temporary variables are added to.
+	 */
+	public static void uses(ImcInstr instr, Set<Temp> used) {
+		if (instr instanceof ImcTEMP)
+			used.add(((ImcTEMP) instr).temp);
+		else if (instr instanceof ImcMEM)
+			uses(((ImcMEM) instr).addr, used);
+		else if (instr instanceof ImcBINOP) {
+			uses(((ImcBINOP) instr).fstExpr, used);
+			uses(((ImcBINOP) instr).sndExpr, used);
+		} else if (instr instanceof ImcUNOP)
+			uses(((ImcUNOP) instr).subExpr, used);
+		else if (instr instanceof ImcCALL) {
+			for (ImcExpr arg : ((ImcCALL) instr).args())
+				uses(arg, used);
+		} else if (instr instanceof ImcMOVE) {
+			if (!(((ImcMOVE) instr).dst instanceof ImcTEMP))
+				uses(((ImcMOVE) instr).dst, used);
+			uses(((ImcMOVE) instr).src, used);
+		} else if (instr instanceof ImcESTMT)
+			uses(((ImcESTMT) instr).expr, used);
+		else if (instr instanceof ImcCJUMP)
+			uses(((ImcCJUMP) instr).cond, used);
+	}
+
+	/**
+	 * Returns whether an expression contains a call.
+	 */
+	private static boolean hasCall(ImcExpr expr) {
+		if (expr instanceof ImcCALL)
+			return true;
+		if (expr instanceof ImcMEM)
+			return hasCall(((ImcMEM) expr).addr);
+		if (expr instanceof ImcBINOP)
+			return hasCall(((ImcBINOP) expr).fstExpr) || hasCall(((ImcBINOP) expr).sndExpr);
+		if (expr instanceof ImcUNOP)
+			return hasCall(((ImcUNOP) expr).subExpr);
+		return false;
+	}
+
+}
@@ -12,55 +12,176 @@ import compiler.data.imcode.visitor.*;
  * @author sliva
  */
 public class ExprCanonizer implements ImcVisitor<ImcExpr, Vector<ImcStmt>> {
+
+	/**
+	 * Whether operands are left in place unless the statements hoisted from the
+	 * operands that follow them might change their values (instead of moving
+	 * every operand to a new temporary variable).
+	 */
+	private final boolean commute;
+
+	/**
+	 * The factory canonized expressions are produced by (shared with the code
+	 * generator if the function's expressions are hash-consed, so that pure
+	 * expressions are shared within the canonized code as well).
+	 */
+	private final ImcFactory factory;
+
+	public ExprCanonizer() {
+		this(false, new ImcFactory(false));
+	}
+
+	/**
+	 * Constructs a new expression canonizer.
+	 * 
+	 * @param commute Whether operands are hoisted only when side effects require
+	 *                it.
+	 * @param factory The factory canonized expressions are produced by.
+	 */
+	public ExprCanonizer(boolean commute, ImcFactory factory) {
+		this.commute = commute;
+		this.factory = factory;
+	}
 	
 	public ImcExpr visit(ImcBINOP imcBinop, Vector<ImcStmt> stmts) {
+		if (commute) {
+			Vector<ImcExpr> exprs = new Vector<ImcExpr>();
+			exprs.add(imcBinop.fstExpr);
+			exprs.add(imcBinop.sndExpr);
+			exprs = reorder(exprs, stmts);
+			return factory.binop(imcBinop.oper, exprs.get(0), exprs.get(1));
+		}
 		ImcExpr fstExpr = imcBinop.fstExpr.accept(this, stmts);
 		Temp temp1 = new Temp();
-		stmts.add(new ImcMOVE(new ImcTEMP(temp1), fstExpr));
+		stmts.add(new ImcMOVE(factory.temp(temp1), fstExpr));
 		ImcExpr sndExpr = imcBinop.sndExpr.accept(this, stmts);
 		Temp temp2 = new Temp();
-		stmts.add(new ImcMOVE(new ImcTEMP(temp2), sndExpr));
-		return new ImcBINOP(imcBinop.oper, new ImcTEMP(temp1), new ImcTEMP(temp2));
+		stmts.add(new ImcMOVE(factory.temp(temp2), sndExpr));
+		return factory.binop(imcBinop.oper, factory.temp(temp1), factory.temp(temp2));
 	}
 	
 	public ImcExpr visit(ImcCALL imcCall, Vector<ImcStmt> stmts) {
+		if (commute) {
+			Temp temp = new Temp();
+			stmts.add(new ImcMOVE(factory.temp(temp), new ImcCALL(imcCall.label, reorder(imcCall.args(), stmts))));
+			return factory.temp(temp);
+		}
 		Vector<ImcExpr> canonArgs = new Vector<ImcExpr>();
 		for (ImcExpr arg: imcCall.args()) {
 			ImcExpr canonArg = arg.accept(this, stmts);
 			Temp temp = new Temp();
-			stmts.add(new ImcMOVE(new ImcTEMP(temp), canonArg));
-			canonArgs.add(new ImcTEMP(temp));
+			stmts.add(new ImcMOVE(factory.temp(temp), canonArg));
+			canonArgs.add(factory.temp(temp));
 		}
 		Temp temp = new Temp();
-		stmts.add(new ImcMOVE(new ImcTEMP(temp), new ImcCALL(imcCall.label, canonArgs)));
-		return new ImcTEMP(temp);
+		stmts.add(new ImcMOVE(factory.temp(temp), new ImcCALL(imcCall.label, canonArgs)));
+		return factory.temp(temp);
 	}
 
 	public ImcExpr visit(ImcCONST imcConst, Vector<ImcStmt> stmts) {
-		return new ImcCONST(imcConst.value);
+		return factory.constant(imcConst.value);
 	}
 
 	public ImcExpr visit(ImcMEM imcMem, Vector<ImcStmt> stmts) {
 		ImcExpr addr = imcMem.addr.accept(this, stmts);
-		return new ImcMEM(addr);
+		return factory.mem(addr);
 	}
 
 	public ImcExpr visit(ImcNAME imcName, Vector<ImcStmt> stmts) {
-		return new ImcNAME(imcName.label);
+		return factory.name(imcName.label);
 	}
 
 	public ImcExpr visit(ImcSEXPR imcSExpr, Vector<ImcStmt> stmts) {
-		stmts.addAll(imcSExpr.stmt.accept(new StmtCanonizer(), null));
+		stmts.addAll(imcSExpr.stmt.accept(new StmtCanonizer(commute, factory), null));
 		return imcSExpr.expr.accept(this, stmts);
 	}
 	
 	public ImcExpr visit(ImcTEMP imcTemp, Vector<ImcStmt> stmts) {
-		return new ImcTEMP(imcTemp.temp);
+		return factory.temp(imcTemp.temp);
 	}
 	
 	public ImcExpr visit(ImcUNOP imcUnop, Vector<ImcStmt> stmts) {
 		ImcExpr subExpr = imcUnop.subExpr.accept(this, stmts);
-		return new ImcUNOP(imcUnop.oper, subExpr);
+		return factory.unop(imcUnop.oper, subExpr);
+	}
+
+	/**
+	 * Canonizes a list of expressions evaluated from left to right. The
+	 * statements hoisted from all expressions are added to {@code stmts}; an
+	 * expression is moved to a new temporary variable only if the statements
+	 * hoisted from the expressions following it do not commute with it.
+	 * 
+	 * @param exprs The expressions.
+	 * @param stmts The statements hoisted from the expressions.
+	 * @return The canonized expressions.
+	 */
+	public Vector<ImcExpr> reorder(Vector<ImcExpr> exprs, Vector<ImcStmt> stmts) {
+		Vector<ImcExpr> canonExprs = new Vector<ImcExpr>();
+		for (ImcExpr expr : exprs) {
+			Vector<ImcStmt> exprStmts = new Vector<ImcStmt>();
+			ImcExpr canonExpr = expr.accept(this, exprStmts);
+			if (!exprStmts.isEmpty()) {
+				for (int e = 0; e < canonExprs.size(); e++) {
+					if (!commute(exprStmts, canonExprs.get(e))) {
+						Temp temp = new Temp();
+						stmts.add(new ImcMOVE(factory.temp(temp), canonExprs.get(e)));
+						canonExprs.set(e, factory.temp(temp));
+					}
+				}
+				stmts.addAll(exprStmts);
+			}
+			canonExprs.add(canonExpr);
+		}
+		return canonExprs;
+	}
+
+	/**
+	 * Returns whether a canonical expression yields the same value if evaluated
+	 * after the statements instead of before them, i.e., whether the statements
+	 * define no temporary variable the expression reads and, if the expression
+	 * reads memory, neither write to memory nor call a function.
+	 */
+	private static boolean commute(Vector<ImcStmt> stmts, ImcExpr expr) {
+		if ((expr instanceof ImcCONST) || (expr instanceof ImcNAME))
+			return true;
+		HashSet<Temp> temps = new HashSet<Temp>();
+		boolean readsMem = reads(expr, temps);
+		for (ImcStmt stmt : stmts) {
+			if (stmt instanceof ImcMOVE) {
+				ImcMOVE move = (ImcMOVE) stmt;
+				if ((move.dst instanceof ImcTEMP) && temps.contains(((ImcTEMP) move.dst).temp))
+					return false;
+				if (readsMem && ((move.dst instanceof ImcMEM) || (move.src instanceof ImcCALL)))
+					return false;
+			}
+			if (readsMem && (stmt instanceof ImcESTMT) && (((ImcESTMT) stmt).expr instanceof ImcCALL))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Collects the temporary variables a canonical expression reads.
+	 * 
+	 * @return {@code true} if the expression reads memory.
+	 */
+	private static boolean reads(ImcExpr expr, HashSet<Temp> temps) {
+		if (expr instanceof ImcTEMP) {
+			temps.add(((ImcTEMP) expr).temp);
+			return false;
+		}
+		if (expr instanceof ImcMEM) {
+			reads(((ImcMEM) expr).addr, temps);
+			return true;
+		}
+		if (expr instanceof ImcBINOP) {
+			boolean fstMem = reads(((ImcBINOP) expr).fstExpr, temps);
+			boolean sndMem = reads(((ImcBINOP) expr).sndExpr, temps);
+			return fstMem || sndMem;
+		}
+		if (expr instanceof ImcUNOP)
+			return reads(((ImcUNOP) expr).subExpr, temps);
+		return false;
 	}
 
 }
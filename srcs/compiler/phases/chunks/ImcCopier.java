@@ -0,0 +1,137 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.chunks;
+
+import java.util.*;
+import compiler.data.layout.*;
+import compiler.data.imcode.*;
+import compiler.data.imcode.visitor.*;
+import compiler.phases.imcgen.*;
+
+/**
+ * Copies intermediate code, renaming labels.
+ *
+ * Every label defined or jumped to is replaced by its fresh copy, which takes
+ * over the program point of the original label if it has one. Temporary
+ * variables are renamed by {@link #temp(Temp)} and every expression read is
+ * copied by {@link #expr(ImcExpr)}, so subclasses can override either to
+ * substitute something else. The destination of a move is written, not read,
+ * and is thus never substituted as a whole.
+ *
+ * @author sliva
+ */
+public class ImcCopier implements ImcVisitor<ImcInstr, Object> {
+
+	/** Maps labels to their fresh copies. */
+	private final HashMap<Label, Label> labels = new HashMap<Label, Label>();
+
+	/**
+	 * Returns the fresh copy of a label.
+	 *
+	 * @param label The label.
+	 * @return The copy of the label (the same copy on every call).
+	 */
+	public Label label(Label label) {
+		Label copy = labels.get(label);
+		if (copy == null) {
+			copy = new Label();
+			labels.put(label, copy);
+			if (ImcGen.labelPoints.containsKey(label))
+				ImcGen.labelPoints.put(copy, ImcGen.labelPoints.get(label));
+		}
+		return copy;
+	}
+
+	/**
+	 * Returns the temporary variable a temporary variable is renamed to (the
+	 * same temporary variable unless overridden).
+	 */
+	protected Temp temp(Temp temp) {
+		return temp;
+	}
+
+	/**
+	 * Returns the copy of an expression being read.
+	 */
+	protected ImcExpr expr(ImcExpr expr) {
+		return (ImcExpr) expr.accept(this, null);
+	}
+
+	@Override
+	public ImcInstr visit(ImcBINOP binOp, Object visArg) {
+		return new ImcBINOP(binOp.oper, expr(binOp.fstExpr), expr(binOp.sndExpr));
+	}
+
+	@Override
+	public ImcInstr visit(ImcCALL call, Object visArg) {
+		Vector<ImcExpr> args = new Vector<ImcExpr>();
+		for (ImcExpr arg : call.args())
+			args.add(expr(arg));
+		return new ImcCALL(call.label, args);
+	}
+
+	@Override
+	public ImcInstr visit(ImcCJUMP cjump, Object visArg) {
+		return new ImcCJUMP(expr(cjump.cond), label(cjump.posLabel), label(cjump.negLabel));
+	}
+
+	@Override
+	public ImcInstr visit(ImcCONST constant, Object visArg) {
+		return new ImcCONST(constant.value);
+	}
+
+	@Override
+	public ImcInstr visit(ImcESTMT eStmt, Object visArg) {
+		return new ImcESTMT(expr(eStmt.expr));
+	}
+
+	@Override
+	public ImcInstr visit(ImcJUMP jump, Object visArg) {
+		return new ImcJUMP(label(jump.label));
+	}
+
+	@Override
+	public ImcInstr visit(ImcLABEL label, Object visArg) {
+		return new ImcLABEL(label(label.label));
+	}
+
+	@Override
+	public ImcInstr visit(ImcMEM mem, Object visArg) {
+		return new ImcMEM(expr(mem.addr));
+	}
+
+	@Override
+	public ImcInstr visit(ImcMOVE move, Object visArg) {
+		return new ImcMOVE((ImcExpr) move.dst.accept(this, null), expr(move.src));
+	}
+
+	@Override
+	public ImcInstr visit(ImcNAME name, Object visArg) {
+		return new ImcNAME(name.label);
+	}
+
+	@Override
+	public ImcInstr visit(ImcSEXPR sExpr, Object visArg) {
+		return new ImcSEXPR((ImcStmt) sExpr.stmt.accept(this, null), expr(sExpr.expr));
+	}
+
+	@Override
+	public ImcInstr visit(ImcSTMTS stmts, Object visArg) {
+		Vector<ImcStmt> copies = new Vector<ImcStmt>();
+		for (ImcStmt stmt : stmts.stmts())
+			copies.add((ImcStmt) stmt.accept(this, null));
+		return new ImcSTMTS(copies);
+	}
+
+	@Override
+	public ImcInstr visit(ImcTEMP temp, Object visArg) {
+		return new ImcTEMP(temp(temp.temp));
+	}
+
+	@Override
+	public ImcInstr visit(ImcUNOP unOp, Object visArg) {
+		return new ImcUNOP(unOp.oper, expr(unOp.subExpr));
+	}
+
+}
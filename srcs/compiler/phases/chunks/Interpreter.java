@@ -29,6 +29,41 @@ public class Interpreter {
 
 	private HashMap<Label, CodeChunk> callLabels;
 
+	/** Maps labels of memoized functions to their memo tables. */
+	private HashMap<Label, HashMap<List<Long>, Long>> memoTables = new HashMap<Label, HashMap<List<Long>, Long>>();
+
+	/** Maps labels of memoized functions to the numbers of calls and hits. */
+	private HashMap<Label, long[]> memoCounts = new HashMap<Label, long[]>();
+
+	/**
+	 * Thrown when a function evaluated at compile time cannot be evaluated.
+	 * 
+	 * @author sliva
+	 */
+	public static class EvalAbort extends java.lang.Error {
+
+		private static final long serialVersionUID = 1L;
+
+	}
+
+	/** The profile being collected or {@code null} if the execution is not profiled. */
+	private Profile profile = null;
+
+	/** Maps labels of functions to their names within the profile. */
+	private Map<Label, String> profileFuns = null;
+
+	/** Maps labels to their program points within the profile. */
+	private Map<Label, String> profilePoints = null;
+
+	/** Whether nothing but the program's own output is printed. */
+	private final boolean silent;
+
+	/** Whether a function is being evaluated at compile time. */
+	private boolean evaluating = false;
+
+	/** The number of statements that can still be executed during evaluation. */
+	private long budget = 0;
+
 	private Temp SP;
 
 	private Temp FP;
@@ -38,6 +73,19 @@ public class Interpreter {
 	private Temp HP;
 
 	public Interpreter(Vector<DataChunk> dataChunks, Vector<CodeChunk> codeChunks) {
+		this(dataChunks, codeChunks, false);
+	}
+
+	/**
+	 * Constructs a new interpreter.
+	 * 
+	 * @param dataChunks The data chunks.
+	 * @param codeChunks The code chunks.
+	 * @param silent     Whether the initial value of the heap pointer is not
+	 *                   printed (e.g., if functions are evaluated at compile time).
+	 */
+	public Interpreter(Vector<DataChunk> dataChunks, Vector<CodeChunk> codeChunks, boolean silent) {
+		this.silent = silent;
 		random = new Random();
 
 		this.memory = new HashMap<Long, Byte>();
@@ -54,7 +102,11 @@ public class Interpreter {
 				System.out.printf("### %s @ %d\n", dataChunk.label.name, tempLD(HP, false));
 			}
 			this.dataLabels.put(dataChunk.label, tempLD(HP, false));
-			tempST(HP, tempLD(HP, false) + dataChunk.size, true);
+			if (dataChunk.init() != null) {
+				for (Map.Entry<Long, Long> init : dataChunk.init().entrySet())
+					memST(tempLD(HP, false) + init.getKey(), init.getValue(), false);
+			}
+			tempST(HP, tempLD(HP, false) + dataChunk.size, !silent);
 		}
 		if (debug)
 			System.out.printf("###\n");
@@ -71,6 +123,82 @@ public class Interpreter {
 		}
 	}
 
+	/**
+	 * Wraps a function with a memo table keyed by the values of its arguments
+	 * (the static link excluded). The function must be pure.
+	 * 
+	 * @param label The label of a function.
+	 */
+	public void memoize(Label label) {
+		memoTables.put(label, new HashMap<List<Long>, Long>());
+		memoCounts.put(label, new long[2]);
+	}
+
+	/**
+	 * Collects a profile of the execution.
+	 * 
+	 * @param profile The profile the counts are added to.
+	 * @param funs    Maps labels of functions to their names within the profile.
+	 * @param points  Maps labels to their program points within the profile.
+	 */
+	public void profile(Profile profile, Map<Label, String> funs, Map<Label, String> points) {
+		this.profile = profile;
+		this.profileFuns = funs;
+		this.profilePoints = points;
+	}
+
+	/**
+	 * Returns the number of calls of a memoized function.
+	 * 
+	 * @param label The label of a function.
+	 * @return The number of calls.
+	 */
+	public long memoCalls(Label label) {
+		return memoCounts.get(label)[0];
+	}
+
+	/**
+	 * Returns the number of calls of a memoized function answered from its memo
+	 * table.
+	 * 
+	 * @param label The label of a function.
+	 * @return The number of hits.
+	 */
+	public long memoHits(Label label) {
+		return memoCounts.get(label)[1];
+	}
+
+	/**
+	 * Evaluates a function at compile time.
+	 * 
+	 * @param label     The label of a function.
+	 * @param argValues The values of arguments (the static link included).
+	 * @param budget    The maximal number of statements to be executed.
+	 * @return The result of the function.
+	 * @throws EvalAbort If the function cannot be evaluated within the budget or
+	 *                   without an error.
+	 */
+	public Long evaluate(Label label, Long[] argValues, long budget) throws EvalAbort {
+		HashMap<Temp, Long> storedTemps = temps;
+		temps = new HashMap<Temp, Long>(temps);
+		evaluating = true;
+		this.budget = budget;
+		try {
+			return invoke(label, argValues);
+		} catch (ArithmeticException | StackOverflowError __) {
+			throw new EvalAbort();
+		} finally {
+			evaluating = false;
+			temps = storedTemps;
+		}
+	}
+
+	private java.lang.Error error(String message) {
+		if (evaluating)
+			return new EvalAbort();
+		return new Report.Error(message);
+	}
+
 	private void memST(Long address, Long value) {
 		memST(address, value, debug);
 	}
@@ -96,7 +224,7 @@ public class Interpreter {
 			Byte byteval = memory.get(address + b);
 			if (byteval == null) {
 				byteval = (byte) (random.nextLong() / 0x100);
-				throw new Report.Error("INTERPRETER: Uninitialized memory location " + (address + b) + ".");
+				throw error("INTERPRETER: Uninitialized memory location " + (address + b) + ".");
 			}
 			long longval = (long) byteval;
 			value = (value * 0x100) + (longval < 0 ? longval + 0x100 : longval);
@@ -142,7 +270,7 @@ public class Interpreter {
 		Long value = temps.get(temp);
 		if (value == null) {
 			value = random.nextLong();
-			throw new Report.Error("Uninitialized temporary variable T" + temp.temp + ".");
+			throw error("Uninitialized temporary variable T" + temp.temp + ".");
 		}
 		if (debug) {
 			if (temp == SP) {
@@ -167,43 +295,50 @@ public class Interpreter {
 		return value;
 	}
 
+	/**
+	 * Computes the value of a binary operator.
+	 */
+	private Long binop(ImcBINOP.Oper oper, Long fstExpr, Long sndExpr) {
+		switch (oper) {
+		case IOR:
+			return (fstExpr != 0) | (sndExpr != 0) ? 1L : 0L;
+		case XOR:
+			return (fstExpr != 0) ^ (sndExpr != 0) ? 1L : 0L;
+		case AND:
+			return (fstExpr != 0) & (sndExpr != 0) ? 1L : 0L;
+		case EQU:
+			return (fstExpr == sndExpr) ? 1L : 0L;
+		case NEQ:
+			return (fstExpr != sndExpr) ? 1L : 0L;
+		case LEQ:
+			return (fstExpr <= sndExpr) ? 1L : 0L;
+		case GEQ:
+			return (fstExpr >= sndExpr) ? 1L : 0L;
+		case LTH:
+			return (fstExpr < sndExpr) ? 1L : 0L;
+		case GTH:
+			return (fstExpr > sndExpr) ? 1L : 0L;
+		case ADD:
+			return fstExpr + sndExpr;
+		case SUB:
+			return fstExpr - sndExpr;
+		case MUL:
+			return fstExpr * sndExpr;
+		case DIV:
+			return fstExpr / sndExpr;
+		case MOD:
+			return fstExpr % sndExpr;
+		}
+		throw new Report.InternalError();
+	}
+
 	private class ExprInterpreter implements ImcVisitor<Long, Object> {
 
 		@Override
 		public Long visit(ImcBINOP imcBinop, Object arg) {
 			Long fstExpr = imcBinop.fstExpr.accept(this, null);
 			Long sndExpr = imcBinop.sndExpr.accept(this, null);
-			switch (imcBinop.oper) {
-			case IOR:
-				return (fstExpr != 0) | (sndExpr != 0) ? 1L : 0L;
-			case XOR:
-				return (fstExpr != 0) ^ (sndExpr != 0) ? 1L : 0L;
-			case AND:
-				return (fstExpr != 0) & (sndExpr != 0) ? 1L : 0L;
-			case EQU:
-				return (fstExpr == sndExpr) ? 1L : 0L;
-			case NEQ:
-				return (fstExpr != sndExpr) ? 1L : 0L;
-			case LEQ:
-				return (fstExpr <= sndExpr) ? 1L : 0L;
-			case GEQ:
-				return (fstExpr >= sndExpr) ? 1L : 0L;
-			case LTH:
-				return (fstExpr < sndExpr) ? 1L : 0L;
-			case GTH:
-				return (fstExpr > sndExpr) ? 1L : 0L;
-			case ADD:
-				return fstExpr + sndExpr;
-			case SUB:
-				return fstExpr - sndExpr;
-			case MUL:
-				return fstExpr * sndExpr;
-			case DIV:
-				return fstExpr / sndExpr;
-			case MOD:
-				return fstExpr % sndExpr;
-			}
-			throw new Report.InternalError();
+			return binop(imcBinop.oper, fstExpr, sndExpr);
 		}
 
 		@Override
@@ -257,7 +392,39 @@ public class Interpreter {
 			if (debug)
 				System.out.println(imcCJump);
 			Long cond = imcCJump.cond.accept(new ExprInterpreter(), null);
-			return (cond != 0) ? imcCJump.posLabel : imcCJump.negLabel;
+			return branch(cond != 0, imcCJump.posLabel, imcCJump.negLabel);
+		}
+
+		@Override
+		public Label visit(ImcCMPJUMP imcCmpJump, Object arg) {
+			if (debug)
+				System.out.println(imcCmpJump);
+			Long cond = binop(imcCmpJump.oper, tempLD(imcCmpJump.fst), tempLD(imcCmpJump.snd));
+			return branch(cond != 0, imcCmpJump.posLabel, imcCmpJump.negLabel);
+		}
+
+		@Override
+		public Label visit(ImcCOMPUTE imcCompute, Object arg) {
+			if (debug)
+				System.out.println(imcCompute);
+			tempST(imcCompute.dst, binop(imcCompute.oper, tempLD(imcCompute.fst), tempLD(imcCompute.snd)));
+			return null;
+		}
+
+		@Override
+		public Label visit(ImcCOPY imcCopy, Object arg) {
+			if (debug)
+				System.out.println(imcCopy);
+			tempST(imcCopy.dst, tempLD(imcCopy.src));
+			return null;
+		}
+
+		@Override
+		public Label visit(ImcLOAD imcLoad, Object arg) {
+			if (debug)
+				System.out.println(imcLoad);
+			tempST(imcLoad.dst, memLD(tempLD(imcLoad.base) + imcLoad.offset));
+			return null;
 		}
 
 		@Override
@@ -283,6 +450,8 @@ public class Interpreter {
 		public Label visit(ImcLABEL imcLabel, Object arg) {
 			if (debug)
 				System.out.println(imcLabel);
+			if ((profile != null) && profilePoints.containsKey(imcLabel.label))
+				profile.countBlock(profilePoints.get(imcLabel.label));
 			return null;
 		}
 
@@ -294,8 +463,7 @@ public class Interpreter {
 				Long dst = ((ImcMEM) (imcMove.dst)).addr.accept(new ExprInterpreter(), null);
 				Long src;
 				if (imcMove.src instanceof ImcCALL) {
-					call((ImcCALL) imcMove.src);
-					src = memLD(tempLD(SP));
+					src = call((ImcCALL) imcMove.src);
 				} else
 					src = imcMove.src.accept(new ExprInterpreter(), null);
 				memST(dst, src);
@@ -305,8 +473,7 @@ public class Interpreter {
 				ImcTEMP dst = (ImcTEMP) (imcMove.dst);
 				Long src;
 				if (imcMove.src instanceof ImcCALL) {
-					call((ImcCALL) imcMove.src);
-					src = memLD(tempLD(SP));
+					src = call((ImcCALL) imcMove.src);
 				} else
 					src = imcMove.src.accept(new ExprInterpreter(), null);
 				tempST(dst.temp, src);
@@ -322,50 +489,114 @@ public class Interpreter {
 			throw new Report.InternalError();
 		}
 
-		private void call(ImcCALL imcCall) {
-			Long offset = 0L;
-			for (ImcExpr callArg : imcCall.args()) {
-				Long callValue = callArg.accept(new ExprInterpreter(), null);
-				memST(tempLD(SP) + offset, callValue);
-				offset += 8;
-			}
-			if (imcCall.label.name.equals("_new")) {
-				Long size = memLD(tempLD(SP, false) + 1 * 8, false);
-				Long addr = tempLD(HP);
-				tempST(HP, addr + size);
-				memST(tempLD(SP), addr, false);
-				return;
-			}
-			if (imcCall.label.name.equals("_del")) {
-				return;
-			}
-			if (imcCall.label.name.equals("_putInt")) {
-				Long i = memLD(tempLD(SP, false) + 1 * 8, false);
-				System.out.printf("%d", i);
-				return;
-			}
-			if (imcCall.label.name.equals("_putChar")) {
-				Long c = memLD(tempLD(SP, false) + 1 * 8, false);
-				System.out.printf("%c", (char) ((long) c) % 0x100);
-				return;
+		private Label branch(boolean cond, Label posLabel, Label negLabel) {
+			if (profile != null) {
+				String posPoint = profilePoints.get(posLabel);
+				String negPoint = profilePoints.get(negLabel);
+				if ((posPoint != null) && Profile.isBranch(posPoint))
+					profile.countBranch(posPoint, cond);
+				else if ((negPoint != null) && Profile.isBranch(negPoint))
+					profile.countBranch(negPoint, !cond);
 			}
-			if (imcCall.label.name.equals("_putString")) {
-				Long addr = memLD(tempLD(SP, false) + 1 * 8, false);
-				do {
-					long c = memLD(addr, false);
-					addr += 8;
-					if (c == 0)
-						break;
-					System.out.printf("%c", (char) c);
-				} while (true);
-				return;
-			}
-			funCall(imcCall.label);
+			return cond ? posLabel : negLabel;
+		}
+
+		private Long call(ImcCALL imcCall) {
+			Vector<ImcExpr> callArgs = imcCall.args();
+			Long[] argValues = new Long[callArgs.size()];
+			for (int a = 0; a < callArgs.size(); a++)
+				argValues[a] = callArgs.get(a).accept(new ExprInterpreter(), null);
+			return invoke(imcCall.label, argValues);
 		}
 
 	}
 
-	public void funCall(Label entryLabel) {
+	/**
+	 * Passes arguments to a function (either internal or external) and calls it.
+	 * 
+	 * @param label     The label of a function.
+	 * @param argValues The values of arguments (the static link included).
+	 * @return The result of the function.
+	 */
+	private Long invoke(Label label, Long[] argValues) {
+		CodeChunk chunk = callLabels.get(label);
+		Long[] regArgs = null;
+		if ((chunk != null) && chunk.frame.regConv())
+			regArgs = new Long[argValues.length];
+		HashMap<List<Long>, Long> memoTable = memoTables.get(label);
+		Vector<Long> memoKey = (memoTable == null) ? null : new Vector<Long>();
+		Long offset = 0L;
+		for (int a = 0; a < argValues.length; a++) {
+			if ((regArgs != null) && (chunk.frame.argTemp(a) != null))
+				regArgs[a] = argValues[a];
+			else
+				memST(tempLD(SP) + offset, argValues[a]);
+			if ((memoKey != null) && (a > 0))
+				memoKey.add(argValues[a]);
+			offset += 8;
+		}
+		if (memoTable != null) {
+			long[] counts = memoCounts.get(label);
+			counts[0]++;
+			Long result = memoTable.get(memoKey);
+			if (result != null) {
+				counts[1]++;
+				if (debug)
+					System.out.printf("### MEMO: %s\n", label.name);
+				return result;
+			}
+			result = funCall(label, regArgs);
+			memoTable.put(memoKey, result);
+			return result;
+		}
+		if (chunk != null)
+			return funCall(label, regArgs);
+		if (evaluating)
+			throw new EvalAbort();
+		if (label.name.equals("_new")) {
+			Long size = memLD(tempLD(SP, false) + 1 * 8, false);
+			Long addr = tempLD(HP);
+			tempST(HP, addr + size);
+			memST(tempLD(SP), addr, false);
+			return addr;
+		}
+		if (label.name.equals("_del")) {
+			return memLD(tempLD(SP, false), false);
+		}
+		if (label.name.equals("_putInt")) {
+			Long i = memLD(tempLD(SP, false) + 1 * 8, false);
+			System.out.printf("%d", i);
+			return memLD(tempLD(SP, false), false);
+		}
+		if (label.name.equals("_putChar")) {
+			Long c = memLD(tempLD(SP, false) + 1 * 8, false);
+			System.out.printf("%c", (char) ((long) c) % 0x100);
+			return memLD(tempLD(SP, false), false);
+		}
+		if (label.name.equals("_putString")) {
+			Long addr = memLD(tempLD(SP, false) + 1 * 8, false);
+			do {
+				long c = memLD(addr, false);
+				addr += 8;
+				if (c == 0)
+					break;
+				System.out.printf("%c", (char) c);
+			} while (true);
+			return memLD(tempLD(SP, false), false);
+		}
+		throw error("INTERPRETER: Undefined function " + label.name + ".");
+	}
+
+	/**
+	 * Calls a function.
+	 * 
+	 * @param entryLabel The entry label of the function.
+	 * @param regArgs    Values of arguments passed in registers indexed by the
+	 *                   position of an argument ({@code null} if the function
+	 *                   uses the memory calling convention).
+	 * @return The result of the function.
+	 */
+	public Long funCall(Label entryLabel, Long[] regArgs) {
 
 		HashMap<Temp, Long> storedTemps;
 		Temp storedFP = null;
@@ -380,6 +611,8 @@ public class Interpreter {
 		{
 			if (debug)
 				System.out.printf("###\n### CALL: %s\n", entryLabel.name);
+			if ((profile != null) && profileFuns.containsKey(entryLabel))
+				profile.countCall(profileFuns.get(entryLabel));
 
 			// Store registers and FP.
 			storedTemps = temps;
@@ -390,6 +623,13 @@ public class Interpreter {
 			RV = frame.RV;
 			tempST(frame.FP, tempLD(SP));
 			tempST(SP, tempLD(SP) - frame.size);
+			// Receive arguments passed in registers.
+			if (regArgs != null) {
+				for (int a = 0; a < regArgs.length; a++) {
+					if (regArgs[a] != null)
+						tempST(frame.argTemp(a), regArgs[a]);
+				}
+			}
 			// Jump to the body.
 			stmtOffset = jumpLabels.get(chunk.entryLabel);
 		}
@@ -414,6 +654,9 @@ public class Interpreter {
 					stmtOffset = offset;
 				}
 
+				if (evaluating && (budget-- == 0))
+					throw new EvalAbort();
+
 				label = stmts.get(stmtOffset).accept(new StmtInterpreter(), null);
 
 				stmtOffset += 1;
@@ -423,7 +666,9 @@ public class Interpreter {
 		/* EPILOGUE */
 		{
 			// Store the result.
-			memST(tempLD(frame.FP), tempLD(frame.RV));
+			Long result = tempLD(frame.RV);
+			if (!frame.regConv())
+				memST(tempLD(frame.FP), result);
 			// Destroy a stack frame.
 			tempST(SP, tempLD(SP) + frame.size);
 			// Restore registers and FP.
@@ -437,6 +682,11 @@ public class Interpreter {
 
 			if (debug)
 				System.out.printf("### RETURN: %s\n###\n", entryLabel.name);
+
+			// Fetch the result.
+			if (!frame.regConv())
+				result = memLD(tempLD(SP));
+			return result;
 		}
 
 	}
@@ -444,8 +694,7 @@ public class Interpreter {
 	public long run(String entryLabel) {
 		for (Label label : callLabels.keySet()) {
 			if (label.name.equals(entryLabel)) {
-				funCall(label);
-				return memLD(tempLD(SP));
+				return funCall(label, null);
 			}
 		}
 		throw new Report.InternalError();
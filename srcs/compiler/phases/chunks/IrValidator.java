@@ -0,0 +1,124 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.chunks;
+
+import java.util.*;
+import compiler.common.report.*;
+import compiler.data.layout.*;
+import compiler.data.imcode.*;
+import compiler.data.chunk.*;
+
+/**
+ * Validation of linearized intermediate code.
+ *
+ * The code chunks must contain canonical statements only (no {@link ImcSTMTS}
+ * and no {@link ImcSEXPR}), calls can appear only as the source of a move to a
+ * temporary variable or as an expression statement, the destination of a move
+ * must be a temporary variable or a memory access, each code chunk must start
+ * with its entry label and end with a jump, each label must be defined only
+ * once within the program and each jump must target a label within the same
+ * code chunk or its exit label.
+ *
+ * @author sliva
+ */
+public class IrValidator {
+
+	/** The name of the pass that has produced the code (for error messages). */
+	private final String pass;
+
+	/** The code chunk being validated. */
+	private CodeChunk codeChunk;
+
+	/**
+	 * Constructs a new validator.
+	 *
+	 * @param pass The name of the pass that has produced the code.
+	 */
+	public IrValidator(String pass) {
+		this.pass = pass;
+	}
+
+	/**
+	 * Validates all code chunks.
+	 */
+	public void validate() {
+		HashSet<Label> allLabels = new HashSet<Label>();
+		for (CodeChunk codeChunk : Chunks.codeChunks) {
+			this.codeChunk = codeChunk;
+			Vector<ImcStmt> stmts = codeChunk.stmts();
+			if (stmts.isEmpty() || !(stmts.firstElement() instanceof ImcLABEL)
+					|| (((ImcLABEL) stmts.firstElement()).label != codeChunk.entryLabel))
+				throw error("code does not start with the entry label");
+			if (!(stmts.lastElement() instanceof ImcJUMP) && !(stmts.lastElement() instanceof ImcCJUMP))
+				throw error("code does not end with a jump");
+
+			HashSet<Label> labels = new HashSet<Label>();
+			labels.add(codeChunk.exitLabel);
+			for (ImcStmt stmt : stmts) {
+				if (stmt instanceof ImcLABEL) {
+					Label label = ((ImcLABEL) stmt).label;
+					if (!allLabels.add(label))
+						throw error("label " + label.name + " defined more than once");
+					labels.add(label);
+				}
+			}
+			for (ImcStmt stmt : stmts) {
+				if (stmt instanceof ImcJUMP)
+					target(((ImcJUMP) stmt).label, labels);
+				else if (stmt instanceof ImcCJUMP) {
+					expr(((ImcCJUMP) stmt).cond);
+					target(((ImcCJUMP) stmt).posLabel, labels);
+					target(((ImcCJUMP) stmt).negLabel, labels);
+				} else if (stmt instanceof ImcMOVE) {
+					ImcMOVE move = (ImcMOVE) stmt;
+					if (move.dst instanceof ImcMEM)
+						expr(move.dst);
+					else if (!(move.dst instanceof ImcTEMP))
+						throw error("move to neither a temporary variable nor memory");
+					if ((move.src instanceof ImcCALL) && (move.dst instanceof ImcTEMP))
+						call((ImcCALL) move.src);
+					else
+						expr(move.src);
+				} else if (stmt instanceof ImcESTMT) {
+					if (((ImcESTMT) stmt).expr instanceof ImcCALL)
+						call((ImcCALL) ((ImcESTMT) stmt).expr);
+					else
+						expr(((ImcESTMT) stmt).expr);
+				} else if (!(stmt instanceof ImcLABEL))
+					throw error("noncanonical statement " + stmt.getClass().getSimpleName());
+			}
+		}
+		this.codeChunk = null;
+	}
+
+	private void target(Label label, HashSet<Label> labels) {
+		if (!labels.contains(label))
+			throw error("jump to label " + label.name + " outside the code chunk");
+	}
+
+	private void call(ImcCALL call) {
+		for (ImcExpr arg : call.args())
+			expr(arg);
+	}
+
+	private void expr(ImcExpr expr) {
+		if (expr instanceof ImcMEM)
+			expr(((ImcMEM) expr).addr);
+		else if (expr instanceof ImcBINOP) {
+			expr(((ImcBINOP) expr).fstExpr);
+			expr(((ImcBINOP) expr).sndExpr);
+		} else if (expr instanceof ImcUNOP)
+			expr(((ImcUNOP) expr).subExpr);
+		else if (expr instanceof ImcCALL)
+			throw error("call of " + ((ImcCALL) expr).label.name + " nested within an expression");
+		else if (!(expr instanceof ImcCONST) && !(expr instanceof ImcNAME) && !(expr instanceof ImcTEMP))
+			throw error("noncanonical expression " + expr.getClass().getSimpleName());
+	}
+
+	private Report.Error error(String message) {
+		return new Report.Error("Invalid intermediate code of " + codeChunk.frame.label.name + " after pass '" + pass
+				+ "': " + message + ".");
+	}
+
+}
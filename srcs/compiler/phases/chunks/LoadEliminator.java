@@ -0,0 +1,209 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.chunks;
+
+import java.util.*;
+import compiler.data.layout.*;
+import compiler.data.imcode.*;
+import compiler.data.chunk.*;
+
+/**
+ * Redundant load elimination and store-to-load forwarding.
+ *
+ * A forward dataflow analysis over basic blocks computes which memory locations
+ * are known to hold the value of which temporary variable (because the value
+ * has been loaded from or stored to the location and neither the location nor
+ * the temporary variable has been overwritten since). A load from such a
+ * location is replaced by a move from the temporary variable. Stores are
+ * killed using {@link AliasAnalysis}, calls using the summaries of the call
+ * graph.
+ *
+ * @author sliva
+ */
+public class LoadEliminator {
+
+	/** The call graph of the program. */
+	private final CallGraph callGraph;
+
+	/** The number of loads eliminated. */
+	private int numElimLoads = 0;
+
+	/**
+	 * Constructs a new load eliminator.
+	 *
+	 * @param callGraph The call graph of the program.
+	 */
+	public LoadEliminator(CallGraph callGraph) {
+		this.callGraph = callGraph;
+	}
+
+	/**
+	 * Eliminates redundant loads within all code chunks; {@link Chunks#codeChunks}
+	 * is replaced accordingly.
+	 */
+	public void eliminate() {
+		for (int c = 0; c < Chunks.codeChunks.size(); c++) {
+			CodeChunk codeChunk = Chunks.codeChunks.get(c);
+			Vector<ImcStmt> stmts = eliminate(codeChunk);
+			Chunks.codeChunks.set(c, new CodeChunk(codeChunk.frame, stmts, codeChunk.entryLabel, codeChunk.exitLabel));
+		}
+	}
+
+	/**
+	 * Returns the number of loads eliminated.
+	 *
+	 * @return The number of loads eliminated.
+	 */
+	public int numElimLoads() {
+		return numElimLoads;
+	}
+
+	/**
+	 * Eliminates redundant loads within a code chunk.
+	 */
+	private Vector<ImcStmt> eliminate(CodeChunk codeChunk) {
+		Vector<ImcStmt> stmts = codeChunk.stmts();
+		AliasAnalysis aliases = new AliasAnalysis(codeChunk);
+		ControlFlowGraph cfg = new ControlFlowGraph(stmts);
+		Vector<ControlFlowGraph.Block> blocks = cfg.blocks();
+
+		// The available locations at the end of each block ({@code null} stands for all).
+		Vector<HashMap<AliasAnalysis.Addr, Temp>> outs = new Vector<HashMap<AliasAnalysis.Addr, Temp>>();
+		for (int b = 0; b < blocks.size(); b++)
+			outs.add(null);
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (ControlFlowGraph.Block block : blocks) {
+				HashMap<AliasAnalysis.Addr, Temp> avail = in(block, outs);
+				for (int s = block.beg; s < block.end; s++)
+					transfer(stmts.get(s), avail, aliases);
+				if (!avail.equals(outs.get(block.index))) {
+					outs.set(block.index, avail);
+					changed = true;
+				}
+			}
+		}
+
+		Vector<ImcStmt> elimStmts = new Vector<ImcStmt>(stmts);
+		for (ControlFlowGraph.Block block : blocks) {
+			HashMap<AliasAnalysis.Addr, Temp> avail = in(block, outs);
+			for (int s = block.beg; s < block.end; s++) {
+				ImcStmt stmt = stmts.get(s);
+				Temp value = load(stmt, avail, aliases);
+				if (value != null) {
+					elimStmts.set(s, new ImcMOVE(new ImcTEMP(((ImcTEMP) ((ImcMOVE) stmt).dst).temp), new ImcTEMP(value)));
+					numElimLoads++;
+				}
+				transfer(stmt, avail, aliases);
+			}
+		}
+		return elimStmts;
+	}
+
+	/**
+	 * Computes the locations available at the beginning of a block.
+	 */
+	private HashMap<AliasAnalysis.Addr, Temp> in(ControlFlowGraph.Block block,
+			Vector<HashMap<AliasAnalysis.Addr, Temp>> outs) {
+		if (block.preds.isEmpty() || (block.index == 0))
+			return new HashMap<AliasAnalysis.Addr, Temp>();
+		HashMap<AliasAnalysis.Addr, Temp> in = null;
+		for (int pred : block.preds) {
+			HashMap<AliasAnalysis.Addr, Temp> out = outs.get(pred);
+			if (out == null)
+				continue;
+			if (in == null)
+				in = new HashMap<AliasAnalysis.Addr, Temp>(out);
+			else
+				in.entrySet().retainAll(out.entrySet());
+		}
+		return (in == null) ? new HashMap<AliasAnalysis.Addr, Temp>() : in;
+	}
+
+	/**
+	 * Returns the temporary variable holding the value a statement loads.
+	 *
+	 * @return The temporary variable or {@code null} if the statement is not a
+	 *         load or the value is not available.
+	 */
+	private Temp load(ImcStmt stmt, HashMap<AliasAnalysis.Addr, Temp> avail, AliasAnalysis aliases) {
+		if (!(stmt instanceof ImcMOVE) || !(((ImcMOVE) stmt).dst instanceof ImcTEMP)
+				|| !(((ImcMOVE) stmt).src instanceof ImcMEM))
+			return null;
+		AliasAnalysis.Addr addr = key(((ImcMEM) ((ImcMOVE) stmt).src).addr, aliases);
+		if (addr == null)
+			return null;
+		Temp value = avail.get(addr);
+		if (value == ((ImcTEMP) ((ImcMOVE) stmt).dst).temp)
+			return null;
+		return value;
+	}
+
+	/**
+	 * Returns the symbolic address of a memory access if it identifies a single
+	 * location.
+	 */
+	private AliasAnalysis.Addr key(ImcExpr addrExpr, AliasAnalysis aliases) {
+		AliasAnalysis.Addr addr = aliases.addr(addrExpr);
+		if ((addr.base == null) || ((addr.offset == null) && (addr.temp == null)))
+			return null;
+		return addr;
+	}
+
+	/**
+	 * Updates the available locations according to a statement.
+	 */
+	private void transfer(ImcStmt stmt, HashMap<AliasAnalysis.Addr, Temp> avail, AliasAnalysis aliases) {
+		ImcCALL call = AliasAnalysis.call(stmt);
+		if (call != null)
+			kill(call, avail, aliases);
+		if (!(stmt instanceof ImcMOVE))
+			return;
+		ImcMOVE move = (ImcMOVE) stmt;
+		if (move.dst instanceof ImcTEMP) {
+			Temp dst = ((ImcTEMP) move.dst).temp;
+			avail.entrySet().removeIf(entry -> (entry.getValue() == dst) || (entry.getKey().base == dst)
+					|| (entry.getKey().temp == dst));
+			if (move.src instanceof ImcMEM) {
+				AliasAnalysis.Addr addr = key(((ImcMEM) move.src).addr, aliases);
+				if ((addr != null) && (addr.base != dst) && (addr.temp != dst))
+					avail.put(addr, dst);
+			}
+			return;
+		}
+		if (move.dst instanceof ImcMEM) {
+			AliasAnalysis.Addr addr = aliases.addr(((ImcMEM) move.dst).addr);
+			avail.keySet().removeIf(key -> aliases.mayAlias(addr, key));
+			AliasAnalysis.Addr key = key(((ImcMEM) move.dst).addr, aliases);
+			if ((key != null) && (move.src instanceof ImcTEMP))
+				avail.put(key, ((ImcTEMP) move.src).temp);
+		}
+	}
+
+	/**
+	 * Removes the locations a call might write to.
+	 */
+	private void kill(ImcCALL call, HashMap<AliasAnalysis.Addr, Temp> avail, AliasAnalysis aliases) {
+		boolean globals;
+		boolean ptrs;
+		boolean frame;
+		CallGraph.Summary summary = callGraph.summary(call.label);
+		if (summary != null) {
+			globals = summary.writesGlobals || summary.writesPtrs;
+			ptrs = summary.writesGlobals || summary.writesPtrs;
+			frame = summary.outerFrames || (summary.writesPtrs && aliases.frameExposed());
+		} else if (call.label.name.matches("_(new|del|putInt|putChar|putString)")) {
+			globals = false;
+			ptrs = false;
+			frame = false;
+		} else {
+			globals = true;
+			ptrs = true;
+			frame = true;
+		}
+		avail.keySet().removeIf(key -> aliases.inFrame(key) ? frame : (aliases.inGlobal(key) ? globals : ptrs));
+	}
+
+}
@@ -0,0 +1,215 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.chunks;
+
+import java.util.*;
+import java.util.function.*;
+import compiler.common.report.*;
+import compiler.data.layout.*;
+import compiler.data.imcode.*;
+import compiler.data.chunk.*;
+
+/**
+ * The manager of optimization passes over code chunks.
+ *
+ * A pipeline is a comma-separated list of passes and groups of passes, where a
+ * group is a comma-separated list of passes enclosed in parentheses. Passes
+ * are run in order; a group is run repeatedly until none of its passes changes
+ * the code any more (but at most {@link #maxIterations} times). For each pass,
+ * the time spent and the numbers of statements and temporary variables removed
+ * are recorded. If requested, the code is validated by {@link IrValidator}
+ * after each pass.
+ *
+ * @author sliva
+ */
+public class PassManager {
+
+	/** The pipeline of {@code -O1}. */
+	public static final String O1 = "(fold,copyprop,dce)";
+
+	/** The pipeline of {@code -O2}. */
+	public static final String O2 = "specialize,ctfe,(fold,copyprop,dce),load-elim,(fold,copyprop,dce)";
+
+	/** The maximal number of iterations of a group of passes. */
+	private static final int maxIterations = 10;
+
+	/**
+	 * Statistics of a pass.
+	 *
+	 * @author sliva
+	 */
+	private static class Stats {
+
+		/** The number of runs. */
+		int numRuns = 0;
+
+		/** The time spent in nanoseconds. */
+		long time = 0;
+
+		/** The number of statements removed. */
+		int numRemovedStmts = 0;
+
+		/** The number of temporary variables removed. */
+		int numRemovedTemps = 0;
+
+	}
+
+	/**
+	 * A step of a pipeline: a single pass or a group of passes run to a
+	 * fixpoint.
+	 *
+	 * @author sliva
+	 */
+	private static class Step {
+
+		/** The names of passes. */
+		final String[] passes;
+
+		/** Whether the passes are run until the code stops changing. */
+		final boolean fixpoint;
+
+		Step(String[] passes, boolean fixpoint) {
+			this.passes = passes;
+			this.fixpoint = fixpoint;
+		}
+
+	}
+
+	/** Maps names of passes to passes (each returning whether the code has changed). */
+	private final LinkedHashMap<String, BooleanSupplier> passes = new LinkedHashMap<String, BooleanSupplier>();
+
+	/** Maps names of passes to their statistics. */
+	private final LinkedHashMap<String, Stats> stats = new LinkedHashMap<String, Stats>();
+
+	/** Whether the code is validated after each pass. */
+	private final boolean validate;
+
+	/**
+	 * Constructs a new pass manager.
+	 *
+	 * @param callGraph The call graph of the program.
+	 * @param validate  Whether the code is validated after each pass.
+	 */
+	public PassManager(CallGraph callGraph, boolean validate) {
+		this.validate = validate;
+		passes.put("fold", () -> new ConstPropagator().propagate());
+		passes.put("copyprop", () -> new CopyPropagator().propagate());
+		passes.put("dce", () -> new DeadCodeEliminator().eliminate());
+		passes.put("specialize", () -> {
+			Specializer specializer = new Specializer(callGraph);
+			specializer.specialize();
+			return specializer.numClones() > 0;
+		});
+		passes.put("ctfe", () -> {
+			CompileTimeEvaluator evaluator = new CompileTimeEvaluator(callGraph);
+			evaluator.evaluate();
+			return evaluator.numEvalCalls() + evaluator.numInitStores() > 0;
+		});
+		passes.put("load-elim", () -> {
+			LoadEliminator eliminator = new LoadEliminator(callGraph);
+			eliminator.eliminate();
+			return eliminator.numElimLoads() > 0;
+		});
+	}
+
+	/**
+	 * Runs a pipeline.
+	 *
+	 * @param pipeline The pipeline.
+	 */
+	public void run(String pipeline) {
+		for (Step step : parse(pipeline)) {
+			for (int iteration = 0; iteration < (step.fixpoint ? maxIterations : 1); iteration++) {
+				boolean changed = false;
+				for (String pass : step.passes)
+					changed |= runPass(pass);
+				if (!changed)
+					break;
+			}
+		}
+	}
+
+	/**
+	 * Runs a single pass and records its statistics.
+	 *
+	 * @return {@code true} if the pass has changed the code.
+	 */
+	private boolean runPass(String pass) {
+		Stats passStats = stats.get(pass);
+		if (passStats == null) {
+			passStats = new Stats();
+			stats.put(pass, passStats);
+		}
+		int numStmts = numStmts();
+		int numTemps = numTemps();
+		long begTime = System.nanoTime();
+		boolean changed = passes.get(pass).getAsBoolean();
+		passStats.time += System.nanoTime() - begTime;
+		passStats.numRuns++;
+		passStats.numRemovedStmts += numStmts - numStmts();
+		passStats.numRemovedTemps += numTemps - numTemps();
+		if (validate)
+			new IrValidator(pass).validate();
+		return changed;
+	}
+
+	/**
+	 * Returns the number of statements within all code chunks.
+	 */
+	private static int numStmts() {
+		int numStmts = 0;
+		for (CodeChunk codeChunk : Chunks.codeChunks)
+			numStmts += codeChunk.stmts().size();
+		return numStmts;
+	}
+
+	/**
+	 * Returns the number of temporary variables used or defined within all code
+	 * chunks.
+	 */
+	private static int numTemps() {
+		HashSet<Temp> temps = new HashSet<Temp>();
+		for (CodeChunk codeChunk : Chunks.codeChunks) {
+			for (ImcStmt stmt : codeChunk.stmts()) {
+				DeadCodeEliminator.uses(stmt, temps);
+				if ((stmt instanceof ImcMOVE) && (((ImcMOVE) stmt).dst instanceof ImcTEMP))
+					temps.add(((ImcTEMP) ((ImcMOVE) stmt).dst).temp);
+			}
+		}
+		return temps.size();
+	}
+
+	/**
+	 * Reports the statistics of all passes run.
+	 */
+	public void report() {
+		for (Map.Entry<String, Stats> entry : stats.entrySet()) {
+			Stats passStats = entry.getValue();
+			Report.info(String.format("Pass %s: %d runs, %.3f ms, %d statements and %d temporary variables removed.",
+					entry.getKey(), passStats.numRuns, passStats.time / 1e6, passStats.numRemovedStmts,
+					passStats.numRemovedTemps));
+		}
+	}
+
+	/**
+	 * Parses a pipeline into a list of steps.
+	 */
+	private Vector<Step> parse(String pipeline) {
+		Vector<Step> steps = new Vector<Step>();
+		for (String item : pipeline.replaceAll("\\s+", "").split(",(?![^(]*\\))")) {
+			if (item.isEmpty())
+				continue;
+			boolean fixpoint = item.startsWith("(") && item.endsWith(")");
+			Step step = new Step(fixpoint ? item.substring(1, item.length() - 1).split(",") : new String[] { item },
+					fixpoint);
+			for (String pass : step.passes) {
+				if (!passes.containsKey(pass))
+					throw new Report.Error("Unknown optimization pass '" + pass + "' in pipeline '" + pipeline + "'.");
+			}
+			steps.add(step);
+		}
+		return steps;
+	}
+
+}
@@ -0,0 +1,167 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.chunks;
+
+import java.util.*;
+import compiler.data.imcode.*;
+import compiler.data.chunk.*;
+
+/**
+ * Peephole rewriting of linearized statements into superinstructions.
+ *
+ * The most frequent shapes of canonical statements are replaced by fused
+ * statements the interpreter executes in a single dispatch:
+ * {@code MOVE(TEMP, TEMP)} by {@link ImcCOPY},
+ * {@code MOVE(TEMP, BINOP(TEMP, TEMP))} by {@link ImcCOMPUTE},
+ * {@code MOVE(TEMP, MEM(BINOP(ADD, TEMP, CONST)))} (and loads from a temporary
+ * variable plus or minus a constant in general) by {@link ImcLOAD} and
+ * {@code CJUMP(BINOP(rel, TEMP, TEMP))} by {@link ImcCMPJUMP}. As fused
+ * statements are understood only by the interpreter, the rewriting must be
+ * performed after all other passes.
+ *
+ * These are the shapes produced by the default canonization, which moves every
+ * operand into a temporary variable. The commutation-aware canonization
+ * ({@code --commute}) leaves operands in place, so hardly any of its
+ * statements match.
+ *
+ * @author sliva
+ */
+public class PeepholeFuser {
+
+	/** The number of statements fused into {@link ImcCOPY}. */
+	private int numCopies = 0;
+
+	/** The number of statements fused into {@link ImcCOMPUTE}. */
+	private int numComputes = 0;
+
+	/** The number of statements fused into {@link ImcLOAD}. */
+	private int numLoads = 0;
+
+	/** The number of statements fused into {@link ImcCMPJUMP}. */
+	private int numCmpJumps = 0;
+
+	/**
+	 * Fuses statements within all code chunks; {@link Chunks#codeChunks} is
+	 * replaced accordingly.
+	 */
+	public void fuse() {
+		for (int c = 0; c < Chunks.codeChunks.size(); c++) {
+			CodeChunk codeChunk = Chunks.codeChunks.get(c);
+			Vector<ImcStmt> stmts = new Vector<ImcStmt>();
+			for (ImcStmt stmt : codeChunk.stmts())
+				stmts.add(fuse(stmt));
+			Chunks.codeChunks.set(c, new CodeChunk(codeChunk.frame, stmts, codeChunk.entryLabel, codeChunk.exitLabel));
+		}
+	}
+
+	/**
+	 * Returns the number of statements fused into {@link ImcCOPY}.
+	 *
+	 * @return The number of statements.
+	 */
+	public int numCopies() {
+		return numCopies;
+	}
+
+	/**
+	 * Returns the number of statements fused into {@link ImcCOMPUTE}.
+	 *
+	 * @return The number of statements.
+	 */
+	public int numComputes() {
+		return numComputes;
+	}
+
+	/**
+	 * Returns the number of statements fused into {@link ImcLOAD}.
+	 *
+	 * @return The number of statements.
+	 */
+	public int numLoads() {
+		return numLoads;
+	}
+
+	/**
+	 * Returns the number of statements fused into {@link ImcCMPJUMP}.
+	 *
+	 * @return The number of statements.
+	 */
+	public int numCmpJumps() {
+		return numCmpJumps;
+	}
+
+	/**
+	 * Fuses a single statement.
+	 */
+	private ImcStmt fuse(ImcStmt stmt) {
+		if (stmt instanceof ImcCJUMP) {
+			ImcCJUMP cjump = (ImcCJUMP) stmt;
+			if ((cjump.cond instanceof ImcBINOP) && isRelational(((ImcBINOP) cjump.cond).oper)) {
+				ImcBINOP cond = (ImcBINOP) cjump.cond;
+				if ((cond.fstExpr instanceof ImcTEMP) && (cond.sndExpr instanceof ImcTEMP)) {
+					numCmpJumps++;
+					return new ImcCMPJUMP(cond.oper, ((ImcTEMP) cond.fstExpr).temp, ((ImcTEMP) cond.sndExpr).temp,
+							cjump.posLabel, cjump.negLabel);
+				}
+			}
+			return stmt;
+		}
+		if (!(stmt instanceof ImcMOVE) || !(((ImcMOVE) stmt).dst instanceof ImcTEMP))
+			return stmt;
+		ImcTEMP dst = (ImcTEMP) ((ImcMOVE) stmt).dst;
+		ImcExpr src = ((ImcMOVE) stmt).src;
+
+		if (src instanceof ImcTEMP) {
+			numCopies++;
+			return new ImcCOPY(dst.temp, ((ImcTEMP) src).temp);
+		}
+		if (src instanceof ImcBINOP) {
+			ImcBINOP binOp = (ImcBINOP) src;
+			if ((binOp.fstExpr instanceof ImcTEMP) && (binOp.sndExpr instanceof ImcTEMP)) {
+				numComputes++;
+				return new ImcCOMPUTE(dst.temp, binOp.oper, ((ImcTEMP) binOp.fstExpr).temp,
+						((ImcTEMP) binOp.sndExpr).temp);
+			}
+		}
+		if (src instanceof ImcMEM) {
+			ImcExpr addr = ((ImcMEM) src).addr;
+			if (addr instanceof ImcTEMP) {
+				numLoads++;
+				return new ImcLOAD(dst.temp, ((ImcTEMP) addr).temp, 0);
+			}
+			if (addr instanceof ImcBINOP) {
+				ImcBINOP binOp = (ImcBINOP) addr;
+				if ((binOp.fstExpr instanceof ImcTEMP) && (binOp.sndExpr instanceof ImcCONST)) {
+					long offset = ((ImcCONST) binOp.sndExpr).value;
+					if ((binOp.oper == ImcBINOP.Oper.ADD) || (binOp.oper == ImcBINOP.Oper.SUB)) {
+						numLoads++;
+						return new ImcLOAD(dst.temp, ((ImcTEMP) binOp.fstExpr).temp,
+								(binOp.oper == ImcBINOP.Oper.ADD) ? offset : -offset);
+					}
+				}
+				if ((binOp.fstExpr instanceof ImcCONST) && (binOp.sndExpr instanceof ImcTEMP)
+						&& (binOp.oper == ImcBINOP.Oper.ADD)) {
+					numLoads++;
+					return new ImcLOAD(dst.temp, ((ImcTEMP) binOp.sndExpr).temp, ((ImcCONST) binOp.fstExpr).value);
+				}
+			}
+		}
+		return stmt;
+	}
+
+	private static boolean isRelational(ImcBINOP.Oper oper) {
+		switch (oper) {
+		case EQU:
+		case NEQ:
+		case LTH:
+		case GTH:
+		case LEQ:
+		case GEQ:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,212 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.chunks;
+
+import java.io.*;
+import java.util.*;
+import compiler.common.report.*;
+import compiler.data.abstree.*;
+
+/**
+ * An execution profile of a program.
+ *
+ * The profile contains the number of calls of each function, the number of
+ * times each conditional jump of a conditional or a loop statement has been
+ * taken and not taken, and the number of times each block starting at a label
+ * of a conditional or a loop statement has been executed. Functions are
+ * identified by their names and locations, program points by locations of
+ * statements and their roles (see {@link #point}), so that a profile collected
+ * by one build can be used by the next one.
+ *
+ * The profile is stored as a text file with one entry per line:
+ * {@code call <function> <count>}, {@code branch <point> <taken> <not taken>}
+ * or {@code block <point> <count>}.
+ *
+ * @author sliva
+ */
+public class Profile {
+
+	/** The role of the block executed when a condition is true. */
+	public static final String THEN = "then";
+
+	/** The role of the block executed when a condition is false. */
+	public static final String ELSE = "else";
+
+	/** The role of the block following a conditional statement. */
+	public static final String END = "end";
+
+	/** The role of the body of a loop. */
+	public static final String BODY = "body";
+
+	/** The role of the block following a loop. */
+	public static final String EXIT = "exit";
+
+	/** The profile read from the file given by {@code --profile-use}. */
+	private static Profile used = null;
+
+	/** Maps functions to the number of their calls. */
+	private final TreeMap<String, Long> calls = new TreeMap<String, Long>();
+
+	/** Maps branch points to the number of times they have been taken and not taken. */
+	private final TreeMap<String, long[]> branches = new TreeMap<String, long[]>();
+
+	/** Maps program points to the number of executions of their blocks. */
+	private final TreeMap<String, Long> blocks = new TreeMap<String, Long>();
+
+	/**
+	 * Returns the profile read from the file given by {@code --profile-use}.
+	 *
+	 * @return The profile or {@code null} if no profile is used.
+	 */
+	public static Profile used() {
+		String fileName = compiler.Main.cmdLineArgValue("--profile-use");
+		if ((used == null) && (fileName != null))
+			used = read(fileName);
+		return used;
+	}
+
+	/**
+	 * Returns the name of a function within a profile.
+	 *
+	 * @param funDef The function.
+	 * @return The name of the function.
+	 */
+	public static String funName(AbsFunDef funDef) {
+		return funDef.name + "@" + funDef.location();
+	}
+
+	/**
+	 * Returns a program point within a profile.
+	 *
+	 * @param stmt The conditional or loop statement.
+	 * @param role The role of the block within the statement.
+	 * @return The program point.
+	 */
+	public static String point(AbsStmt stmt, String role) {
+		return stmt.location() + ":" + role;
+	}
+
+	/**
+	 * Returns whether a program point is the target of a conditional jump when
+	 * the condition is true (and thus identifies the branch).
+	 *
+	 * @param point The program point.
+	 * @return {@code true} if the point identifies a branch.
+	 */
+	public static boolean isBranch(String point) {
+		return point.endsWith(":" + THEN) || point.endsWith(":" + BODY);
+	}
+
+	/**
+	 * Records a call of a function.
+	 *
+	 * @param funName The name of a function.
+	 */
+	public void countCall(String funName) {
+		calls.put(funName, calls.getOrDefault(funName, 0L) + 1);
+	}
+
+	/**
+	 * Records an execution of a conditional jump.
+	 *
+	 * @param point The branch point.
+	 * @param taken Whether the condition is true.
+	 */
+	public void countBranch(String point, boolean taken) {
+		long[] counts = branches.get(point);
+		if (counts == null) {
+			counts = new long[2];
+			branches.put(point, counts);
+		}
+		counts[taken ? 0 : 1]++;
+	}
+
+	/**
+	 * Records an execution of a block.
+	 *
+	 * @param point The program point the block starts at.
+	 */
+	public void countBlock(String point) {
+		blocks.put(point, blocks.getOrDefault(point, 0L) + 1);
+	}
+
+	/**
+	 * Returns the number of calls of a function.
+	 *
+	 * @param funName The name of a function.
+	 * @return The number of calls.
+	 */
+	public long calls(String funName) {
+		return calls.getOrDefault(funName, 0L);
+	}
+
+	/**
+	 * Returns the number of times a branch has been taken and not taken.
+	 *
+	 * @param point The branch point.
+	 * @return The numbers of times taken and not taken, or {@code null} if the
+	 *         conditional jump has never been executed.
+	 */
+	public long[] branch(String point) {
+		long[] counts = branches.get(point);
+		return (counts == null) ? null : counts.clone();
+	}
+
+	/**
+	 * Returns the number of executions of a block.
+	 *
+	 * @param point The program point the block starts at.
+	 * @return The number of executions.
+	 */
+	public long block(String point) {
+		return blocks.getOrDefault(point, 0L);
+	}
+
+	/**
+	 * Reads a profile.
+	 *
+	 * @param fileName The name of the profile file.
+	 * @return The profile.
+	 */
+	public static Profile read(String fileName) {
+		Profile profile = new Profile();
+		try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.trim().split("\\s+");
+				if ((fields.length == 3) && fields[0].equals("call"))
+					profile.calls.put(fields[1], Long.parseLong(fields[2]));
+				else if ((fields.length == 4) && fields[0].equals("branch"))
+					profile.branches.put(fields[1],
+							new long[] { Long.parseLong(fields[2]), Long.parseLong(fields[3]) });
+				else if ((fields.length == 3) && fields[0].equals("block"))
+					profile.blocks.put(fields[1], Long.parseLong(fields[2]));
+				else if (!line.trim().isEmpty())
+					throw new Report.Error("Malformed profile file '" + fileName + "'.");
+			}
+		} catch (IOException | NumberFormatException __) {
+			throw new Report.Error("Cannot read profile file '" + fileName + "'.");
+		}
+		return profile;
+	}
+
+	/**
+	 * Writes this profile.
+	 *
+	 * @param fileName The name of the profile file.
+	 */
+	public void write(String fileName) {
+		try (PrintWriter writer = new PrintWriter(fileName)) {
+			for (Map.Entry<String, Long> call : calls.entrySet())
+				writer.println("call " + call.getKey() + " " + call.getValue());
+			for (Map.Entry<String, long[]> branch : branches.entrySet())
+				writer.println("branch " + branch.getKey() + " " + branch.getValue()[0] + " " + branch.getValue()[1]);
+			for (Map.Entry<String, Long> block : blocks.entrySet())
+				writer.println("block " + block.getKey() + " " + block.getValue());
+		} catch (IOException __) {
+			throw new Report.Error("Cannot write profile file '" + fileName + "'.");
+		}
+	}
+
+}
@@ -0,0 +1,294 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.chunks;
+
+import java.util.*;
+import compiler.data.abstree.*;
+import compiler.data.layout.*;
+import compiler.data.imcode.*;
+import compiler.data.chunk.*;
+import compiler.phases.frames.*;
+import compiler.phases.imcgen.*;
+
+/**
+ * Specialization of functions for constant arguments.
+ *
+ * A temporary variable is constant within a code chunk if all its definitions
+ * assign it the same constant value. For every call of a function defined
+ * within the program where some arguments (the static link excluded) are
+ * constant, the pattern of constant arguments is recorded. The most frequent
+ * patterns of each function are given clones of the function's code chunk (up
+ * to a budget), where the constant parameters are replaced by their values,
+ * constants are folded and branches that cannot be taken are removed. Finally,
+ * calls with matching arguments are retargeted to the clones. If a profile is
+ * used, only functions that have been called are cloned, the most frequently
+ * called ones first.
+ *
+ * @author sliva
+ */
+public class Specializer {
+
+	/** The maximal number of clones in total. */
+	private static final int maxClones = 16;
+
+	/** The maximal number of clones per function. */
+	private static final int maxClonesPerFun = 4;
+
+	/** The call graph of the program. */
+	private final CallGraph callGraph;
+
+	/** Maps labels of functions to their code chunks. */
+	private final HashMap<Label, CodeChunk> codeChunks = new HashMap<Label, CodeChunk>();
+
+	/** Maps labels of functions to patterns of constant arguments and their clones. */
+	private final HashMap<Label, LinkedHashMap<List<Long>, Label>> clones = new HashMap<Label, LinkedHashMap<List<Long>, Label>>();
+
+	/** The number of clones produced. */
+	private int numClones = 0;
+
+	/** The number of calls retargeted to clones. */
+	private int numRetargetedCalls = 0;
+
+	/**
+	 * Constructs a new specializer.
+	 *
+	 * @param callGraph The call graph of the program.
+	 */
+	public Specializer(CallGraph callGraph) {
+		this.callGraph = callGraph;
+		for (CodeChunk codeChunk : Chunks.codeChunks)
+			codeChunks.put(codeChunk.frame.label, codeChunk);
+	}
+
+	/**
+	 * Specializes functions for constant arguments; {@link Chunks#codeChunks} is
+	 * extended and replaced accordingly.
+	 */
+	public void specialize() {
+		// Patterns of constant arguments and their frequencies.
+		LinkedHashMap<Label, HashMap<List<Long>, Integer>> patterns = new LinkedHashMap<Label, HashMap<List<Long>, Integer>>();
+		for (CodeChunk codeChunk : Chunks.codeChunks) {
+			HashMap<Temp, Long> consts = ConstPropagator.constTemps(codeChunk.stmts(), codeChunk.frame,
+					new HashMap<Temp, Long>());
+			for (ImcStmt stmt : codeChunk.stmts()) {
+				ImcCALL call = AliasAnalysis.call(stmt);
+				List<Long> pattern = (call == null) ? null : pattern(call, consts);
+				if (pattern == null)
+					continue;
+				if (patterns.get(call.label) == null)
+					patterns.put(call.label, new HashMap<List<Long>, Integer>());
+				patterns.get(call.label).put(pattern, patterns.get(call.label).getOrDefault(pattern, 0) + 1);
+			}
+		}
+
+		// With a profile, functions never called are not cloned and the budget
+		// goes to the most frequently called functions first.
+		Vector<Label> labels = new Vector<Label>(patterns.keySet());
+		Profile profile = Profile.used();
+		if (profile != null) {
+			labels.removeIf(label -> profile.calls(Profile.funName(callGraph.funDef(label))) == 0);
+			labels.sort((fst, snd) -> Long.compare(profile.calls(Profile.funName(callGraph.funDef(snd))),
+					profile.calls(Profile.funName(callGraph.funDef(fst)))));
+		}
+		for (Label label : labels) {
+			Vector<Map.Entry<List<Long>, Integer>> entries = new Vector<Map.Entry<List<Long>, Integer>>(
+					patterns.get(label).entrySet());
+			entries.sort((fst, snd) -> snd.getValue() - fst.getValue());
+			LinkedHashMap<List<Long>, Label> funClones = new LinkedHashMap<List<Long>, Label>();
+			for (Map.Entry<List<Long>, Integer> entry : entries) {
+				if ((numClones == maxClones) || (funClones.size() == maxClonesPerFun))
+					break;
+				Label cloneLabel = new Label(label.name.substring(1) + "$" + (funClones.size() + 1));
+				Chunks.codeChunks.add(clone(codeChunks.get(label), cloneLabel, entry.getKey()));
+				callGraph.addClone(cloneLabel, label);
+				funClones.put(entry.getKey(), cloneLabel);
+				numClones++;
+			}
+			clones.put(label, funClones);
+		}
+
+		for (int c = 0; c < Chunks.codeChunks.size(); c++) {
+			CodeChunk codeChunk = Chunks.codeChunks.get(c);
+			Vector<ImcStmt> stmts = retarget(codeChunk.stmts(), codeChunk.frame);
+			Chunks.codeChunks.set(c, new CodeChunk(codeChunk.frame, stmts, codeChunk.entryLabel, codeChunk.exitLabel));
+		}
+	}
+
+	/**
+	 * Returns the number of clones produced.
+	 *
+	 * @return The number of clones.
+	 */
+	public int numClones() {
+		return numClones;
+	}
+
+	/**
+	 * Returns the number of calls retargeted to clones.
+	 *
+	 * @return The number of calls retargeted.
+	 */
+	public int numRetargetedCalls() {
+		return numRetargetedCalls;
+	}
+
+	/**
+	 * Returns the pattern of constant arguments of a call.
+	 *
+	 * @return The values of arguments ({@code null} for arguments that are not
+	 *         constant and for the static link), or {@code null} if the called
+	 *         function cannot be specialized or no argument is constant.
+	 */
+	private List<Long> pattern(ImcCALL call, HashMap<Temp, Long> consts) {
+		if (!callGraph.isDefined(call.label) || (codeChunks.get(call.label) == null))
+			return null;
+		Vector<ImcExpr> args = call.args();
+		Vector<Long> pattern = new Vector<Long>();
+		pattern.add(null);
+		boolean constArgs = false;
+		for (int a = 1; a < args.size(); a++) {
+			Long value = ConstPropagator.eval(args.get(a), consts);
+			pattern.add(value);
+			constArgs |= value != null;
+		}
+		return constArgs ? pattern : null;
+	}
+
+	/**
+	 * Retargets calls to clones specialized for their constant arguments.
+	 */
+	private Vector<ImcStmt> retarget(Vector<ImcStmt> stmts, Frame frame) {
+		HashMap<Temp, Long> consts = ConstPropagator.constTemps(stmts, frame, new HashMap<Temp, Long>());
+		Vector<ImcStmt> newStmts = new Vector<ImcStmt>();
+		for (ImcStmt stmt : stmts) {
+			ImcCALL call = AliasAnalysis.call(stmt);
+			Label cloneLabel = (call == null) ? null : cloneLabel(call, consts);
+			if (cloneLabel == null) {
+				newStmts.add(stmt);
+				continue;
+			}
+			ImcCALL newCall = new ImcCALL(cloneLabel, call.args());
+			if (stmt instanceof ImcMOVE)
+				newStmts.add(new ImcMOVE(((ImcMOVE) stmt).dst, newCall));
+			else
+				newStmts.add(new ImcESTMT(newCall));
+			numRetargetedCalls++;
+		}
+		return newStmts;
+	}
+
+	/**
+	 * Returns the clone a call can be retargeted to, preferring the clone
+	 * specialized for exactly the same pattern.
+	 */
+	private Label cloneLabel(ImcCALL call, HashMap<Temp, Long> consts) {
+		LinkedHashMap<List<Long>, Label> funClones = clones.get(call.label);
+		List<Long> pattern = (funClones == null) ? null : pattern(call, consts);
+		if (pattern == null)
+			return null;
+		if (funClones.containsKey(pattern))
+			return funClones.get(pattern);
+		for (Map.Entry<List<Long>, Label> entry : funClones.entrySet()) {
+			boolean matches = true;
+			for (int a = 1; a < pattern.size(); a++) {
+				Long value = entry.getKey().get(a);
+				if ((value != null) && !value.equals(pattern.get(a)))
+					matches = false;
+			}
+			if (matches)
+				return entry.getValue();
+		}
+		return null;
+	}
+
+	/**
+	 * Produces a clone of a code chunk specialized for constant arguments.
+	 */
+	private CodeChunk clone(CodeChunk codeChunk, Label cloneLabel, List<Long> pattern) {
+		Frame frame = codeChunk.frame;
+		Temp[] argTemps = null;
+		if (frame.regConv()) {
+			argTemps = new Temp[pattern.size()];
+			for (int a = 0; a < pattern.size(); a++)
+				argTemps[a] = (frame.argTemp(a) == null) ? null : new Temp();
+		}
+		Frame cloneFrame = new Frame(cloneLabel, frame.depth, frame.locsSize, frame.argsSize, frame.origLocsSize,
+				argTemps);
+
+		Copier copier = new Copier();
+		copier.temps.put(frame.FP, cloneFrame.FP);
+		copier.temps.put(frame.RV, cloneFrame.RV);
+		for (int a = 0; a < pattern.size(); a++) {
+			if (frame.argTemp(a) != null)
+				copier.temps.put(frame.argTemp(a), cloneFrame.argTemp(a));
+		}
+		Vector<ImcStmt> stmts = new Vector<ImcStmt>();
+		for (ImcStmt stmt : codeChunk.stmts())
+			stmts.add((ImcStmt) stmt.accept(copier, null));
+		CodeChunk cloneChunk = new CodeChunk(cloneFrame, stmts, copier.label(codeChunk.entryLabel),
+				copier.label(codeChunk.exitLabel));
+
+		// Parameters passed in registers are constant from the very beginning,
+		// loads of parameters passed in memory are replaced if never overwritten.
+		HashMap<Temp, Long> seeds = new HashMap<Temp, Long>();
+		HashMap<AliasAnalysis.Addr, Long> pars = new HashMap<AliasAnalysis.Addr, Long>();
+		AbsFunDef funDef = callGraph.funDef(frame.label);
+		for (int a = 1; a < pattern.size(); a++) {
+			if (pattern.get(a) == null)
+				continue;
+			if (cloneFrame.argTemp(a) != null)
+				seeds.put(cloneFrame.argTemp(a), pattern.get(a));
+			else {
+				Access access = Frames.accesses.get(funDef.parDecls.parDecl(a - 1));
+				if (access instanceof RelAccess)
+					pars.put(new AliasAnalysis.Addr(cloneFrame.FP, ((RelAccess) access).offset, null), pattern.get(a));
+			}
+		}
+		AliasAnalysis aliases = new AliasAnalysis(cloneChunk);
+		for (ImcStmt stmt : stmts) {
+			if ((stmt instanceof ImcMOVE) && (((ImcMOVE) stmt).dst instanceof ImcMEM)) {
+				AliasAnalysis.Addr addr = aliases.addr(((ImcMEM) ((ImcMOVE) stmt).dst).addr);
+				pars.keySet().removeIf(par -> aliases.mayAlias(addr, par));
+			}
+			ImcCALL call = AliasAnalysis.call(stmt);
+			CallGraph.Summary summary = (call == null) ? null : callGraph.summary(call.label);
+			if ((summary != null) && (summary.outerFrames || (summary.writesPtrs && aliases.frameExposed())))
+				pars.clear();
+		}
+		for (int s = 0; s < stmts.size(); s++) {
+			ImcStmt stmt = stmts.get(s);
+			if (!(stmt instanceof ImcMOVE) || !(((ImcMOVE) stmt).src instanceof ImcMEM))
+				continue;
+			Long value = pars.get(aliases.addr(((ImcMEM) ((ImcMOVE) stmt).src).addr));
+			if (value != null)
+				stmts.set(s, new ImcMOVE(((ImcMOVE) stmt).dst, new ImcCONST(value)));
+		}
+
+		return new CodeChunk(cloneFrame, new ConstPropagator().fold(stmts, cloneFrame, seeds), cloneChunk.entryLabel,
+				cloneChunk.exitLabel);
+	}
+
+	/**
+	 * Copies linearized statements, renaming temporary variables and labels.
+	 *
+	 * @author sliva
+	 */
+	private static class Copier extends ImcCopier {
+
+		/** Maps temporary variables to their fresh copies. */
+		final HashMap<Temp, Temp> temps = new HashMap<Temp, Temp>();
+
+		@Override
+		protected Temp temp(Temp temp) {
+			Temp copy = temps.get(temp);
+			if (copy == null) {
+				copy = new Temp();
+				temps.put(temp, copy);
+			}
+			return copy;
+		}
+
+	}
+
+}
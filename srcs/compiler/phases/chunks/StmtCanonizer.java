@@ -14,27 +14,57 @@ import compiler.data.imcode.visitor.*;
  */
 public class StmtCanonizer implements ImcVisitor<Vector<ImcStmt>, Object> {
 
+	/** Whether operands are hoisted only when side effects require it. */
+	private final boolean commute;
+
+	/** The factory canonized expressions are produced by. */
+	private final ImcFactory factory;
+
+	public StmtCanonizer() {
+		this(false, new ImcFactory(false));
+	}
+
+	/**
+	 * Constructs a new statement canonizer.
+	 * 
+	 * @param commute Whether operands are hoisted only when side effects require
+	 *                it (see {@link ExprCanonizer#reorder}).
+	 * @param factory The factory canonized expressions are produced by (see
+	 *                {@link ExprCanonizer}).
+	 */
+	public StmtCanonizer(boolean commute, ImcFactory factory) {
+		this.commute = commute;
+		this.factory = factory;
+	}
+
 	public Vector<ImcStmt> visit(ImcCJUMP imcCJump, Object visArg) {
 		Vector<ImcStmt> result = new Vector<ImcStmt>();
-		ImcExpr cond = imcCJump.cond.accept(new ExprCanonizer(), result);
+		ImcExpr cond = imcCJump.cond.accept(new ExprCanonizer(commute, factory), result);
 		result.add(new ImcCJUMP(cond, imcCJump.posLabel, imcCJump.negLabel));
 		return result;
 	}
 
 	public Vector<ImcStmt> visit(ImcESTMT imcEStmt, Object visArg) {
+		if ((imcEStmt.expr instanceof ImcCALL) && commute) {
+			Vector<ImcStmt> result = new Vector<ImcStmt>();
+			ImcCALL imcCall = (ImcCALL) imcEStmt.expr;
+			Vector<ImcExpr> canonArgs = new ExprCanonizer(commute, factory).reorder(imcCall.args(), result);
+			result.add(new ImcESTMT(new ImcCALL(imcCall.label, canonArgs)));
+			return result;
+		}
 		if (imcEStmt.expr instanceof ImcCALL) {
 			Vector<ImcStmt> result = new Vector<ImcStmt>();
 			ImcCALL imcCall = (ImcCALL)imcEStmt.expr;
 			Vector<ImcExpr> canonArgs = new Vector<ImcExpr>();
 			for (ImcExpr arg: imcCall.args()) {
-				ImcExpr canonArg = arg.accept(new ExprCanonizer(), result);
+				ImcExpr canonArg = arg.accept(new ExprCanonizer(false, factory), result);
 				canonArgs.add(canonArg);
 			}
 			result.add(new ImcESTMT(new ImcCALL(imcCall.label, canonArgs)));
 			return result;
 		}
 		Vector<ImcStmt> result = new Vector<ImcStmt>();
-		ImcExpr expr = imcEStmt.expr.accept(new ExprCanonizer(), result);
+		ImcExpr expr = imcEStmt.expr.accept(new ExprCanonizer(commute, factory), result);
 		result.add(new ImcESTMT(expr));
 		return result;
 	}
@@ -52,24 +82,48 @@ public class StmtCanonizer implements ImcVisitor<Vector<ImcStmt>, Object> {
 	}
 
 	public Vector<ImcStmt> visit(ImcMOVE imcMove, Object visArg) {
+		if (commute) {
+			Vector<ImcStmt> result = new Vector<ImcStmt>();
+			ExprCanonizer exprCanonizer = new ExprCanonizer(commute, factory);
+			if ((imcMove.dst instanceof ImcTEMP) && (imcMove.src instanceof ImcCALL)) {
+				ImcCALL imcCall = (ImcCALL) imcMove.src;
+				Vector<ImcExpr> canonArgs = exprCanonizer.reorder(imcCall.args(), result);
+				result.add(new ImcMOVE(factory.temp(((ImcTEMP) imcMove.dst).temp), new ImcCALL(imcCall.label, canonArgs)));
+				return result;
+			}
+			if (imcMove.dst instanceof ImcMEM) {
+				Vector<ImcExpr> exprs = new Vector<ImcExpr>();
+				exprs.add(((ImcMEM) imcMove.dst).addr);
+				exprs.add(imcMove.src);
+				exprs = exprCanonizer.reorder(exprs, result);
+				result.add(new ImcMOVE(factory.mem(exprs.get(0)), exprs.get(1)));
+				return result;
+			}
+			if (imcMove.dst instanceof ImcTEMP) {
+				ImcExpr srcExpr = imcMove.src.accept(exprCanonizer, result);
+				result.add(new ImcMOVE(factory.temp(((ImcTEMP) imcMove.dst).temp), srcExpr));
+				return result;
+			}
+			throw new Report.InternalError();
+		}
 		if (imcMove.dst instanceof ImcMEM) {
 			Vector<ImcStmt> result = new Vector<ImcStmt>();
-			ImcExpr dstExpr = ((ImcMEM) (imcMove.dst)).addr.accept(new ExprCanonizer(), result);
+			ImcExpr dstExpr = ((ImcMEM) (imcMove.dst)).addr.accept(new ExprCanonizer(false, factory), result);
 			Temp dstTemp = new Temp();
-			result.add(new ImcMOVE(new ImcTEMP(dstTemp), dstExpr));
-			ImcExpr srcExpr = imcMove.src.accept(new ExprCanonizer(), result);
+			result.add(new ImcMOVE(factory.temp(dstTemp), dstExpr));
+			ImcExpr srcExpr = imcMove.src.accept(new ExprCanonizer(false, factory), result);
 			Temp srcTemp = new Temp();
-			result.add(new ImcMOVE(new ImcTEMP(srcTemp), srcExpr));
-			result.add(new ImcMOVE(new ImcMEM(new ImcTEMP(dstTemp)), new ImcTEMP(srcTemp)));
+			result.add(new ImcMOVE(factory.temp(srcTemp), srcExpr));
+			result.add(new ImcMOVE(factory.mem(factory.temp(dstTemp)), factory.temp(srcTemp)));
 			return result;
 		}
 		if (imcMove.dst instanceof ImcTEMP) {
 			Vector<ImcStmt> result = new Vector<ImcStmt>();
 			Temp dstTemp = ((ImcTEMP) (imcMove.dst)).temp;
-			ImcExpr srcExpr = imcMove.src.accept(new ExprCanonizer(), result);
+			ImcExpr srcExpr = imcMove.src.accept(new ExprCanonizer(false, factory), result);
 			Temp srcTemp = new Temp();
-			result.add(new ImcMOVE(new ImcTEMP(srcTemp), srcExpr));
-			result.add(new ImcMOVE(new ImcTEMP(dstTemp), new ImcTEMP(srcTemp)));
+			result.add(new ImcMOVE(factory.temp(srcTemp), srcExpr));
+			result.add(new ImcMOVE(factory.temp(dstTemp), factory.temp(srcTemp)));
 			return result;
 		}
 		throw new Report.InternalError();
@@ -0,0 +1,143 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.chunks;
+
+import java.util.*;
+import compiler.data.layout.*;
+import compiler.data.imcode.*;
+import compiler.data.imcode.visitor.*;
+
+/**
+ * Substitutes uses of temporary variables by expressions and folds operators
+ * applied to constant operands.
+ *
+ * Temporary variables defined by moves are not substituted. Expressions are
+ * copied only where something has been substituted or folded, and substituted
+ * constants and temporary variables are never shared.
+ *
+ * @author sliva
+ */
+public class TempSubstitutor implements ImcVisitor<ImcInstr, Object> {
+
+	/** Maps temporary variables to the expressions substituted for them. */
+	private final Map<Temp, ? extends ImcExpr> subst;
+
+	/**
+	 * Constructs a new substitutor.
+	 *
+	 * @param subst Maps temporary variables to the expressions substituted for
+	 *              them.
+	 */
+	public TempSubstitutor(Map<Temp, ? extends ImcExpr> subst) {
+		this.subst = subst;
+	}
+
+	/**
+	 * Substitutes uses of temporary variables within a statement.
+	 *
+	 * @param stmt The statement.
+	 * @return The statement after the substitution (the same statement if
+	 *         nothing has changed).
+	 */
+	public ImcStmt subst(ImcStmt stmt) {
+		return (ImcStmt) stmt.accept(this, null);
+	}
+
+	private ImcExpr expr(ImcExpr expr) {
+		return (ImcExpr) expr.accept(this, null);
+	}
+
+	@Override
+	public ImcInstr visit(ImcBINOP binOp, Object visArg) {
+		ImcExpr fstExpr = expr(binOp.fstExpr);
+		ImcExpr sndExpr = expr(binOp.sndExpr);
+		if ((fstExpr instanceof ImcCONST) && (sndExpr instanceof ImcCONST)) {
+			Long value = ConstFolder.fold(binOp.oper, ((ImcCONST) fstExpr).value, ((ImcCONST) sndExpr).value);
+			if (value != null)
+				return new ImcCONST(value);
+		}
+		if ((fstExpr == binOp.fstExpr) && (sndExpr == binOp.sndExpr))
+			return binOp;
+		return new ImcBINOP(binOp.oper, fstExpr, sndExpr);
+	}
+
+	@Override
+	public ImcInstr visit(ImcCALL call, Object visArg) {
+		boolean changed = false;
+		Vector<ImcExpr> args = new Vector<ImcExpr>();
+		for (ImcExpr arg : call.args()) {
+			ImcExpr substArg = expr(arg);
+			changed |= substArg != arg;
+			args.add(substArg);
+		}
+		return changed ? new ImcCALL(call.label, args) : call;
+	}
+
+	@Override
+	public ImcInstr visit(ImcCJUMP cjump, Object visArg) {
+		ImcExpr cond = expr(cjump.cond);
+		return (cond == cjump.cond) ? cjump : new ImcCJUMP(cond, cjump.posLabel, cjump.negLabel);
+	}
+
+	@Override
+	public ImcInstr visit(ImcCONST constant, Object visArg) {
+		return constant;
+	}
+
+	@Override
+	public ImcInstr visit(ImcESTMT eStmt, Object visArg) {
+		ImcExpr expr = expr(eStmt.expr);
+		return (expr == eStmt.expr) ? eStmt : new ImcESTMT(expr);
+	}
+
+	@Override
+	public ImcInstr visit(ImcJUMP jump, Object visArg) {
+		return jump;
+	}
+
+	@Override
+	public ImcInstr visit(ImcLABEL label, Object visArg) {
+		return label;
+	}
+
+	@Override
+	public ImcInstr visit(ImcMEM mem, Object visArg) {
+		ImcExpr addr = expr(mem.addr);
+		return (addr == mem.addr) ? mem : new ImcMEM(addr);
+	}
+
+	@Override
+	public ImcInstr visit(ImcMOVE move, Object visArg) {
+		ImcExpr dst = (move.dst instanceof ImcTEMP) ? move.dst : expr(move.dst);
+		ImcExpr src = expr(move.src);
+		return ((dst == move.dst) && (src == move.src)) ? move : new ImcMOVE(dst, src);
+	}
+
+	@Override
+	public ImcInstr visit(ImcNAME name, Object visArg) {
+		return name;
+	}
+
+	@Override
+	public ImcInstr visit(ImcTEMP temp, Object visArg) {
+		ImcExpr expr = subst.get(temp.temp);
+		if (expr instanceof ImcCONST)
+			return new ImcCONST(((ImcCONST) expr).value);
+		if (expr instanceof ImcTEMP)
+			return new ImcTEMP(((ImcTEMP) expr).temp);
+		return (expr == null) ? temp : expr;
+	}
+
+	@Override
+	public ImcInstr visit(ImcUNOP unOp, Object visArg) {
+		ImcExpr subExpr = expr(unOp.subExpr);
+		if (subExpr instanceof ImcCONST) {
+			Long value = ConstFolder.fold(unOp.oper, ((ImcCONST) subExpr).value);
+			if (value != null)
+				return new ImcCONST(value);
+		}
+		return (subExpr == unOp.subExpr) ? unOp : new ImcUNOP(unOp.oper, subExpr);
+	}
+
+}
@@ -0,0 +1,177 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.frames;
+
+import java.util.*;
+import compiler.data.abstree.*;
+import compiler.data.abstree.visitor.*;
+import compiler.phases.seman.*;
+
+/**
+ * Finding allocations that do not escape the function they are performed in.
+ *
+ * An allocation {@code p = new T} does not escape if {@code p} is a local
+ * variable of the function (neither a parameter nor accessed from a nested
+ * function nor with its address taken) and every other occurrence of {@code p}
+ * is either dereferenced (without the address of the result being taken) or
+ * deleted. Such allocations can be placed within the frame and the matching
+ * deletions removed.
+ *
+ * @author sliva
+ */
+public class EscapeAnalysis extends AbsFullVisitor<Object, Object> {
+
+	/** The usage of variables. */
+	private final VarUsage varUsage;
+
+	/** Maps pointer variables to allocations assigned to them. */
+	private final HashMap<AbsVarDecl, Vector<AbsNewExpr>> allocs = new HashMap<AbsVarDecl, Vector<AbsNewExpr>>();
+
+	/** Maps pointer variables to deletions of objects they point to. */
+	private final HashMap<AbsVarDecl, Vector<AbsDelExpr>> dels = new HashMap<AbsVarDecl, Vector<AbsDelExpr>>();
+
+	/** Maps variables to the number of their occurrences. */
+	private final HashMap<AbsVarDecl, Integer> numUses = new HashMap<AbsVarDecl, Integer>();
+
+	/** Maps variables to the number of their occurrences that do not escape. */
+	private final HashMap<AbsVarDecl, Integer> numSafeUses = new HashMap<AbsVarDecl, Integer>();
+
+	/** Variables whose value escapes regardless of the number of occurrences. */
+	private final HashSet<AbsVarDecl> escaped = new HashSet<AbsVarDecl>();
+
+	/** The stack of functions being traversed. */
+	private final Stack<AbsFunDef> funDefs = new Stack<AbsFunDef>();
+
+	/**
+	 * Constructs a new escape analysis.
+	 *
+	 * @param varUsage The usage of variables (already computed).
+	 */
+	public EscapeAnalysis(VarUsage varUsage) {
+		this.varUsage = varUsage;
+	}
+
+	/**
+	 * Returns the allocations within a function that do not escape it.
+	 *
+	 * @param funDef The function.
+	 * @return The allocations that can be placed within the frame.
+	 */
+	public Vector<AbsNewExpr> stackAllocs(AbsFunDef funDef) {
+		Vector<AbsNewExpr> stackAllocs = new Vector<AbsNewExpr>();
+		for (AbsVarDecl varDecl : allocs.keySet()) {
+			if ((varUsage.owner(varDecl) == funDef) && !escapes(varDecl))
+				stackAllocs.addAll(allocs.get(varDecl));
+		}
+		return stackAllocs;
+	}
+
+	/**
+	 * Returns the deletions within a function of objects placed within the
+	 * frame.
+	 *
+	 * @param funDef The function.
+	 * @return The deletions that can be removed.
+	 */
+	public Vector<AbsDelExpr> stackDels(AbsFunDef funDef) {
+		Vector<AbsDelExpr> stackDels = new Vector<AbsDelExpr>();
+		for (AbsVarDecl varDecl : dels.keySet()) {
+			if ((varUsage.owner(varDecl) == funDef) && allocs.containsKey(varDecl) && !escapes(varDecl))
+				stackDels.addAll(dels.get(varDecl));
+		}
+		return stackDels;
+	}
+
+	private boolean escapes(AbsVarDecl varDecl) {
+		return escaped.contains(varDecl) || varUsage.usage(varDecl).pinned()
+				|| !numUses.getOrDefault(varDecl, 0).equals(numSafeUses.getOrDefault(varDecl, 0));
+	}
+
+	@Override
+	public Object visit(AbsFunDef funDef, Object visArg) {
+		funDefs.push(funDef);
+		super.visit(funDef, visArg);
+		funDefs.pop();
+		return null;
+	}
+
+	@Override
+	public Object visit(AbsAssignStmt assignStmt, Object visArg) {
+		AbsVarDecl varDecl = localVar(assignStmt.dst);
+		if ((varDecl != null) && (assignStmt.src instanceof AbsNewExpr)) {
+			safeUse(varDecl);
+			if (allocs.get(varDecl) == null)
+				allocs.put(varDecl, new Vector<AbsNewExpr>());
+			allocs.get(varDecl).add((AbsNewExpr) assignStmt.src);
+		}
+		return super.visit(assignStmt, visArg);
+	}
+
+	@Override
+	public Object visit(AbsDelExpr delExpr, Object visArg) {
+		AbsVarDecl varDecl = localVar(delExpr.expr);
+		if (varDecl != null) {
+			safeUse(varDecl);
+			if (dels.get(varDecl) == null)
+				dels.put(varDecl, new Vector<AbsDelExpr>());
+			dels.get(varDecl).add(delExpr);
+		}
+		return super.visit(delExpr, visArg);
+	}
+
+	@Override
+	public Object visit(AbsUnExpr unExpr, Object visArg) {
+		switch (unExpr.oper) {
+		case DATA: {
+			AbsVarDecl varDecl = localVar(unExpr.subExpr);
+			if (varDecl != null)
+				safeUse(varDecl);
+			break;
+		}
+		case ADDR: {
+			// Taking the address of (a part of) the object pointed to.
+			AbsExpr expr = unExpr.subExpr;
+			while (expr instanceof AbsArrExpr)
+				expr = ((AbsArrExpr) expr).array;
+			if ((expr instanceof AbsUnExpr) && (((AbsUnExpr) expr).oper == AbsUnExpr.Oper.DATA)) {
+				AbsVarDecl varDecl = localVar(((AbsUnExpr) expr).subExpr);
+				if (varDecl != null)
+					escaped.add(varDecl);
+			}
+			break;
+		}
+		default:
+			break;
+		}
+		return super.visit(unExpr, visArg);
+	}
+
+	@Override
+	public Object visit(AbsVarName varName, Object visArg) {
+		AbsDecl decl = SemAn.declaredAt.get(varName);
+		if ((decl instanceof AbsVarDecl) && !(varName instanceof AbsFunName))
+			numUses.put((AbsVarDecl) decl, numUses.getOrDefault(decl, 0) + 1);
+		return super.visit(varName, visArg);
+	}
+
+	private void safeUse(AbsVarDecl varDecl) {
+		numSafeUses.put(varDecl, numSafeUses.getOrDefault(varDecl, 0) + 1);
+	}
+
+	/**
+	 * Returns the local variable (but not a parameter) of the current function an
+	 * expression names.
+	 */
+	private AbsVarDecl localVar(AbsExpr expr) {
+		if (!(expr instanceof AbsVarName) || (expr instanceof AbsFunName) || funDefs.isEmpty())
+			return null;
+		AbsDecl decl = SemAn.declaredAt.get((AbsVarName) expr);
+		if (!(decl instanceof AbsVarDecl) || (decl instanceof AbsParDecl))
+			return null;
+		if (varUsage.owner((AbsVarDecl) decl) != funDefs.peek())
+			return null;
+		return (AbsVarDecl) decl;
+	}
+
+}
@@ -21,6 +21,12 @@ public class Frames extends Phase {
 	/** Maps variable declarations to accesses. */
 	public static final AbsAttribute<AbsVarDecl, Access> accesses = new AbsAttribute<AbsVarDecl, Access>();
 
+	/** Maps allocations placed within frames to accesses of allocated objects. */
+	public static final AbsAttribute<AbsNewExpr, RelAccess> stackAllocs = new AbsAttribute<AbsNewExpr, RelAccess>();
+
+	/** Maps deletions of objects placed within frames to {@code true}. */
+	public static final AbsAttribute<AbsDelExpr, Boolean> stackDels = new AbsBoolAttribute<AbsDelExpr>();
+
 	/**
 	 * Constructs a new phase for computing layout.
 	 */
@@ -3,6 +3,7 @@
  */
 package compiler.phases.frames;
 
+import java.util.*;
 import compiler.data.abstree.*;
 import compiler.data.abstree.visitor.*;
 import compiler.data.type.*;
@@ -16,6 +17,35 @@ import compiler.phases.seman.*;
  */
 public class FrmEvaluator extends AbsFullVisitor<Object, FrmEvaluator.Context> {
 
+    /**
+     * Whether blocks of local variables should be packed.
+     */
+    private final boolean packFrames = compiler.Main.cmdLineArgValue("--pack-frames") != null;
+
+    /**
+     * The maximal number of arguments passed in registers (0 if the memory
+     * calling convention is used).
+     */
+    private final int regArgs = compiler.Main.cmdLineArgValue("--reg-args") == null ? 0
+            : Integer.parseInt(compiler.Main.cmdLineArgValue("--reg-args"));
+
+    /**
+     * Whether allocations that do not escape should be placed within frames.
+     */
+    private final boolean stackAlloc = compiler.Main.cmdLineArgValue("--stack-alloc") != null;
+
+    /**
+     * The usage of variables (computed only if frames are packed, arguments
+     * are passed in registers or allocations are placed within frames).
+     */
+    private VarUsage varUsage = null;
+
+    /**
+     * The escape analysis (computed only if allocations are placed within
+     * frames).
+     */
+    private EscapeAnalysis escapeAnalysis = null;
+
     /**
      * The context {@link FrmEvaluator} uses while computing function frames and
      * variable accesses.
@@ -42,6 +72,14 @@ public class FrmEvaluator extends AbsFullVisitor<Object, FrmEvaluator.Context> {
     public Object visit(AbsSource source, Context visArg) {
         FunContext context = new FunContext();
         context.depth = 0;
+        if (packFrames || (regArgs > 0) || stackAlloc) {
+            varUsage = new VarUsage();
+            source.accept(varUsage, null);
+        }
+        if (stackAlloc) {
+            escapeAnalysis = new EscapeAnalysis(varUsage);
+            source.accept(escapeAnalysis, null);
+        }
         return super.visit(source, context);
     }
 
@@ -66,7 +104,43 @@ public class FrmEvaluator extends AbsFullVisitor<Object, FrmEvaluator.Context> {
         super.visit(decl, context);
         Label label;
         label = context.depth == 1 ? new Label(decl.name) : new Label();
-        Frames.frames.put(decl, new Frame(label, context.depth, context.locsSize, context.argsSize));
+        long locsSize = context.locsSize;
+        if (packFrames && (decl.value instanceof AbsBlockExpr)) {
+            Vector<AbsVarDecl> varDecls = new Vector<AbsVarDecl>();
+            for (AbsDecl localDecl : ((AbsBlockExpr) decl.value).decls.decls()) {
+                if (localDecl instanceof AbsVarDecl)
+                    varDecls.add((AbsVarDecl) localDecl);
+            }
+            locsSize = new FrmLayout(varUsage).layout(varDecls, context.depth);
+        }
+        long origLocsSize = context.locsSize;
+        if (stackAlloc) {
+            // Objects that do not escape are placed below local variables.
+            for (AbsNewExpr newExpr : escapeAnalysis.stackAllocs(decl)) {
+                long size = SemAn.isType.get(newExpr.type).size();
+                locsSize += size;
+                origLocsSize += size;
+                Frames.stackAllocs.put(newExpr, new RelAccess(size, -locsSize, context.depth + 1));
+            }
+            for (AbsDelExpr delExpr : escapeAnalysis.stackDels(decl))
+                Frames.stackDels.put(delExpr, true);
+        }
+        Temp[] argTemps = null;
+        if (regArgs > 0) {
+            // Scalar parameters whose address is never needed are passed in registers.
+            argTemps = new Temp[decl.parDecls.numParDecls() + 1];
+            for (int par = 1; par <= Math.min(regArgs, decl.parDecls.numParDecls()); par++) {
+                AbsParDecl parDecl = decl.parDecls.parDecl(par - 1);
+                Access access = Frames.accesses.get(parDecl);
+                if ((SemAn.isType.get(parDecl.type).actualType() instanceof SemArrType)
+                        || (access.size != new SemPtrType(new SemVoidType()).size())
+                        || varUsage.usage(parDecl).pinned())
+                    continue;
+                argTemps[par] = new Temp();
+                Frames.accesses.put(parDecl, new RegAccess(access.size, argTemps[par]));
+            }
+        }
+        Frames.frames.put(decl, new Frame(label, context.depth, locsSize, context.argsSize, origLocsSize, argTemps));
         return null;
     }
 
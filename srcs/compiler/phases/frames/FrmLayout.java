@@ -0,0 +1,124 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.frames;
+
+import java.util.*;
+import compiler.data.abstree.*;
+import compiler.data.layout.*;
+
+/**
+ * Packing the block of local variables within a frame.
+ *
+ * Local variables whose live ranges do not overlap share the same slot, and
+ * slots are ordered by the (loop weighted) number of accesses so that the most
+ * frequently accessed slots are placed closest to the frame pointer. Variables
+ * whose address is taken or which are accessed from nested functions keep a
+ * slot of their own.
+ *
+ * @author sliva
+ */
+public class FrmLayout {
+
+	/**
+	 * A slot within the block of local variables.
+	 *
+	 * @author sliva
+	 */
+	private class Slot {
+
+		/** The size of the slot. */
+		public final long size;
+
+		/** The variables sharing this slot. */
+		public final Vector<AbsVarDecl> varDecls = new Vector<AbsVarDecl>();
+
+		/** The total weight of accesses to this slot. */
+		public long weight = 0;
+
+		/**
+		 * Constructs a new slot.
+		 *
+		 * @param size The size of the slot.
+		 */
+		public Slot(long size) {
+			this.size = size;
+		}
+
+		/**
+		 * Returns whether a variable can be placed within this slot.
+		 *
+		 * @param varDecl The declaration of a variable.
+		 * @return {@code true} if the variable can share this slot.
+		 */
+		public boolean fits(AbsVarDecl varDecl) {
+			if (Frames.accesses.get(varDecl).size != size)
+				return false;
+			VarUsage.Usage usage = usage(varDecl);
+			for (AbsVarDecl slotVarDecl : varDecls) {
+				if (usage.overlaps(usage(slotVarDecl)))
+					return false;
+			}
+			return true;
+		}
+
+	}
+
+	/** The usage of variables. */
+	private final VarUsage varUsage;
+
+	/**
+	 * Constructs a new frame layout packer.
+	 *
+	 * @param varUsage The usage of variables.
+	 */
+	public FrmLayout(VarUsage varUsage) {
+		this.varUsage = varUsage;
+	}
+
+	/**
+	 * Recomputes accesses of local variables of a function.
+	 *
+	 * @param varDecls The declarations of local variables of a function (with
+	 *                 accesses already computed).
+	 * @param depth    The static depth of the function.
+	 * @return The size of the packed block of local variables.
+	 */
+	public long layout(Vector<AbsVarDecl> varDecls, int depth) {
+		// Place the most frequently accessed variables first.
+		Vector<AbsVarDecl> sortedVarDecls = new Vector<AbsVarDecl>(varDecls);
+		sortedVarDecls.sort((fst, snd) -> Long.compare(usage(snd).weight, usage(fst).weight));
+
+		Vector<Slot> slots = new Vector<Slot>();
+		for (AbsVarDecl varDecl : sortedVarDecls) {
+			Slot slot = null;
+			for (Slot candidate : slots) {
+				if (candidate.fits(varDecl)) {
+					slot = candidate;
+					break;
+				}
+			}
+			if (slot == null) {
+				slot = new Slot(Frames.accesses.get(varDecl).size);
+				slots.add(slot);
+			}
+			slot.varDecls.add(varDecl);
+			slot.weight += usage(varDecl).weight;
+		}
+
+		// Place the most frequently accessed slots closest to the frame pointer.
+		slots.sort((fst, snd) -> Long.compare(snd.weight, fst.weight));
+		long locsSize = 0;
+		for (Slot slot : slots) {
+			locsSize += slot.size;
+			for (AbsVarDecl varDecl : slot.varDecls)
+				Frames.accesses.put(varDecl, new RelAccess(slot.size, -locsSize, depth + 1));
+		}
+		return locsSize;
+	}
+
+	private VarUsage.Usage usage(AbsVarDecl varDecl) {
+		return varUsage.usage(varDecl);
+	}
+
+}
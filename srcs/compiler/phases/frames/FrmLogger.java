@@ -41,6 +41,14 @@ public class FrmLogger extends AbsNullVisitor<Object, Object> {
 		return null;
 	}
 
+	@Override
+	public Object visit(AbsNewExpr newExpr, Object visArg) {
+		Access access = Frames.stackAllocs.get(newExpr);
+		if (access != null)
+			access.log(logger);
+		return null;
+	}
+
 	@Override
 	public Object visit(AbsParDecl parDecl, Object visArg) {
 		Access access = Frames.accesses.get(parDecl);
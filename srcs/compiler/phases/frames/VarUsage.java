@@ -0,0 +1,200 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.frames;
+
+import java.util.*;
+import compiler.data.abstree.*;
+import compiler.data.abstree.visitor.*;
+import compiler.phases.seman.*;
+
+/**
+ * Computing how variables and parameters are used within the functions they
+ * are declared in.
+ *
+ * For each variable or parameter the visitor records the range of positions
+ * (in the order of traversal) it is live within, the number of its accesses
+ * weighted by the loop nesting depth, and whether it must keep a fixed memory
+ * location because its address is taken or because it is accessed from a
+ * nested function.
+ *
+ * @author sliva
+ */
+public class VarUsage extends AbsFullVisitor<Object, Object> {
+
+	/**
+	 * The usage of a single variable or parameter.
+	 *
+	 * @author sliva
+	 */
+	public static class Usage {
+
+		/** The position of the first access (or {@code Integer.MAX_VALUE}). */
+		public int first = Integer.MAX_VALUE;
+
+		/** The position of the last access (or {@code -1}). */
+		public int last = -1;
+
+		/** The number of accesses weighted by the loop nesting depth. */
+		public long weight = 0;
+
+		/** Whether the address of the variable is taken. */
+		public boolean addrTaken = false;
+
+		/** Whether the variable is accessed from a nested function. */
+		public boolean nonLocal = false;
+
+		/**
+		 * Returns whether the variable must stay at its memory location during the
+		 * entire execution of its function.
+		 *
+		 * @return {@code true} if the variable is pinned to memory.
+		 */
+		public boolean pinned() {
+			return addrTaken || nonLocal;
+		}
+
+		/**
+		 * Returns whether the live ranges of two variables overlap.
+		 *
+		 * @param that The other variable.
+		 * @return {@code true} if the live ranges overlap.
+		 */
+		public boolean overlaps(Usage that) {
+			if (this.pinned() || that.pinned())
+				return true;
+			if (this.last < 0 || that.last < 0)
+				return false;
+			return (this.first <= that.last) && (that.first <= this.last);
+		}
+
+	}
+
+	/** Maps variable and parameter declarations to their usage. */
+	private final HashMap<AbsVarDecl, Usage> usages = new HashMap<AbsVarDecl, Usage>();
+
+	/** Maps variable and parameter declarations to functions they belong to. */
+	private final HashMap<AbsVarDecl, AbsFunDef> owners = new HashMap<AbsVarDecl, AbsFunDef>();
+
+	/** The stack of functions being traversed. */
+	private final Stack<AbsFunDef> funDefs = new Stack<AbsFunDef>();
+
+	/** The current position. */
+	private int pos = 0;
+
+	/** The nesting depth of loops within the current function. */
+	private int loopDepth = 0;
+
+	/** The position the outermost loop of the current function starts at. */
+	private int loopBeg = 0;
+
+	/** Variables accessed within the outermost loop of the current function. */
+	private Vector<Usage> loopUsages = new Vector<Usage>();
+
+	/**
+	 * Returns the usage of a variable or parameter.
+	 *
+	 * @param varDecl The declaration of a variable or parameter.
+	 * @return The usage (never {@code null}).
+	 */
+	public Usage usage(AbsVarDecl varDecl) {
+		Usage usage = usages.get(varDecl);
+		if (usage == null) {
+			usage = new Usage();
+			usages.put(varDecl, usage);
+		}
+		return usage;
+	}
+
+	/**
+	 * Returns the function a variable or parameter is declared in.
+	 *
+	 * @param varDecl The declaration of a variable or parameter.
+	 * @return The function or {@code null} for global variables.
+	 */
+	public AbsFunDef owner(AbsVarDecl varDecl) {
+		return owners.get(varDecl);
+	}
+
+	@Override
+	public Object visit(AbsFunDef funDef, Object visArg) {
+		for (AbsParDecl parDecl : funDef.parDecls.parDecls())
+			owners.put(parDecl, funDef);
+		if (funDef.value instanceof AbsBlockExpr) {
+			for (AbsDecl decl : ((AbsBlockExpr) funDef.value).decls.decls()) {
+				if (decl instanceof AbsVarDecl)
+					owners.put((AbsVarDecl) decl, funDef);
+			}
+		}
+
+		int outerLoopDepth = loopDepth;
+		int outerLoopBeg = loopBeg;
+		Vector<Usage> outerLoopUsages = loopUsages;
+		loopDepth = 0;
+		loopUsages = new Vector<Usage>();
+		funDefs.push(funDef);
+		super.visit(funDef, visArg);
+		funDefs.pop();
+		loopDepth = outerLoopDepth;
+		loopBeg = outerLoopBeg;
+		loopUsages = outerLoopUsages;
+		return null;
+	}
+
+	@Override
+	public Object visit(AbsWhileStmt whileStmt, Object visArg) {
+		if (loopDepth == 0) {
+			loopBeg = ++pos;
+			loopUsages.clear();
+		}
+		loopDepth++;
+		super.visit(whileStmt, visArg);
+		loopDepth--;
+		if (loopDepth == 0) {
+			int loopEnd = ++pos;
+			for (Usage usage : loopUsages)
+				usage.last = Math.max(usage.last, loopEnd);
+			loopUsages.clear();
+		}
+		return null;
+	}
+
+	@Override
+	public Object visit(AbsVarName varName, Object visArg) {
+		AbsDecl decl = SemAn.declaredAt.get(varName);
+		if (!(decl instanceof AbsVarDecl))
+			return null;
+		AbsVarDecl varDecl = (AbsVarDecl) decl;
+		Usage usage = usage(varDecl);
+		pos++;
+		usage.first = Math.min(usage.first, loopDepth > 0 ? loopBeg : pos);
+		usage.last = Math.max(usage.last, pos);
+		long weight = 1;
+		for (int depth = 0; depth < Math.min(loopDepth, 6); depth++)
+			weight *= 10;
+		usage.weight += weight;
+		if (loopDepth > 0)
+			loopUsages.add(usage);
+		AbsFunDef owner = owners.get(varDecl);
+		if ((owner != null) && (funDefs.isEmpty() || (funDefs.peek() != owner)))
+			usage.nonLocal = true;
+		return null;
+	}
+
+	@Override
+	public Object visit(AbsUnExpr unExpr, Object visArg) {
+		super.visit(unExpr, visArg);
+		if (unExpr.oper == AbsUnExpr.Oper.ADDR) {
+			AbsExpr expr = unExpr.subExpr;
+			while (expr instanceof AbsArrExpr)
+				expr = ((AbsArrExpr) expr).array;
+			if ((expr instanceof AbsVarName) && !(expr instanceof AbsFunName)) {
+				AbsDecl decl = SemAn.declaredAt.get((AbsVarName) expr);
+				if (decl instanceof AbsVarDecl)
+					usage((AbsVarDecl) decl).addrTaken = true;
+			}
+		}
+		return null;
+	}
+
+}
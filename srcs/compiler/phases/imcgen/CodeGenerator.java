@@ -10,6 +10,7 @@ import compiler.data.layout.Label;
 import compiler.data.layout.Temp;
 import compiler.phases.chunks.Chunks;
 import compiler.phases.frames.Frames;
+import compiler.phases.frames.VarUsage;
 
 import java.util.Stack;
 import java.util.Vector;
@@ -27,6 +28,14 @@ public class CodeGenerator extends AbsFullVisitor<Object, Stack<Frame>> {
 
     @Override
     public Object visit(AbsSource source, Stack<Frame> visArg) {
+        String unroll = compiler.Main.cmdLineArgValue("--unroll");
+        if (unroll != null) {
+            VarUsage varUsage = new VarUsage();
+            source.accept(varUsage, null);
+            LoopUnroller loopUnroller = new LoopUnroller(varUsage, Integer.parseInt(unroll));
+            source.accept(loopUnroller, null);
+            stmtGenerator = new StmtGenerator(loopUnroller);
+        }
         source.decls.accept(this, visArg);
         return null;
     }
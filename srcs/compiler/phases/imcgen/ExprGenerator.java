@@ -17,21 +17,38 @@ public class ExprGenerator implements AbsVisitor<ImcExpr, Stack<Frame>> {
 
     //Temp temp = new Temp();
 
+    /** Whether structurally identical pure expressions are shared within a function. */
+    private final boolean hashCons = compiler.Main.cmdLineArgValue("--hash-cons") != null;
+
+    /**
+     * Returns the factory of expressions of the function being generated (or of
+     * expressions outside functions if there is none).
+     */
+    private ImcFactory factory(Stack<Frame> frames) {
+        Frame frame = frames.isEmpty() ? null : frames.peek();
+        ImcFactory factory = ImcGen.factories.get(frame);
+        if (factory == null) {
+            factory = new ImcFactory(hashCons);
+            ImcGen.factories.put(frame, factory);
+        }
+        return factory;
+    }
+
     @Override
     public ImcExpr visit(AbsAtomExpr atomExpr, Stack<Frame> visArg) {
         if (atomExpr.type == AbsAtomExpr.Type.INT) {
-            ImcGen.exprImCode.put(atomExpr, new ImcCONST(Integer.parseInt(atomExpr.expr)));
+            ImcGen.exprImCode.put(atomExpr, factory(visArg).constant(Integer.parseInt(atomExpr.expr)));
         } else if (atomExpr.type == AbsAtomExpr.Type.VOID) {
-            ImcGen.exprImCode.put(atomExpr, new ImcCONST(0));
+            ImcGen.exprImCode.put(atomExpr, factory(visArg).constant(0));
         } else if (atomExpr.type == AbsAtomExpr.Type.CHAR) {
-            ImcGen.exprImCode.put(atomExpr, new ImcCONST((int) atomExpr.expr.charAt(1)));
+            ImcGen.exprImCode.put(atomExpr, factory(visArg).constant((int) atomExpr.expr.charAt(1)));
         } else if (atomExpr.type == AbsAtomExpr.Type.BOOL) {
             if (atomExpr.expr.equals("true"))
-                ImcGen.exprImCode.put(atomExpr, new ImcCONST(1));
+                ImcGen.exprImCode.put(atomExpr, factory(visArg).constant(1));
             else if (atomExpr.expr.equals("false"))
-                ImcGen.exprImCode.put(atomExpr, new ImcCONST(0));
+                ImcGen.exprImCode.put(atomExpr, factory(visArg).constant(0));
         } else if (atomExpr.type == AbsAtomExpr.Type.PTR) {
-            ImcGen.exprImCode.put(atomExpr, new ImcCONST(0));
+            ImcGen.exprImCode.put(atomExpr, factory(visArg).constant(0));
         }
 
         return null;
@@ -48,37 +65,37 @@ public class ExprGenerator implements AbsVisitor<ImcExpr, Stack<Frame>> {
         if (binExpr.oper != null)
             switch (binExpr.oper) {
                 case ADD:
-                    ImcGen.exprImCode.put(binExpr, new ImcBINOP(ImcBINOP.Oper.ADD, expr1, expr2));
+                    ImcGen.exprImCode.put(binExpr, factory(visArg).binop(ImcBINOP.Oper.ADD, expr1, expr2));
                     break;
                 case SUB:
-                    ImcGen.exprImCode.put(binExpr, new ImcBINOP(ImcBINOP.Oper.SUB, expr1, expr2));
+                    ImcGen.exprImCode.put(binExpr, factory(visArg).binop(ImcBINOP.Oper.SUB, expr1, expr2));
                     break;
                 case MOD:
-                    ImcGen.exprImCode.put(binExpr, new ImcBINOP(ImcBINOP.Oper.MOD, expr1, expr2));
+                    ImcGen.exprImCode.put(binExpr, factory(visArg).binop(ImcBINOP.Oper.MOD, expr1, expr2));
                     break;
                 case MUL:
-                    ImcGen.exprImCode.put(binExpr, new ImcBINOP(ImcBINOP.Oper.MUL, expr1, expr2));
+                    ImcGen.exprImCode.put(binExpr, factory(visArg).binop(ImcBINOP.Oper.MUL, expr1, expr2));
                     break;
                 case DIV:
-                    ImcGen.exprImCode.put(binExpr, new ImcBINOP(ImcBINOP.Oper.DIV, expr1, expr2));
+                    ImcGen.exprImCode.put(binExpr, factory(visArg).binop(ImcBINOP.Oper.DIV, expr1, expr2));
                     break;
                 case EQU:
-                    ImcGen.exprImCode.put(binExpr, new ImcBINOP(ImcBINOP.Oper.EQU, expr1, expr2));
+                    ImcGen.exprImCode.put(binExpr, factory(visArg).binop(ImcBINOP.Oper.EQU, expr1, expr2));
                     break;
                 case NEQ:
-                    ImcGen.exprImCode.put(binExpr, new ImcBINOP(ImcBINOP.Oper.NEQ, expr1, expr2));
+                    ImcGen.exprImCode.put(binExpr, factory(visArg).binop(ImcBINOP.Oper.NEQ, expr1, expr2));
                     break;
                 case LTH:
-                    ImcGen.exprImCode.put(binExpr, new ImcBINOP(ImcBINOP.Oper.LTH, expr1, expr2));
+                    ImcGen.exprImCode.put(binExpr, factory(visArg).binop(ImcBINOP.Oper.LTH, expr1, expr2));
                     break;
                 case LEQ:
-                    ImcGen.exprImCode.put(binExpr, new ImcBINOP(ImcBINOP.Oper.LEQ, expr1, expr2));
+                    ImcGen.exprImCode.put(binExpr, factory(visArg).binop(ImcBINOP.Oper.LEQ, expr1, expr2));
                     break;
                 case GEQ:
-                    ImcGen.exprImCode.put(binExpr, new ImcBINOP(ImcBINOP.Oper.GEQ, expr1, expr2));
+                    ImcGen.exprImCode.put(binExpr, factory(visArg).binop(ImcBINOP.Oper.GEQ, expr1, expr2));
                     break;
                 case GTH:
-                    ImcGen.exprImCode.put(binExpr, new ImcBINOP(ImcBINOP.Oper.GTH, expr1, expr2));
+                    ImcGen.exprImCode.put(binExpr, factory(visArg).binop(ImcBINOP.Oper.GTH, expr1, expr2));
                     break;
                 default:
                     break;
@@ -97,16 +114,16 @@ public class ExprGenerator implements AbsVisitor<ImcExpr, Stack<Frame>> {
                 ImcGen.exprImCode.put(unExpr, expr);
                 break;
             case SUB:
-                ImcGen.exprImCode.put(unExpr, new ImcUNOP(ImcUNOP.Oper.NEG, expr));
+                ImcGen.exprImCode.put(unExpr, factory(visArg).unop(ImcUNOP.Oper.NEG, expr));
                 break;
             case NOT:
-                ImcGen.exprImCode.put(unExpr, new ImcUNOP(ImcUNOP.Oper.NOT, expr));
+                ImcGen.exprImCode.put(unExpr, factory(visArg).unop(ImcUNOP.Oper.NOT, expr));
                 break;
             case ADDR:
                 ImcGen.exprImCode.put(unExpr, expr);
                 break;
             case DATA:
-                ImcGen.exprImCode.put(unExpr, new ImcMEM(expr));
+                ImcGen.exprImCode.put(unExpr, factory(visArg).mem(expr));
                 break;
             default:
                 break;
@@ -120,11 +137,11 @@ public class ExprGenerator implements AbsVisitor<ImcExpr, Stack<Frame>> {
         Frame frame = Frames.frames.get((AbsFunDecl)SemAn.declaredAt.get(funName));
 
         if(frame == null || frame.depth == 1)
-            imcExprs.add(new ImcTEMP(visArg.peek().FP));
+            imcExprs.add(factory(visArg).temp(visArg.peek().FP));
         else {
-            ImcExpr expr = new ImcTEMP(visArg.peek().FP);
+            ImcExpr expr = factory(visArg).temp(visArg.peek().FP);
             for(int i = frame.depth; i < visArg.peek().depth; i++){
-                expr = new ImcMEM(expr);
+                expr = factory(visArg).mem(expr);
             }
             imcExprs.add(expr);
         }
@@ -172,17 +189,20 @@ public class ExprGenerator implements AbsVisitor<ImcExpr, Stack<Frame>> {
     public ImcExpr visit(AbsVarName varName, Stack<Frame> visArg) {
         Access varAcces = Frames.accesses.get((AbsVarDecl) SemAn.declaredAt.get(varName));
         if (varAcces instanceof AbsAccess){
-            ImcExpr address = new ImcNAME(((AbsAccess) varAcces).label);
-            ImcGen.exprImCode.put(varName, new ImcMEM(address));
+            ImcExpr address = factory(visArg).name(((AbsAccess) varAcces).label);
+            ImcGen.exprImCode.put(varName, factory(visArg).mem(address));
+            return null;
+        } else if (varAcces instanceof RegAccess) {
+            ImcGen.exprImCode.put(varName, factory(visArg).temp(((RegAccess) varAcces).temp));
             return null;
         } else {
             RelAccess access = (RelAccess) varAcces;
-            ImcExpr addr = new ImcTEMP(visArg.peek().FP);
+            ImcExpr addr = factory(visArg).temp(visArg.peek().FP);
             for (int i = access.depth; i < visArg.peek().depth; i++){
-                addr = new ImcMEM(addr);
+                addr = factory(visArg).mem(addr);
             }
-            addr = new ImcBINOP(ImcBINOP.Oper.ADD, addr, new ImcCONST(access.offset));
-            ImcGen.exprImCode.put(varName, new ImcMEM(addr));
+            addr = factory(visArg).binop(ImcBINOP.Oper.ADD, addr, factory(visArg).constant(access.offset));
+            ImcGen.exprImCode.put(varName, factory(visArg).mem(addr));
             return null;
         }
     }
@@ -192,18 +212,24 @@ public class ExprGenerator implements AbsVisitor<ImcExpr, Stack<Frame>> {
     public ImcExpr visit(AbsArrExpr arrExpr, Stack<Frame> visArg) {
         ImcExpr array = ((ImcMEM) (ImcGen.exprImCode.get(arrExpr.array))).addr;
         ImcExpr index = ImcGen.exprImCode.get(arrExpr.index);
-        ImcCONST arrSize = new ImcCONST(SemAn.isOfType.get(arrExpr).size());
-        ImcBINOP indexValue = new ImcBINOP(ImcBINOP.Oper.MUL, index, arrSize);
-        ImcMEM arrayAdr = new ImcMEM(new ImcBINOP(ImcBINOP.Oper.ADD, array, indexValue));
+        ImcExpr arrSize = factory(visArg).constant(SemAn.isOfType.get(arrExpr).size());
+        ImcExpr indexValue = factory(visArg).binop(ImcBINOP.Oper.MUL, index, arrSize);
+        ImcExpr arrayAdr = factory(visArg).mem(factory(visArg).binop(ImcBINOP.Oper.ADD, array, indexValue));
         ImcGen.exprImCode.put(arrExpr, arrayAdr);
         return null;
     }
 
     @Override
     public ImcExpr visit(AbsNewExpr newExpr, Stack<Frame> visArg) {
+        RelAccess stackAccess = Frames.stackAllocs.get(newExpr);
+        if (stackAccess != null) {
+            ImcExpr addr = factory(visArg).binop(ImcBINOP.Oper.ADD, factory(visArg).temp(visArg.peek().FP), factory(visArg).constant(stackAccess.offset));
+            ImcGen.exprImCode.put(newExpr, addr);
+            return null;
+        }
         Vector<ImcExpr> args = new Vector<ImcExpr>();
-        args.add(new ImcCONST(0));
-        ImcCONST typeSize = new ImcCONST(SemAn.isOfType.get(newExpr).size());
+        args.add(factory(visArg).constant(0));
+        ImcExpr typeSize = factory(visArg).constant(SemAn.isOfType.get(newExpr).size());
         args.add(typeSize);
         ImcGen.exprImCode.put(newExpr, new ImcCALL(new Label("new"), args));
         return null;
@@ -211,8 +237,12 @@ public class ExprGenerator implements AbsVisitor<ImcExpr, Stack<Frame>> {
 
     @Override
     public ImcExpr visit(AbsDelExpr delExpr, Stack<Frame> visArg) {
+        if (Frames.stackDels.get(delExpr) != null) {
+            ImcGen.exprImCode.put(delExpr, factory(visArg).constant(0));
+            return null;
+        }
         Vector<ImcExpr> args = new Vector<ImcExpr>();
-        args.add(new ImcCONST(0));
+        args.add(factory(visArg).constant(0));
         ImcExpr expr = ImcGen.exprImCode.get(delExpr.expr);
         args.add(expr);
         ImcGen.exprImCode.put(delExpr, new ImcCALL(new Label("del"), args));
@@ -3,9 +3,11 @@
  */
 package compiler.phases.imcgen;
 
+import java.util.*;
 import compiler.data.abstree.*;
 import compiler.data.abstree.attribute.*;
 import compiler.data.imcode.*;
+import compiler.data.layout.*;
 import compiler.phases.*;
 
 /**
@@ -20,6 +22,19 @@ public class ImcGen extends Phase {
 
 	/** Maps expressions to intermediate code. */
 	public static final AbsAttribute<AbsExpr, ImcExpr> exprImCode = new AbsAttribute<AbsExpr, ImcExpr>();
+
+	/**
+	 * Maps labels of conditional and loop statements to their program points
+	 * within a profile (labels copied by later transformations are added too).
+	 */
+	public static final HashMap<Label, String> labelPoints = new HashMap<Label, String>();
+
+	/**
+	 * Maps frames of functions to the factories their expressions have been
+	 * produced by (the key {@code null} stands for expressions outside
+	 * functions). The map is cleared once the chunks have been generated.
+	 */
+	public static final HashMap<Frame, ImcFactory> factories = new HashMap<Frame, ImcFactory>();
 	
 	/**
 	 * Constructs a new phase of intermediate code generation.
@@ -0,0 +1,367 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.imcgen;
+
+import java.util.*;
+import compiler.data.abstree.*;
+import compiler.data.abstree.visitor.*;
+import compiler.data.imcode.*;
+import compiler.data.layout.*;
+import compiler.data.type.*;
+import compiler.phases.chunks.*;
+import compiler.phases.frames.*;
+import compiler.phases.seman.*;
+
+/**
+ * Unrolling and peeling of counted loops.
+ *
+ * A counted loop is a loop of the form
+ * {@code while i < n do ... i = i + c end} (or with {@code <=}) where
+ * {@code i} is an integer variable of the function that is neither pinned to
+ * memory nor assigned anywhere else within the loop, {@code c} is a positive
+ * constant and {@code n} is either a constant or a variable of the function
+ * that is neither pinned to memory nor assigned within the loop. If the loop
+ * is immediately preceded by {@code i = c0}, the initial value is known.
+ *
+ * If both the initial value and the bound are known, the trip count is known:
+ * short loops are unrolled completely, longer loops have the remaining
+ * iterations peeled off so that the unrolled loop needs no remainder loop.
+ * Otherwise the unrolled loop tests whether the last of its iterations is
+ * still to be executed and is followed by a remainder loop; if the initial
+ * value is known, the first iteration is peeled off. Within peeled iterations
+ * the loop variable is replaced by its (known) value.
+ *
+ * If a profile is used, loops that have not been executed are not unrolled,
+ * nor are loops with an unknown trip count that have executed fewer iterations
+ * per entry than the unroll factor on average. If a profile is being
+ * collected, every copy of the body and the exit of an unrolled loop start
+ * with labels of the loop's program points so that the profile does not depend
+ * on unrolling.
+ *
+ * @author sliva
+ */
+public class LoopUnroller extends AbsFullVisitor<Object, Object> {
+
+	/**
+	 * A counted loop.
+	 *
+	 * @author sliva
+	 */
+	private static class CountedLoop {
+
+		/** The step the loop variable is increased by. */
+		long step;
+
+		/** The initial value of the loop variable or {@code null} if unknown. */
+		Long init;
+
+		/** The bound of the loop variable or {@code null} if unknown. */
+		Long bound;
+
+		/** Whether the loop variable is used within the loop apart from the increment. */
+		boolean used;
+
+	}
+
+	/** The unroll factor. */
+	private final int factor;
+
+	/** The usage of variables. */
+	private final VarUsage varUsage;
+
+	/** Whether a profile is being collected. */
+	private final boolean profileGen = compiler.Main.cmdLineArgValue("--profile-gen") != null;
+
+	/** The loop being unrolled. */
+	private AbsWhileStmt whileStmt = null;
+
+	/** Maps counted loops to their descriptions. */
+	private final HashMap<AbsWhileStmt, CountedLoop> loops = new HashMap<AbsWhileStmt, CountedLoop>();
+
+	/** The stack of functions being traversed. */
+	private final Stack<AbsFunDef> funDefs = new Stack<AbsFunDef>();
+
+	/**
+	 * Constructs a new loop unroller.
+	 *
+	 * @param varUsage The usage of variables (already computed).
+	 * @param factor   The unroll factor.
+	 */
+	public LoopUnroller(VarUsage varUsage, int factor) {
+		this.varUsage = varUsage;
+		this.factor = factor;
+	}
+
+	@Override
+	public Object visit(AbsFunDef funDef, Object visArg) {
+		funDefs.push(funDef);
+		super.visit(funDef, visArg);
+		funDefs.pop();
+		return null;
+	}
+
+	@Override
+	public Object visit(AbsStmts stmts, Object visArg) {
+		AbsStmt prevStmt = null;
+		for (AbsStmt stmt : stmts.stmts()) {
+			if (stmt instanceof AbsWhileStmt) {
+				CountedLoop loop = countedLoop((AbsWhileStmt) stmt, prevStmt);
+				if (loop != null)
+					loops.put((AbsWhileStmt) stmt, loop);
+			}
+			prevStmt = stmt;
+		}
+		return super.visit(stmts, visArg);
+	}
+
+	/**
+	 * Recognizes a counted loop.
+	 *
+	 * @return The description of the loop or {@code null} if it is not a counted
+	 *         loop.
+	 */
+	private CountedLoop countedLoop(AbsWhileStmt whileStmt, AbsStmt prevStmt) {
+		if (!(whileStmt.cond instanceof AbsBinExpr))
+			return null;
+		AbsBinExpr cond = (AbsBinExpr) whileStmt.cond;
+		if ((cond.oper != AbsBinExpr.Oper.LTH) && (cond.oper != AbsBinExpr.Oper.LEQ))
+			return null;
+		AbsVarDecl var = localVar(cond.fstExpr);
+		if ((var == null) || !(SemAn.isOfType.get(cond.fstExpr).actualType() instanceof SemIntType))
+			return null;
+		CountedLoop loop = new CountedLoop();
+		AbsVarDecl bound = localVar(cond.sndExpr);
+		loop.bound = intConst(cond.sndExpr);
+		if ((loop.bound == null) && ((bound == null) || (bound == var)))
+			return null;
+
+		// The increment.
+		Vector<AbsStmt> stmts = whileStmt.stmts.stmts();
+		if (stmts.isEmpty() || !(stmts.lastElement() instanceof AbsAssignStmt))
+			return null;
+		AbsAssignStmt incStmt = (AbsAssignStmt) stmts.lastElement();
+		if ((localVar(incStmt.dst) != var) || !(incStmt.src instanceof AbsBinExpr))
+			return null;
+		AbsBinExpr incExpr = (AbsBinExpr) incStmt.src;
+		Long step = intConst(incExpr.sndExpr);
+		if ((incExpr.oper != AbsBinExpr.Oper.ADD) || (localVar(incExpr.fstExpr) != var) || (step == null)
+				|| (step <= 0))
+			return null;
+		loop.step = step;
+
+		// Neither the loop variable nor the bound may change elsewhere within the loop.
+		HashMap<AbsVarDecl, Integer> numAssigns = new HashMap<AbsVarDecl, Integer>();
+		HashMap<AbsVarDecl, Integer> numUses = new HashMap<AbsVarDecl, Integer>();
+		whileStmt.stmts.accept(new AbsFullVisitor<Object, Object>() {
+			@Override
+			public Object visit(AbsAssignStmt assignStmt, Object visArg) {
+				if (assignStmt.dst instanceof AbsVarName) {
+					AbsDecl decl = SemAn.declaredAt.get((AbsVarName) assignStmt.dst);
+					if (decl instanceof AbsVarDecl)
+						numAssigns.put((AbsVarDecl) decl, numAssigns.getOrDefault(decl, 0) + 1);
+				}
+				return super.visit(assignStmt, visArg);
+			}
+
+			@Override
+			public Object visit(AbsVarName varName, Object visArg) {
+				AbsDecl decl = SemAn.declaredAt.get(varName);
+				if (decl instanceof AbsVarDecl)
+					numUses.put((AbsVarDecl) decl, numUses.getOrDefault(decl, 0) + 1);
+				return null;
+			}
+		}, null);
+		if ((numAssigns.getOrDefault(var, 0) != 1) || ((bound != null) && numAssigns.containsKey(bound)))
+			return null;
+		// The increment reads and writes the loop variable.
+		loop.used = numUses.getOrDefault(var, 0) > 2;
+
+		if ((prevStmt instanceof AbsAssignStmt) && (localVar(((AbsAssignStmt) prevStmt).dst) == var))
+			loop.init = intConst(((AbsAssignStmt) prevStmt).src);
+		return loop;
+	}
+
+	/**
+	 * Returns the variable of the current function an expression names if the
+	 * variable is not pinned to memory.
+	 */
+	private AbsVarDecl localVar(AbsExpr expr) {
+		if (!(expr instanceof AbsVarName) || (expr instanceof AbsFunName) || funDefs.isEmpty())
+			return null;
+		AbsDecl decl = SemAn.declaredAt.get((AbsVarName) expr);
+		if (!(decl instanceof AbsVarDecl) || (varUsage.owner((AbsVarDecl) decl) != funDefs.peek()))
+			return null;
+		if (varUsage.usage((AbsVarDecl) decl).pinned())
+			return null;
+		return (AbsVarDecl) decl;
+	}
+
+	/**
+	 * Returns the value of an integer constant.
+	 */
+	private static Long intConst(AbsExpr expr) {
+		if (!(expr instanceof AbsAtomExpr) || (((AbsAtomExpr) expr).type != AbsAtomExpr.Type.INT))
+			return null;
+		try {
+			return (long) Integer.parseInt(((AbsAtomExpr) expr).expr);
+		} catch (NumberFormatException __) {
+			return null;
+		}
+	}
+
+	/**
+	 * Produces the intermediate code of an unrolled counted loop. The
+	 * intermediate code of the condition and of the body must already be
+	 * generated.
+	 *
+	 * @param whileStmt The loop.
+	 * @return The intermediate code or {@code null} if the loop is not unrolled.
+	 */
+	public ImcStmt unroll(AbsWhileStmt whileStmt) {
+		CountedLoop loop = loops.get(whileStmt);
+		if ((loop == null) || (factor < 2))
+			return null;
+		Profile profile = Profile.used();
+		if (profile != null) {
+			long numIters = profile.block(Profile.point(whileStmt, Profile.BODY));
+			long numExits = profile.block(Profile.point(whileStmt, Profile.EXIT));
+			if (numIters == 0)
+				return null;
+			if (((loop.init == null) || (loop.bound == null)) && (numIters < factor * Math.max(numExits, 1)))
+				return null;
+		}
+		this.whileStmt = whileStmt;
+		ImcBINOP cond = (ImcBINOP) ImcGen.exprImCode.get(whileStmt.cond);
+		Vector<ImcStmt> body = new Vector<ImcStmt>();
+		for (AbsStmt stmt : whileStmt.stmts.stmts())
+			body.add(ImcGen.stmtImCode.get(stmt));
+
+		Vector<ImcStmt> stmts = new Vector<ImcStmt>();
+		if ((loop.init != null) && (loop.bound != null)) {
+			long span = loop.bound - loop.init + ((cond.oper == ImcBINOP.Oper.LEQ) ? 1 : 0);
+			long numTrips = (span <= 0) ? 0 : (span + loop.step - 1) / loop.step;
+			if (numTrips == 0)
+				return null;
+			long numPeeled = (numTrips <= factor) ? numTrips : numTrips % factor;
+			for (long trip = 0; trip < numPeeled; trip++)
+				copy(body, cond.fstExpr, loop.init + trip * loop.step, stmts);
+			// The remaining trip count is a multiple of the unroll factor.
+			if (numTrips > factor)
+				loop(cond, body, factor, stmts);
+			point(Profile.EXIT, stmts);
+		} else {
+			Label exitLabel = new Label();
+			if ((loop.init != null) && loop.used) {
+				Label peelLabel = new Label();
+				stmts.add(new ImcCJUMP(new ImcBINOP(cond.oper, new ImcCONST(loop.init), cond.sndExpr), peelLabel,
+						exitLabel));
+				stmts.add(new ImcLABEL(peelLabel));
+				copy(body, cond.fstExpr, loop.init, stmts);
+			}
+			// The last iteration is to be executed if the distance to the bound is
+			// large enough (the distance is computed only if the bound has not been
+			// reached so that it cannot wrap around unless it is too large for a long,
+			// in which case the remainder loop executes all iterations).
+			ImcExpr dist = new ImcBINOP(ImcBINOP.Oper.SUB, cond.sndExpr, cond.fstExpr);
+			ImcExpr last = new ImcBINOP((cond.oper == ImcBINOP.Oper.LEQ) ? ImcBINOP.Oper.GEQ : ImcBINOP.Oper.GTH,
+					dist, new ImcCONST((factor - 1) * loop.step));
+			loop(new ImcBINOP(ImcBINOP.Oper.AND, cond, last), body, factor, stmts);
+			loop(cond, body, 1, stmts);
+			stmts.add(new ImcLABEL(exitLabel));
+			point(Profile.EXIT, stmts);
+		}
+		return new ImcSTMTS(stmts);
+	}
+
+	/**
+	 * Appends a loop executing the body the specified number of times per
+	 * iteration.
+	 */
+	private void loop(ImcExpr cond, Vector<ImcStmt> body, int numCopies, Vector<ImcStmt> stmts) {
+		Label label = new Label();
+		Label posLabel = new Label();
+		Label negLabel = new Label();
+		stmts.add(new ImcLABEL(label));
+		stmts.add(new ImcCJUMP(cond, posLabel, negLabel));
+		stmts.add(new ImcLABEL(posLabel));
+		for (int copy = 0; copy < numCopies; copy++)
+			copy(body, null, 0, stmts);
+		stmts.add(new ImcJUMP(label));
+		stmts.add(new ImcLABEL(negLabel));
+	}
+
+	/**
+	 * Appends a copy of the body with fresh labels.
+	 *
+	 * @param var   The intermediate code reading the loop variable or
+	 *              {@code null} if it is not to be replaced.
+	 * @param value The value the loop variable is replaced by.
+	 */
+	private void copy(Vector<ImcStmt> body, ImcExpr var, long value, Vector<ImcStmt> stmts) {
+		point(Profile.BODY, stmts);
+		Copier copier = new Copier(var, value);
+		for (ImcStmt stmt : body)
+			stmts.add((ImcStmt) stmt.accept(copier, null));
+	}
+
+	/**
+	 * Appends a label of a program point of the loop being unrolled if a profile
+	 * is being collected.
+	 */
+	private void point(String role, Vector<ImcStmt> stmts) {
+		if (!profileGen)
+			return;
+		Label label = new Label();
+		ImcGen.labelPoints.put(label, Profile.point(whileStmt, role));
+		stmts.add(new ImcLABEL(label));
+	}
+
+	/**
+	 * Returns whether two expressions are structurally equal.
+	 */
+	private static boolean same(ImcExpr fst, ImcExpr snd) {
+		if ((fst instanceof ImcCONST) && (snd instanceof ImcCONST))
+			return ((ImcCONST) fst).value == ((ImcCONST) snd).value;
+		if ((fst instanceof ImcTEMP) && (snd instanceof ImcTEMP))
+			return ((ImcTEMP) fst).temp == ((ImcTEMP) snd).temp;
+		if ((fst instanceof ImcNAME) && (snd instanceof ImcNAME))
+			return ((ImcNAME) fst).label == ((ImcNAME) snd).label;
+		if ((fst instanceof ImcMEM) && (snd instanceof ImcMEM))
+			return same(((ImcMEM) fst).addr, ((ImcMEM) snd).addr);
+		if ((fst instanceof ImcBINOP) && (snd instanceof ImcBINOP))
+			return (((ImcBINOP) fst).oper == ((ImcBINOP) snd).oper)
+					&& same(((ImcBINOP) fst).fstExpr, ((ImcBINOP) snd).fstExpr)
+					&& same(((ImcBINOP) fst).sndExpr, ((ImcBINOP) snd).sndExpr);
+		return false;
+	}
+
+	/**
+	 * Copies intermediate code, renaming labels and optionally replacing reads of
+	 * the loop variable by a constant.
+	 *
+	 * @author sliva
+	 */
+	private static class Copier extends ImcCopier {
+
+		/** The intermediate code reading the loop variable or {@code null}. */
+		private final ImcExpr var;
+
+		/** The value of the loop variable. */
+		private final long value;
+
+		Copier(ImcExpr var, long value) {
+			this.var = var;
+			this.value = value;
+		}
+
+		@Override
+		protected ImcExpr expr(ImcExpr expr) {
+			if ((var != null) && same(expr, var))
+				return new ImcCONST(value);
+			return super.expr(expr);
+		}
+
+	}
+
+}
@@ -6,6 +6,7 @@ import compiler.data.abstree.visitor.AbsVisitor;
 import compiler.data.imcode.*;
 import compiler.data.layout.Frame;
 import compiler.data.layout.Label;
+import compiler.phases.chunks.Profile;
 import compiler.phases.seman.SemAn;
 
 import java.util.Stack;
@@ -17,6 +18,17 @@ import java.util.Vector;
  */
 public class StmtGenerator implements AbsVisitor<ImcStmt, Stack<Frame>> {
 
+    /** The unroller of counted loops or {@code null} if loops are not unrolled. */
+    private final LoopUnroller loopUnroller;
+
+    public StmtGenerator() {
+        this(null);
+    }
+
+    public StmtGenerator(LoopUnroller loopUnroller) {
+        this.loopUnroller = loopUnroller;
+    }
+
     @Override
     public ImcStmt visit(AbsExprStmt exprStmt, Stack<Frame> visArg) {
         ImcGen.stmtImCode.put(exprStmt, new ImcESTMT(ImcGen.exprImCode.get(exprStmt.expr)));
@@ -39,6 +51,8 @@ public class StmtGenerator implements AbsVisitor<ImcStmt, Stack<Frame>> {
         ImcExpr exprCond = ImcGen.exprImCode.get(ifStmt.cond);
         Label posLabel = new Label();
         Label negLabel = new Label();
+        ImcGen.labelPoints.put(posLabel, Profile.point(ifStmt, Profile.THEN));
+        ImcGen.labelPoints.put(negLabel, Profile.point(ifStmt, ifStmt.elseStmts.numStmts() != 0 ? Profile.ELSE : Profile.END));
         Vector<ImcStmt> stmts = new Vector<>(ifStmt.elseStmts.numStmts() + ifStmt.thenStmts.numStmts());
 
         stmts.add(new ImcCJUMP(exprCond, posLabel, negLabel));
@@ -51,6 +65,7 @@ public class StmtGenerator implements AbsVisitor<ImcStmt, Stack<Frame>> {
 
         if (ifStmt.elseStmts.numStmts() != 0) {
             Label label = new Label();
+            ImcGen.labelPoints.put(label, Profile.point(ifStmt, Profile.END));
             stmts.add(new ImcJUMP(label));
             stmts.add(new ImcLABEL(negLabel));
 
@@ -73,12 +88,20 @@ public class StmtGenerator implements AbsVisitor<ImcStmt, Stack<Frame>> {
 
     @Override
     public ImcStmt visit(AbsWhileStmt whileStmt, Stack<Frame> visArg) {
+        ImcStmt unrolled = loopUnroller == null ? null : loopUnroller.unroll(whileStmt);
+        if (unrolled != null) {
+            ImcGen.stmtImCode.put(whileStmt, unrolled);
+            return null;
+        }
+
         Vector<ImcStmt> stmts = new Vector<>(whileStmt.stmts.numStmts());
         Label label = new Label();
         stmts.add(new ImcLABEL(label));
 
         Label posLabel = new Label();
         Label negLabel = new Label();
+        ImcGen.labelPoints.put(posLabel, Profile.point(whileStmt, Profile.BODY));
+        ImcGen.labelPoints.put(negLabel, Profile.point(whileStmt, Profile.EXIT));
 
         ImcExpr cond = ImcGen.exprImCode.get(whileStmt.cond);
         stmts.add(new ImcCJUMP(cond, posLabel, negLabel));
@@ -4,6 +4,10 @@
 package compiler.phases.lexan;
 
 import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
 
 import compiler.common.report.*;
 import compiler.data.symbol.*;
@@ -11,6 +15,14 @@ import compiler.phases.*;
 
 /**
  * Lexical analysis.
+ * <p>
+ * The entire source file is memory-mapped, decoded at once and scanned by
+ * index. Lexemes of identifiers and constants are interned as slices of the
+ * source buffer in a {@link LexemeTable} (so that a lexeme occurring many times
+ * is represented by a single string), and keywords are recognized by the same
+ * lookup as they are interned in advance. Tokens are returned either as
+ * symbols ({@link #lexer()}) or appended to a packed token stream
+ * ({@link #scan()}).
  *
  * @author sliva
  */
@@ -22,9 +34,14 @@ public class LexAn extends Phase {
     private final String srcFileName;
 
     /**
-     * The source file reader.
+     * The contents of the source file.
      */
-    private final BufferedReader srcFile;
+    private final char[] src;
+
+    /**
+     * The index of the current character within the source file.
+     */
+    private int pos;
 
     /**
      * Trenutna vrstica
@@ -32,15 +49,44 @@ public class LexAn extends Phase {
     private int currLine;
 
     /**
-     * Trenutni stolpec
+     * The index of the character the column numbers are counted from.
+     */
+    private int lineStart;
+
+    /**
+     * Interned lexemes.
+     */
+    private final LexemeTable lexemes = new LexemeTable();
+
+    /**
+     * The packed token stream (if requested).
+     */
+    private TokenStream tokens = null;
+
+    /**
+     * The index of the first character of the last token recognized.
+     */
+    private int tokBeg;
+
+    /**
+     * The lexeme of the last token recognized.
      */
-    private int currCol;
+    private String tokLexeme;
 
     /**
-     * Trenutni znak
+     * The first column of the last token recognized.
      */
-    private int currChar;
+    private int tokBegColumn;
 
+    /**
+     * The last column of the last token recognized.
+     */
+    private int tokEndColumn;
+
+    /**
+     * Whether lexical errors are deferred (see {@link #deferErrors()}).
+     */
+    private boolean deferErrors = false;
 
     /**
      * Constructs a new phase of lexical analysis.
@@ -48,24 +94,76 @@ public class LexAn extends Phase {
     public LexAn() {
         super("lexan");
         srcFileName = compiler.Main.cmdLineArgValue("--src-file-name");
-        try {
-            srcFile = new BufferedReader(new FileReader(srcFileName));
-            currLine = 1;
-            currCol = -1;
-            nextChar();
-        } catch (IOException ___) {
+        try (FileChannel channel = FileChannel.open(Paths.get(srcFileName), StandardOpenOption.READ)) {
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            CharBuffer chars = Charset.defaultCharset().decode(bytes);
+            src = new char[chars.remaining()];
+            chars.get(src);
+        } catch (IOException | InvalidPathException ___) {
             throw new Report.Error("Cannot open source file '" + srcFileName + "'.");
         }
+        pos = 0;
+        currLine = 1;
+        lineStart = 0;
     }
 
-    @Override
-    public void close() {
-        try {
-            srcFile.close();
-        } catch (IOException ___) {
-            Report.warning("Cannot close source file '" + this.srcFileName + "'.");
-        }
-        super.close();
+    /**
+     * Constructs a new phase of lexical analysis of a source text that is not
+     * read from a file (e.g., a source file being edited).
+     *
+     * @param src The source text.
+     */
+    public LexAn(char[] src) {
+        super("lexan");
+        this.srcFileName = null;
+        this.src = src;
+        pos = 0;
+        currLine = 1;
+        lineStart = 0;
+    }
+
+    /**
+     * Restarts the lexical analysis at the specified position, i.e., in the state
+     * the lexer was in when it recognized a token starting there (see
+     * {@link #tokenStart()}, {@link #line()} and {@link #lineStart()}).
+     *
+     * @param pos       The index of the character to restart at.
+     * @param line      The line of the character.
+     * @param lineStart The index of the character the columns of the line are
+     *                  counted from.
+     */
+    public void restart(int pos, int line, int lineStart) {
+        this.pos = pos;
+        this.currLine = line;
+        this.lineStart = lineStart;
+    }
+
+    /**
+     * Returns the index of the first character of the last token recognized.
+     *
+     * @return The index of the first character of the last token recognized.
+     */
+    public int tokenStart() {
+        return tokBeg;
+    }
+
+    /**
+     * Returns the current line (the line of the last token recognized).
+     *
+     * @return The current line.
+     */
+    public int line() {
+        return currLine;
+    }
+
+    /**
+     * Returns the index of the character the columns of the current line are
+     * counted from.
+     *
+     * @return The index of the character the columns are counted from.
+     */
+    public int lineStart() {
+        return lineStart;
     }
 
     /**
@@ -80,306 +178,301 @@ public class LexAn extends Phase {
      * any more.
      */
     public Symbol lexer() {
-        Symbol symb = lexify();
+        Symbol.Term token = lexify();
+        Symbol symb = new Symbol(token, tokLexeme, new Location(currLine, tokBegColumn, currLine, tokEndColumn));
         if (symb.token != Symbol.Term.EOF)
-            //System.out.println(symb.location() + " " + symb.token);
             symb.log(logger);
         return symb;
     }
 
     /**
-     * Performs the lexical analysis of the source file.
-     * <p>
-     * This method returns the next symbol from the source file. To perform the
-     * lexical analysis of the entire source file, this method must be called until
-     * it returns EOF.
-     *
-     * @return The next symbol from the source file or EOF if no symbol is available
-     * any more.
+     * Defers lexical errors: instead of reporting a lexical error at once, the
+     * lexer throws {@link DeferredError} that is to be reported later, i.e., when
+     * the parser actually reaches the erroneous part of the source file. Used if
+     * the lexer runs ahead of the parser in a separate thread.
      */
-    private Symbol lexify() {
-
-        StringBuilder besedilo = new StringBuilder();
-
-        while (true) {
-            if (this.currChar >= 128) {
-                throw new Report.Error(new Location(currLine, currCol + 1, currLine, currCol + 1), "Invalid character.");
-            }
-            // Konec datoteke
-            if (this.currChar == -1) {
-                return new Symbol(Symbol.Term.EOF, "EOF", new Location(currLine, currCol, currLine, currCol));
-            }
-
-            // Pregled simbolovy
-            if (this.currChar == (int) '+') {
-                nextChar();
-                return new Symbol(Symbol.Term.ADD, "+", new Location(currLine, currCol - 1, currLine, currCol));
-            }
-
-            if (this.currChar == (int) '=') {
-                nextChar();
-                if (this.currChar == '=') {
-                    nextChar();
-                    return new Symbol(Symbol.Term.EQU, "==", new Location(currLine, currCol - 2, currLine, currCol));
-                }
-                return new Symbol(Symbol.Term.ASSIGN, "=", new Location(currLine, currCol - 1, currLine, currCol));
-            }
-
-            if (this.currChar == (int) '!') {
-                nextChar();
-                if (this.currChar == (int) '=') {
-                    nextChar();
-                    return new Symbol(Symbol.Term.NEQ, "!=", new Location(currLine, currCol - 2, currLine, currCol));
-                }
-            }
-
-            if (this.currChar == (int) '<') {
-                nextChar();
-                if (this.currChar == (int) '=') {
-                    nextChar();
-                    return new Symbol(Symbol.Term.LEQ, "<=", new Location(currLine, currCol - 2, currLine, currCol));
-                }
-                return new Symbol(Symbol.Term.LTH, "<", new Location(currLine, currCol - 1, currLine, currCol));
-            }
-
-            if (this.currChar == (int) '>') {
-                nextChar();
-                if (this.currChar == (int) '=') {
-                    nextChar();
-                    return new Symbol(Symbol.Term.GEQ, ">=", new Location(currLine, currCol - 2, currLine, currCol));
-                }
-                return new Symbol(Symbol.Term.GTH, ">", new Location(currLine, currCol - 1, currLine, currCol));
-            }
-
-            if (this.currChar == (int) '-') {
-                nextChar();
-                return new Symbol(Symbol.Term.SUB, "-", new Location(currLine, currCol - 1, currLine, currCol));
-            }
-
-            if (this.currChar == (int) '*') {
-                nextChar();
-                return new Symbol(Symbol.Term.MUL, "*", new Location(currLine, currCol - 1, currLine, currCol));
-            }
-
-            if (this.currChar == (int) '/') {
-                nextChar();
-                return new Symbol(Symbol.Term.DIV, "/", new Location(currLine, currCol - 1, currLine, currCol));
-            }
-
-            if (this.currChar == (int) '%') {
-                nextChar();
-                return new Symbol(Symbol.Term.MOD, "%", new Location(currLine, currCol - 1, currLine, currCol));
-            }
-
-            if (this.currChar == (int) '$') {
-                nextChar();
-                return new Symbol(Symbol.Term.ADDR, "$", new Location(currLine, currCol - 1, currLine, currCol));
-            }
-
-            if (this.currChar == (int) '@') {
-                nextChar();
-                return new Symbol(Symbol.Term.DATA, "@", new Location(currLine, currCol - 1, currLine, currCol));
-            }
-
-            if (this.currChar == (int) ',') {
-                nextChar();
-                return new Symbol(Symbol.Term.COMMA, ",", new Location(currLine, currCol - 1, currLine, currCol));
-            }
-
-            if (this.currChar == (int) ':') {
-                nextChar();
-                return new Symbol(Symbol.Term.COLON, ":", new Location(currLine, currCol - 1, currLine, currCol));
-            }
-
-            if (this.currChar == (int) ';') {
-                nextChar();
-                return new Symbol(Symbol.Term.SEMIC, ";", new Location(currLine, currCol - 1, currLine, currCol));
-            }
-
-            if (this.currChar == (int) '[') {
-                nextChar();
-                return new Symbol(Symbol.Term.LBRACKET, "[", new Location(currLine, currCol - 1, currLine, currCol));
-            }
-
-            if (this.currChar == (int) ']') {
-                nextChar();
-                return new Symbol(Symbol.Term.RBRACKET, "]", new Location(currLine, currCol - 1, currLine, currCol));
-            }
-
-            if (this.currChar == (int) '(') {
-                nextChar();
-                return new Symbol(Symbol.Term.LPARENTHESIS, "(", new Location(currLine, currCol - 1, currLine, currCol));
-            }
+    public void deferErrors() {
+        deferErrors = true;
+    }
 
-            if (this.currChar == (int) ')') {
-                nextChar();
-                return new Symbol(Symbol.Term.RPARENTHESIS, ")", new Location(currLine, currCol - 1, currLine, currCol));
-            }
+    /**
+     * A lexical error that has not been reported yet.
+     */
+    @SuppressWarnings("serial")
+    public static class DeferredError extends java.lang.Error {
+
+        /**
+         * The location of the error.
+         */
+        private final Location location;
+
+        /**
+         * The error message.
+         */
+        private final String message;
+
+        private DeferredError(Location location, String message) {
+            super(null, null, false, false);
+            this.location = location;
+            this.message = message;
+        }
 
-            if (this.currChar == (int) '{') {
-                nextChar();
-                return new Symbol(Symbol.Term.LBRACE, "{", new Location(currLine, currCol - 1, currLine, currCol));
-            }
+        /**
+         * Reports the error.
+         *
+         * @return The error reported.
+         */
+        public Report.Error report() {
+            return new Report.Error(location, message);
+        }
 
-            if (this.currChar == (int) '}') {
-                nextChar();
-                return new Symbol(Symbol.Term.RBRACE, "}", new Location(currLine, currCol - 1, currLine, currCol));
-            }
+    }
 
-            // Belo besedilo
-            // Presledek ali tab
-            if (this.currChar == 32 || this.currChar == 9) {
-                nextChar();
-                continue;
-            }
+    /**
+     * Returns the packed token stream the tokens recognized by {@link #scan()}
+     * are appended to.
+     *
+     * @return The packed token stream.
+     */
+    public TokenStream tokens() {
+        if (tokens == null)
+            tokens = new TokenStream(src, lexemes);
+        return tokens;
+    }
 
-            // Nova vrstica \n
-            if (this.currChar == 10) {
-                nextChar();
-                this.currLine++;
-                this.currCol = 0;
-                continue;
-            }
+    /**
+     * The lexer producing a packed token stream.
+     * <p>
+     * This method appends the next token from the source file to the packed token
+     * stream (see {@link #tokens()}) without creating any objects for it, except
+     * for the symbol that is logged if requested.
+     *
+     * @return The index of the token within the packed token stream.
+     */
+    public int scan() {
+        Symbol.Term token = lexify();
+        int index = tokens().add(token, tokBeg, pos - tokBeg, currLine, lineStart);
+        if ((token != Symbol.Term.EOF) && (logger != null))
+            tokens.symbol(index).log(logger);
+        return index;
+    }
 
-            // Konec vrstice \r
-            if (this.currChar == 13) {
-                nextChar();
-                // Konec vrstice \r\n
-                if (this.currChar == 10) {
-                    this.currLine++;
-                    nextChar();
-                }
+    /**
+     * Performs the lexical analysis of the source file.
+     * <p>
+     * This method recognizes the next token from the source file, records its
+     * lexeme and location, and returns it. To perform the lexical analysis of the
+     * entire source file, this method must be called until it returns EOF.
+     * <p>
+     * Columns are counted exactly as by the original character-by-character
+     * scanner: the column of a single-character operator is the column of the
+     * character before it, keywords of five letters start a column later than
+     * other words, and so on.
+     *
+     * @return The next token from the source file or EOF if no token is available
+     * any more.
+     */
+    private Symbol.Term lexify() {
+        final char[] src = this.src;
+        final int len = src.length;
 
-                this.currCol = 0;
-                continue;
+        while (true) {
+            if (pos >= len) {
+                tokBeg = pos;
+                return token(Symbol.Term.EOF, "EOF", 0, 0);
             }
 
-            // Komentar
-            if (this.currChar == (int) '#') {
-                while (true) {
-                    if (this.currChar == 10 || this.currChar == 13) {
-                        nextChar();
-                        this.currLine++;
-                        this.currCol = 0;
-                        break;
-                    } else if (this.currChar == -1) {
-                        break;
+            char c = src[pos];
+            switch (c) {
+                case '+':
+                    return operator(Symbol.Term.ADD, "+");
+                case '-':
+                    return operator(Symbol.Term.SUB, "-");
+                case '*':
+                    return operator(Symbol.Term.MUL, "*");
+                case '/':
+                    return operator(Symbol.Term.DIV, "/");
+                case '%':
+                    return operator(Symbol.Term.MOD, "%");
+                case '$':
+                    return operator(Symbol.Term.ADDR, "$");
+                case '@':
+                    return operator(Symbol.Term.DATA, "@");
+                case ',':
+                    return operator(Symbol.Term.COMMA, ",");
+                case ':':
+                    return operator(Symbol.Term.COLON, ":");
+                case ';':
+                    return operator(Symbol.Term.SEMIC, ";");
+                case '[':
+                    return operator(Symbol.Term.LBRACKET, "[");
+                case ']':
+                    return operator(Symbol.Term.RBRACKET, "]");
+                case '(':
+                    return operator(Symbol.Term.LPARENTHESIS, "(");
+                case ')':
+                    return operator(Symbol.Term.RPARENTHESIS, ")");
+                case '{':
+                    return operator(Symbol.Term.LBRACE, "{");
+                case '}':
+                    return operator(Symbol.Term.RBRACE, "}");
+                case '=':
+                    if (peek() == '=')
+                        return operator(Symbol.Term.EQU, "==");
+                    return operator(Symbol.Term.ASSIGN, "=");
+                case '<':
+                    if (peek() == '=')
+                        return operator(Symbol.Term.LEQ, "<=");
+                    return operator(Symbol.Term.LTH, "<");
+                case '>':
+                    if (peek() == '=')
+                        return operator(Symbol.Term.GEQ, ">=");
+                    return operator(Symbol.Term.GTH, ">");
+                case '!':
+                    if (peek() == '=')
+                        return operator(Symbol.Term.NEQ, "!=");
+                    // A lone '!' is skipped.
+                    pos++;
+                    continue;
+
+                // Belo besedilo
+                case ' ':
+                case '\t':
+                    pos++;
+                    continue;
+                case '\n':
+                    pos++;
+                    currLine++;
+                    lineStart = pos;
+                    continue;
+                case '\r':
+                    pos++;
+                    if (pos < len && src[pos] == '\n') {
+                        pos++;
+                        currLine++;
                     }
-                    nextChar();
-                }
-                continue;
-            }
-
-            // Kljucne besede
-            if ((this.currChar >= (int) 'a' && this.currChar <= (int) 'z') ||
-                    (this.currChar >= (int) 'A' && this.currChar <= (int) 'Z')) {
-
-                while (true) {
-                    if ((this.currChar >= (int) 'a' && this.currChar <= (int) 'z') ||
-                            (this.currChar >= (int) 'A' && this.currChar <= (int) 'Z') ||
-                            this.currChar == (int) '_' ||
-                            (this.currChar >= (int) '0' && this.currChar <= (int) '9')) {
-                        besedilo.append((char) this.currChar);
-                        nextChar();
-                    } else if (this.currChar >= 128) {
-                        throw new Report.Error(new Location(currLine, currCol - 1, currLine, currCol - 1), "Invalid character.");
-                    } else {
-                        if (besedilo.toString().equals("del")) {
-                            return new Symbol(Symbol.Term.DEL, besedilo.toString(), new Location(currLine, currCol - 2, currLine, currCol));
-                        } else if (besedilo.toString().equals("arr")) {
-                            return new Symbol(Symbol.Term.ARR, besedilo.toString(), new Location(currLine, currCol - 2, currLine, currCol));
-                        } else if (besedilo.toString().equals("bool")) {
-                            return new Symbol(Symbol.Term.BOOL, besedilo.toString(), new Location(currLine, currCol - 3, currLine, currCol));
-                        } else if (besedilo.toString().equals("char")) {
-                            return new Symbol(Symbol.Term.CHAR, besedilo.toString(), new Location(currLine, currCol - 3, currLine, currCol));
-                        } else if (besedilo.toString().equals("do")) {
-                            return new Symbol(Symbol.Term.DO, besedilo.toString(), new Location(currLine, currCol - 1, currLine, currCol));
-                        } else if (besedilo.toString().equals("else")) {
-                            return new Symbol(Symbol.Term.ELSE, besedilo.toString(), new Location(currLine, currCol - 3, currLine, currCol));
-                        } else if (besedilo.toString().equals("end")) {
-                            return new Symbol(Symbol.Term.END, besedilo.toString(), new Location(currLine, currCol - 2, currLine, currCol));
-                        } else if (besedilo.toString().equals("fun")) {
-                            return new Symbol(Symbol.Term.FUN, besedilo.toString(), new Location(currLine, currCol - 2, currLine, currCol));
-                        } else if (besedilo.toString().equals("if")) {
-                            return new Symbol(Symbol.Term.IF, besedilo.toString(), new Location(currLine, currCol - 1, currLine, currCol));
-                        } else if (besedilo.toString().equals("int")) {
-                            return new Symbol(Symbol.Term.INT, besedilo.toString(), new Location(currLine, currCol - 2, currLine, currCol));
-                        } else if (besedilo.toString().equals("new")) {
-                            return new Symbol(Symbol.Term.NEW, besedilo.toString(), new Location(currLine, currCol - 2, currLine, currCol));
-                        } else if (besedilo.toString().equals("ptr")) {
-                            return new Symbol(Symbol.Term.PTR, besedilo.toString(), new Location(currLine, currCol - 2, currLine, currCol));
-                        } else if (besedilo.toString().equals("then")) {
-                            return new Symbol(Symbol.Term.THEN, besedilo.toString(), new Location(currLine, currCol - 3, currLine, currCol));
-                        } else if (besedilo.toString().equals("typ")) {
-                            return new Symbol(Symbol.Term.TYP, besedilo.toString(), new Location(currLine, currCol - 2, currLine, currCol));
-                        } else if (besedilo.toString().equals("var")) {
-                            return new Symbol(Symbol.Term.VAR, besedilo.toString(), new Location(currLine, currCol - 2, currLine, currCol));
-                        } else if (besedilo.toString().equals("void")) {
-                            return new Symbol(Symbol.Term.VOID, besedilo.toString(), new Location(currLine, currCol - 3, currLine, currCol));
-                        } else if (besedilo.toString().equals("where")) {
-                            return new Symbol(Symbol.Term.WHERE, besedilo.toString(), new Location(currLine, currCol - 3, currLine, currCol));
-                        } else if (besedilo.toString().equals("while")) {
-                            return new Symbol(Symbol.Term.WHILE, besedilo.toString(), new Location(currLine, currCol - 3, currLine, currCol));
-                        } else if (besedilo.toString().equals("none")) {
-                            return new Symbol(Symbol.Term.VOIDCONST, besedilo.toString(), new Location(currLine, currCol - 3, currLine, currCol));
-                        } else if (besedilo.toString().equals("true")) {
-                            return new Symbol(Symbol.Term.BOOLCONST, besedilo.toString(), new Location(currLine, currCol - 3, currLine, currCol));
-                        } else if (besedilo.toString().equals("false")) {
-                            return new Symbol(Symbol.Term.BOOLCONST, besedilo.toString(), new Location(currLine, currCol - 3, currLine, currCol));
-                        } else if (besedilo.toString().equals("null")) {
-                            return new Symbol(Symbol.Term.PTRCONST, besedilo.toString(), new Location(currLine, currCol - 3, currLine, currCol));
-                        } else {
-                            return new Symbol(Symbol.Term.IDENTIFIER, besedilo.toString(), new Location(currLine, currCol - besedilo.length() + 1, currLine, currCol));
+                    lineStart = pos;
+                    continue;
+
+                // Komentar
+                case '#':
+                    while (pos < len && src[pos] != '\n' && src[pos] != '\r')
+                        pos++;
+                    if (pos < len) {
+                        pos++;
+                        currLine++;
+                        lineStart = pos;
+                    }
+                    continue;
+
+                // Char konstante
+                case '\'':
+                    if (pos + 1 < len && isPrintable(src[pos + 1])) {
+                        int beg = pos;
+                        pos += 2;
+                        if (pos < len && src[pos] == '\'') {
+                            pos++;
+                            tokBeg = beg;
+                            return token(Symbol.Term.CHARCONST, lexemes.lexeme(lexemes.slot(src, beg, 3)), -1, -1);
                         }
-
+                        if (pos < len && isPrintable(src[pos]))
+                            throw error(location(-1, -1), "Char to long.");
+                        throw error(location(-1, -1), "Char not closed.");
                     }
-                }
+                    // A quote not followed by a printable character is skipped.
+                    pos++;
+                    continue;
+
+                default:
+                    break;
             }
-            // Char konstante
-            if (this.currChar == (int) '\'') {
-                nextChar();
-                if (this.currChar >= 32 && this.currChar <= 126) {
-                    besedilo.append((char) this.currChar);
-                    nextChar();
-                    if (this.currChar == (int) '\'') {
-                        nextChar();
-                        return new Symbol(Symbol.Term.CHARCONST, '\'' + besedilo.toString() + '\'', new Location(currLine, currCol - 1, currLine, currCol - 1));
-                    } else if (this.currChar >= 32 && this.currChar <= 126) {
-                        throw new Report.Error(new Location(currLine, currCol - 1, currLine, currCol - 1), "Char to long.");
-                    } else {
-                        throw new Report.Error(new Location(currLine, currCol - 1, currLine, currCol - 1), "Char not closed.");
-                    }
+
+            // Kljucne besede in imena
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+                int beg = pos;
+                while (++pos < len) {
+                    c = src[pos];
+                    if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_')
+                        continue;
+                    if (c >= 128)
+                        throw error(location(-1, -1), "Invalid character.");
+                    break;
                 }
+                int length = pos - beg;
+                int slot = lexemes.slot(src, beg, length);
+                Symbol.Term token = lexemes.token(slot);
+                // Keywords of five letters start a column later (as they always did).
+                int begOffset = (length == 5 && token != Symbol.Term.IDENTIFIER) ? -length + 2 : -length + 1;
+                tokBeg = beg;
+                return token(token, lexemes.lexeme(slot), begOffset, 0);
             }
 
             // Int konstante
-            if (this.currChar >= (int) '0' && this.currChar <= (int) '9') {
-                besedilo.append((char) this.currChar);
-                nextChar();
-                while (true) {
-                    if (this.currChar >= (int) '0' && this.currChar <= (int) '9') {
-                        besedilo.append((char) this.currChar);
-                        nextChar();
-                    } else {
-                        return new Symbol(Symbol.Term.INTCONST, besedilo.toString(), new Location(currLine, currCol - besedilo.length() + 1, currLine, currCol));
-                    }
-                }
+            if (c >= '0' && c <= '9') {
+                int beg = pos;
+                while (++pos < len && src[pos] >= '0' && src[pos] <= '9')
+                    ;
+                int length = pos - beg;
+                tokBeg = beg;
+                return token(Symbol.Term.INTCONST, lexemes.lexeme(lexemes.slot(src, beg, length)), -length + 1, 0);
             }
 
+            throw error(location(1, 1), "Invalid character.");
         }
+    }
 
+    /**
+     * Returns the character following the current one (or 0 at the end of the
+     * source file).
+     */
+    private char peek() {
+        return pos + 1 < src.length ? src[pos + 1] : 0;
     }
 
     /**
-     * Preberi naslednji znak
+     * Recognizes an operator starting at the current character and advances past
+     * it.
      */
-    private void nextChar() {
-        try {
-            this.currChar = this.srcFile.read();
-            this.currCol++;
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    private Symbol.Term operator(Symbol.Term token, String lexeme) {
+        tokBeg = pos;
+        pos += lexeme.length();
+        return token(token, lexeme, -lexeme.length(), 0);
+    }
+
+    /**
+     * Records the lexeme and the location of the token just recognized, where the
+     * first and the last column are given relative to the column of the current
+     * character.
+     */
+    private Symbol.Term token(Symbol.Term token, String lexeme, int begOffset, int endOffset) {
+        int column = pos - lineStart;
+        tokLexeme = lexeme;
+        tokBegColumn = column + begOffset;
+        tokEndColumn = column + endOffset;
+        return token;
+    }
+
+    /**
+     * Returns the location within the current line, where the beginning and the
+     * end are given relative to the column of the current character.
+     */
+    private Location location(int begOffset, int endOffset) {
+        int column = pos - lineStart;
+        return new Location(currLine, column + begOffset, currLine, column + endOffset);
+    }
+
+    /**
+     * Returns the lexical error to be thrown (reported at once unless lexical
+     * errors are deferred).
+     */
+    private java.lang.Error error(Location location, String message) {
+        if (deferErrors)
+            return new DeferredError(location, message);
+        return new Report.Error(location, message);
+    }
+
+    private static boolean isPrintable(char c) {
+        return c >= 32 && c <= 126;
     }
 
 }
@@ -0,0 +1,197 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.lexan;
+
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+import compiler.data.symbol.*;
+
+/**
+ * A lexer running ahead of the parser in a separate thread.
+ * <p>
+ * The lexer thread appends symbols to a bounded ring buffer from which the
+ * parser takes them one by one, in the same order as it would get them from
+ * {@link LexAn#lexer()}. The buffer has a single producer and a single
+ * consumer, so it needs no locks: each side publishes its position with an
+ * ordered write and reads the position of the other side only when the buffer
+ * appears full or empty. Symbols are logged by the lexer thread. Lexical errors
+ * are deferred and reported only once the parser reaches the erroneous symbol.
+ *
+ * @author sliva
+ */
+public class SymbolPipe implements AutoCloseable {
+
+    /**
+     * The lexical analyzer run by the lexer thread.
+     */
+    private final LexAn lexAn;
+
+    /**
+     * The ring buffer.
+     */
+    private final Symbol[] symbs;
+
+    /**
+     * The number of symbols appended to the buffer (written by the lexer thread).
+     */
+    private final AtomicLong numPut = new AtomicLong(0);
+
+    /**
+     * The number of symbols taken from the buffer (written by the parser).
+     */
+    private final AtomicLong numTaken = new AtomicLong(0);
+
+    /**
+     * The last value of {@link #numTaken} seen by the lexer thread.
+     */
+    private long knownTaken = 0;
+
+    /**
+     * The last value of {@link #numPut} seen by the parser.
+     */
+    private long knownPut = 0;
+
+    /**
+     * The EOF symbol once taken by the parser (and returned ever after).
+     */
+    private Symbol eof = null;
+
+    /**
+     * The error that stopped the lexer thread (or {@code null}).
+     */
+    private volatile Throwable failure = null;
+
+    /**
+     * Whether the parser no longer needs any symbols.
+     */
+    private volatile boolean closed = false;
+
+    /**
+     * The lexer thread.
+     */
+    private final Thread thread;
+
+    /**
+     * Starts a new lexer thread.
+     *
+     * @param lexAn    The lexical analyzer (no longer to be used by the caller).
+     * @param capacity The capacity of the ring buffer (a power of two).
+     */
+    public SymbolPipe(LexAn lexAn, int capacity) {
+        if (Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException();
+        this.lexAn = lexAn;
+        this.symbs = new Symbol[capacity];
+        lexAn.deferErrors();
+        thread = new Thread(this::produce, "lexan");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * The body of the lexer thread.
+     */
+    private void produce() {
+        try {
+            while (true) {
+                Symbol symb = lexAn.lexer();
+                if (!put(symb) || (symb.token == Symbol.Term.EOF))
+                    return;
+            }
+        } catch (Throwable failure) {
+            this.failure = failure;
+        }
+    }
+
+    /**
+     * Appends a symbol to the buffer, waiting while the buffer is full.
+     *
+     * @return {@code false} if the parser no longer needs any symbols.
+     */
+    private boolean put(Symbol symb) {
+        long put = numPut.get();
+        for (int idle = 0; put - knownTaken == symbs.length; idle++) {
+            knownTaken = numTaken.get();
+            if (put - knownTaken < symbs.length)
+                break;
+            if (closed)
+                return false;
+            idle(idle);
+        }
+        symbs[(int) put & (symbs.length - 1)] = symb;
+        numPut.lazySet(put + 1);
+        return !closed;
+    }
+
+    /**
+     * Takes the next symbol from the buffer, waiting while the buffer is empty.
+     * If the lexer thread has stopped because of an error, the error is reported
+     * once all symbols preceding it have been taken.
+     *
+     * @return The next symbol.
+     */
+    public Symbol take() {
+        if (eof != null)
+            return eof;
+        long taken = numTaken.get();
+        for (int idle = 0; taken == knownPut; idle++) {
+            knownPut = numPut.get();
+            if (taken < knownPut)
+                break;
+            Throwable failure = this.failure;
+            if (failure != null) {
+                knownPut = numPut.get();
+                if (taken < knownPut)
+                    break;
+                if (failure instanceof LexAn.DeferredError)
+                    throw ((LexAn.DeferredError) failure).report();
+                if (failure instanceof RuntimeException)
+                    throw (RuntimeException) failure;
+                throw (java.lang.Error) failure;
+            }
+            idle(idle);
+        }
+        int slot = (int) taken & (symbs.length - 1);
+        Symbol symb = symbs[slot];
+        symbs[slot] = null;
+        numTaken.lazySet(taken + 1);
+        if (symb.token == Symbol.Term.EOF)
+            eof = symb;
+        return symb;
+    }
+
+    /**
+     * Waits for the other thread: spins briefly, then yields, and finally
+     * sleeps.
+     */
+    private static void idle(int idle) {
+        if (idle < 64)
+            Thread.onSpinWait();
+        else if (idle < 128)
+            Thread.yield();
+        else
+            LockSupport.parkNanos(50000);
+    }
+
+    /**
+     * Stops the lexer thread and waits until it terminates (so that the lexical
+     * analyzer and its logger may be closed).
+     */
+    @Override
+    public void close() {
+        closed = true;
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException __) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+}
@@ -30,16 +30,17 @@ public class NameResolver extends AbsFullVisitor<Object, Object> {
 
 
     public Object visit(AbsDecls decls, Object visArg) {
-        for (AbsDecl decl : decls.decls()) {
+        for (int i = 0; i < decls.numDecls(); i++) {
+            AbsDecl decl = decls.decl(i);
             try {
                 symbTable.ins(decl.name, decl);
             } catch (Exception e) {
                 throw new Report.Error(decl.location(), "SemanticError: Name '" + decl.name + "' already declared");
             }
         }
-        for (AbsDecl decl : decls.decls()) {
+        for (int i = 0; i < decls.numDecls(); i++) {
             symbTable.newScope();
-            decl.accept(this, visArg);
+            decls.decl(i).accept(this, visArg);
             symbTable.oldScope();
         }
         return null;
@@ -47,7 +48,6 @@ public class NameResolver extends AbsFullVisitor<Object, Object> {
 
     public Object visit(AbsTypName typ, Object visArg) {
         try {
-            symbTable.fnd(typ.name);
             SemAn.declaredAt.put(typ, symbTable.fnd(typ.name));
         } catch (Exception e) {
             throw new Report.Error(typ.location(), "SemanticError: Type '" + typ.name + "' is not declared.");
@@ -59,7 +59,6 @@ public class NameResolver extends AbsFullVisitor<Object, Object> {
     public Object visit(AbsFunName funName, Object visArg) {
         try {
             funName.args.accept(this, visArg);
-            symbTable.fnd(funName.name);
             SemAn.declaredAt.put(funName, symbTable.fnd(funName.name));
         } catch (SymbTable.CannotFndNameException e) {
             throw new Report.Error(funName.location(), "SemanticError: Function '" + funName.name + "' is not declared.");
@@ -71,7 +70,6 @@ public class NameResolver extends AbsFullVisitor<Object, Object> {
 
     public Object visit(AbsVarName varName, Object visArg) {
         try {
-            symbTable.fnd(varName.name);
             SemAn.declaredAt.put(varName, symbTable.fnd(varName.name));
         } catch (Exception e) {
             throw new Report.Error(varName.location(), "SemanticError: Name in function '" + varName.name + "' not declared");
@@ -82,11 +80,13 @@ public class NameResolver extends AbsFullVisitor<Object, Object> {
 
 
     public Object visit(AbsParDecls parDecls, Object visArg) {
-        for (AbsParDecl parDecl : parDecls.parDecls()) {
+        for (int i = 0; i < parDecls.numParDecls(); i++) {
+            AbsParDecl parDecl = parDecls.parDecl(i);
             parDecl.accept(this, parDecl);
         }
         symbTable.newScope();
-        for (AbsParDecl parDecl : parDecls.parDecls()) {
+        for (int i = 0; i < parDecls.numParDecls(); i++) {
+            AbsParDecl parDecl = parDecls.parDecl(i);
             try {
                 symbTable.ins(parDecl.name, parDecl);
             } catch (Exception e) {
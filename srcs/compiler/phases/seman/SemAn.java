@@ -38,7 +38,7 @@ public class SemAn extends Phase {
     /**
      * Denotes whether a value expression can denote an address.
      */
-    public static final AbsAttribute<AbsExpr, Boolean> isAddr = new AbsAttribute<AbsExpr, Boolean>();
+    public static final AbsAttribute<AbsExpr, Boolean> isAddr = new AbsBoolAttribute<AbsExpr>();
 
     /**
      * Constructs a new phase of semantic analysis.
@@ -10,54 +10,55 @@ import compiler.data.abstree.*;
 /**
  * Symbol table.
  * 
+ * Names are interned into an open-addressing hash table: each distinct name
+ * gets a bucket once and for all, and the index of the bucket identifies the
+ * name from then on. Declarations are records within a flat array (in the order
+ * of insertion) and each record points to the record of the declaration of the
+ * same name it hides; the bucket of a name points to the record of its visible
+ * declaration. A scope is a mark within the array of records, so destroying a
+ * scope amounts to truncating the array to its mark. Neither inserting nor
+ * finding a name creates any objects.
+ * 
  * @author sliva
  *
  */
 public class SymbTable {
 
+	/** The interned names (indexed by buckets). */
+	private String[] names;
+
 	/**
-	 * A symbol table record denoting a declaration of a name within a certain
-	 * scope.
-	 * 
-	 * @author sliva
-	 *
+	 * The index of the record of the visible declaration of each interned name (or
+	 * -1 if the name is not declared within currently active scopes).
 	 */
-	private class ScopedDecl {
+	private int[] visible;
 
-		/** The depth of the scope the declaration belongs to. */
-		public final int depth;
+	/** The number of interned names. */
+	private int numNames;
 
-		/** The declaration. */
-		public final AbsDecl decl;
+	/** The depths of the scopes the declarations belong to (indexed by records). */
+	private int[] depths;
 
-		/**
-		 * Constructs a new record denoting a declaration of a name within a certain
-		 * scope.
-		 * 
-		 * @param depth The depth of the scope the declaration belongs to.
-		 * @param decl  The declaration.
-		 */
-		public ScopedDecl(int depth, AbsDecl decl) {
-			this.depth = depth;
-			this.decl = decl;
-		}
+	/** The declarations (indexed by records). */
+	private AbsDecl[] decls;
 
-	}
+	/** The buckets of the declared names (indexed by records). */
+	private int[] buckets;
 
 	/**
-	 * A mapping of names into lists of records denoting declarations at different
-	 * scopes. At each moment during the lifetime of a symbol table, the declaration
-	 * list corresponding to a particular name contains all declarations that name
-	 * within currently active scopes: the declaration at the inner most scope is
-	 * the first in the list and is visible, the other declarations are hidden.
+	 * The indices of the records of the declarations hidden by the declarations
+	 * (or -1 if none is hidden).
 	 */
-	private final HashMap<String, LinkedList<ScopedDecl>> allDeclsOfAllNames;
+	private int[] hidden;
+
+	/** The number of records. */
+	private int numDecls;
 
 	/**
-	 * The list of scopes. Each scope is represented by a list of names declared
-	 * within it.
+	 * The number of records at the moment each scope has been constructed (indexed
+	 * by the depths of scopes).
 	 */
-	private final LinkedList<LinkedList<String>> scopes;
+	private int[] marks;
 
 	/** The depth of the currently active scope. */
 	private int currDepth;
@@ -69,8 +70,15 @@ public class SymbTable {
 	 * Constructs a new symbol table.
 	 */
 	public SymbTable() {
-		allDeclsOfAllNames = new HashMap<String, LinkedList<ScopedDecl>>();
-		scopes = new LinkedList<LinkedList<String>>();
+		names = new String[1024];
+		visible = new int[1024];
+		numNames = 0;
+		depths = new int[256];
+		decls = new AbsDecl[256];
+		buckets = new int[256];
+		hidden = new int[256];
+		numDecls = 0;
+		marks = new int[16];
 		currDepth = 0;
 		lock = false;
 		newScope();
@@ -85,6 +93,42 @@ public class SymbTable {
 		return currDepth;
 	}
 
+	/**
+	 * Returns the bucket of the specified name, i.e., the bucket the name is
+	 * interned in or the empty bucket it is to be interned in.
+	 */
+	private int bucket(String name) {
+		int mask = names.length - 1;
+		int bucket = name.hashCode() & mask;
+		while (true) {
+			String bucketName = names[bucket];
+			if ((bucketName == null) || (bucketName == name) || bucketName.equals(name))
+				return bucket;
+			bucket = (bucket + 1) & mask;
+		}
+	}
+
+	/**
+	 * Doubles the number of buckets and moves interned names into new buckets.
+	 */
+	private void rehash() {
+		String[] oldNames = names;
+		int[] oldVisible = visible;
+		int[] newBuckets = new int[oldNames.length];
+		names = new String[2 * oldNames.length];
+		visible = new int[2 * oldNames.length];
+		for (int oldBucket = 0; oldBucket < oldNames.length; oldBucket++) {
+			if (oldNames[oldBucket] == null)
+				continue;
+			int bucket = bucket(oldNames[oldBucket]);
+			names[bucket] = oldNames[oldBucket];
+			visible[bucket] = oldVisible[oldBucket];
+			newBuckets[oldBucket] = bucket;
+		}
+		for (int decl = 0; decl < numDecls; decl++)
+			buckets[decl] = newBuckets[buckets[decl]];
+	}
+
 	/**
 	 * Inserts a new declaration of a name within the currently active scope or
 	 * throws an exception if this name has already been declared within this scope.
@@ -100,20 +144,33 @@ public class SymbTable {
 		if (lock)
 			throw new Report.InternalError();
 
-		LinkedList<ScopedDecl> allDeclsOfName = allDeclsOfAllNames.get(name);
-		if (allDeclsOfName == null) {
-			allDeclsOfName = new LinkedList<ScopedDecl>();
-			allDeclsOfAllNames.put(name, allDeclsOfName);
+		int bucket = bucket(name);
+		if (names[bucket] == null) {
+			if (2 * (numNames + 1) > names.length) {
+				rehash();
+				bucket = bucket(name);
+			}
+			names[bucket] = name;
+			visible[bucket] = -1;
+			numNames++;
 		}
 
-		if (!allDeclsOfName.isEmpty()) {
-			ScopedDecl declOfName = allDeclsOfName.getFirst();
-			if (declOfName.depth == currDepth)
-				throw new CannotInsNameException();
-		}
+		int visibleDecl = visible[bucket];
+		if ((visibleDecl != -1) && (depths[visibleDecl] == currDepth))
+			throw new CannotInsNameException();
 
-		allDeclsOfName.addFirst(new ScopedDecl(currDepth, decl));
-		scopes.getFirst().addFirst(name);
+		if (numDecls == decls.length) {
+			depths = Arrays.copyOf(depths, 2 * numDecls);
+			decls = Arrays.copyOf(decls, 2 * numDecls);
+			buckets = Arrays.copyOf(buckets, 2 * numDecls);
+			hidden = Arrays.copyOf(hidden, 2 * numDecls);
+		}
+		depths[numDecls] = currDepth;
+		this.decls[numDecls] = decl;
+		buckets[numDecls] = bucket;
+		hidden[numDecls] = visibleDecl;
+		visible[bucket] = numDecls;
+		numDecls++;
 	}
 
 	/**
@@ -129,14 +186,11 @@ public class SymbTable {
 	 *                                it.
 	 */
 	public AbsDecl fnd(String name) throws CannotFndNameException {
-		LinkedList<ScopedDecl> allDeclsOfName = allDeclsOfAllNames.get(name);
-		if (allDeclsOfName == null)
-			throw new CannotFndNameException();
-
-		if (allDeclsOfName.isEmpty())
+		int bucket = bucket(name);
+		if ((names[bucket] == null) || (visible[bucket] == -1))
 			throw new CannotFndNameException();
 
-		return allDeclsOfName.getFirst().decl;
+		return decls[visible[bucket]];
 	}
 
 	/**
@@ -148,7 +202,9 @@ public class SymbTable {
 			throw new Report.InternalError();
 
 		currDepth++;
-		scopes.addFirst(new LinkedList<String>());
+		if (currDepth == marks.length)
+			marks = Arrays.copyOf(marks, 2 * marks.length);
+		marks[currDepth] = numDecls;
 	}
 
 	/**
@@ -163,10 +219,12 @@ public class SymbTable {
 		if (currDepth == 0)
 			throw new Report.InternalError();
 
-		for (String name : scopes.getFirst()) {
-			allDeclsOfAllNames.get(name).removeFirst();
+		int mark = marks[currDepth];
+		while (numDecls > mark) {
+			numDecls--;
+			visible[buckets[numDecls]] = hidden[numDecls];
+			decls[numDecls] = null;
 		}
-		scopes.removeFirst();
 		currDepth--;
 	}
 
@@ -0,0 +1,1163 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.synan;
+
+import java.util.*;
+import java.util.function.*;
+
+import compiler.common.report.*;
+import compiler.data.symbol.*;
+import compiler.data.abstree.*;
+
+/**
+ * A recursive descent parser that constructs the abstract syntax tree directly.
+ * <p>
+ * The parser follows the same LL(1) grammar as {@link SynAn} (it looks at the
+ * same symbols and reports the same errors), but instead of constructing the
+ * derivation tree it produces exactly the abstract syntax tree that
+ * {@link compiler.phases.abstr.AbsTreeConstructor} would produce from it,
+ * locations included. The location of a nonterminal is the span of the
+ * symbols it consists of. Lists are parsed iteratively rather than through
+ * their {@code Rest} nonterminals, and binary expressions are parsed by
+ * precedence climbing rather than by a function per level of precedence.
+ * <p>
+ * If more than one syntax error may be reported, the parser recovers from
+ * syntax errors in panic mode: the symbols following an error are skipped up to
+ * the next {@code ;} or {@code end} within a list of statements, or up to the
+ * next {@code fun}, {@code var} or {@code typ} within a list of declarations,
+ * and parsing continues from there. An error at the same symbol as the previous
+ * one is not reported. Once the source file has been parsed (or the maximal
+ * number of errors has been reached), the first error is thrown.
+ *
+ * @author sliva
+ */
+public class AbsTreeParser {
+
+    /**
+     * The source of input symbols.
+     */
+    private final Supplier<Symbol> lexer;
+
+    /**
+     * The lookahead buffer (of length 1).
+     */
+    private Symbol currSymb = null;
+
+    /**
+     * The last symbol consumed.
+     */
+    private Symbol prevSymb = null;
+
+    /**
+     * The number of symbols consumed.
+     */
+    private int numSymbs = 0;
+
+    /**
+     * The maximal number of syntax errors reported.
+     */
+    private final int maxErrors;
+
+    /**
+     * The syntax errors reported (at most {@link #maxErrors}).
+     */
+    private final Vector<Report.Error> errors = new Vector<Report.Error>();
+
+    /**
+     * The number of symbols consumed when the last syntax error was reported.
+     */
+    private int errorNumSymbs = -1;
+
+    /**
+     * Constructs a new parser that stops at the first syntax error.
+     *
+     * @param lexer The source of input symbols.
+     */
+    public AbsTreeParser(Supplier<Symbol> lexer) {
+        this(lexer, 1);
+    }
+
+    /**
+     * Constructs a new parser.
+     *
+     * @param lexer     The source of input symbols.
+     * @param maxErrors The maximal number of syntax errors reported.
+     */
+    public AbsTreeParser(Supplier<Symbol> lexer, int maxErrors) {
+        this.lexer = lexer;
+        this.maxErrors = Math.max(1, maxErrors);
+    }
+
+    /**
+     * The parser.
+     *
+     * @return The abstract syntax tree of the program in the source file.
+     */
+    public AbsSource parser() {
+        currSymb = lexer.get();
+        AbsSource source = parseSource();
+        if (!errors.isEmpty())
+            throw errors.firstElement();
+        return source;
+    }
+
+    /**
+     * Returns the current symbol, i.e., the first symbol not parsed yet.
+     *
+     * @return The current symbol.
+     */
+    public Symbol currSymb() {
+        if (currSymb == null)
+            currSymb = lexer.get();
+        return currSymb;
+    }
+
+    /**
+     * The parser of a single declaration within the list of top-level
+     * declarations (used for reparsing a part of the source file, see
+     * {@link Reparser}). The declaration must be followed by another declaration
+     * or by EOF. Syntax errors are not recovered from.
+     *
+     * @return The abstract syntax tree of the declaration.
+     */
+    public AbsDecl declParser() {
+        currSymb();
+        AbsDecl decl;
+        switch (currSymb.token) {
+            case TYP:
+            case VAR:
+            case FUN:
+                decl = parseDecl();
+                break;
+            default:
+                throw error();
+        }
+        switch (currSymb.token) {
+            case TYP:
+            case VAR:
+            case FUN:
+            case EOF:
+                return decl;
+            default:
+                throw error();
+        }
+    }
+
+    /**
+     * Consumes the current symbol and replaces it with the next input symbol.
+     *
+     * @return The symbol consumed.
+     */
+    private Symbol skip() {
+        prevSymb = currSymb;
+        numSymbs++;
+        currSymb = lexer.get();
+        return prevSymb;
+    }
+
+    /**
+     * Consumes the current symbol if it is the expected terminal; otherwise,
+     * produces the error message consisting of the prefix and the expected
+     * terminal.
+     *
+     * @return The symbol consumed.
+     */
+    private Symbol skip(Symbol.Term token, String prefix) {
+        if (currSymb.token != token)
+            throw error(currSymb, prefix + " " + token);
+        return skip();
+    }
+
+    /**
+     * Skips symbols until one of the specified terminals (or EOF) is reached.
+     */
+    private void skipTo(EnumSet<Symbol.Term> tokens) {
+        while ((currSymb.token != Symbol.Term.EOF) && !tokens.contains(currSymb.token))
+            skip();
+    }
+
+    /**
+     * Returns the location of the symbols consumed since the symbol {@code beg}
+     * has been the current symbol and {@code begNumSymbs} symbols have been
+     * consumed. If no symbol has been consumed since (which happens only while
+     * recovering from a syntax error), the location is empty.
+     */
+    private Location span(Symbol beg, int begNumSymbs) {
+        return (numSymbs == begNumSymbs) ? new Location(0, 0) : new Location(beg, prevSymb);
+    }
+
+    // Source -> Decls .
+    private AbsSource parseSource() {
+        Symbol beg = currSymb;
+        int begNumSymbs = numSymbs;
+        AbsDecls decls = parseDecls(false);
+        return new AbsSource(span(beg, begNumSymbs), decls);
+    }
+
+    /**
+     * The symbols the parser recovers at within a list of declarations.
+     */
+    private static final EnumSet<Symbol.Term> declsSync = EnumSet.of(Symbol.Term.TYP, Symbol.Term.VAR,
+            Symbol.Term.FUN, Symbol.Term.LBRACE);
+
+    /**
+     * The symbols the parser recovers at within a nested list of declarations.
+     */
+    private static final EnumSet<Symbol.Term> nestedDeclsSync = EnumSet.of(Symbol.Term.TYP, Symbol.Term.VAR,
+            Symbol.Term.FUN, Symbol.Term.LBRACE, Symbol.Term.RBRACE);
+
+    /*
+    Decls -> Decl DeclsRst .
+    DeclsRst -> .
+    DeclsRst -> Decls .
+    A list of declarations that is not nested within braces ends at EOF.
+     */
+    private AbsDecls parseDecls(boolean nested) {
+        Symbol beg = currSymb;
+        int begNumSymbs = numSymbs;
+        Vector<AbsDecl> decls = new Vector<AbsDecl>();
+        while (true) {
+            try {
+                switch (currSymb.token) {
+                    case TYP:
+                    case VAR:
+                    case FUN:
+                        decls.add(parseDecl());
+                        break;
+                    default:
+                        throw error();
+                }
+                switch (currSymb.token) {
+                    case TYP:
+                    case VAR:
+                    case FUN:
+                        break;
+                    case RBRACE:
+                        if (!nested)
+                            throw error();
+                        return new AbsDecls(span(beg, begNumSymbs), decls);
+                    case EOF:
+                        return new AbsDecls(span(beg, begNumSymbs), decls);
+                    default:
+                        throw error();
+                }
+            } catch (Panic panic) {
+                numOpers = 0;
+                numOperands = 0;
+                skipTo(nested ? nestedDeclsSync : declsSync);
+                while (currSymb.token == Symbol.Term.LBRACE) {
+                    // Most likely the declarations of the function body just skipped (unless
+                    // the brace is not followed by where, in which case skipping goes on).
+                    skip();
+                    if (currSymb.token == Symbol.Term.WHERE) {
+                        skip();
+                        parseDecls(true);
+                        if (currSymb.token == Symbol.Term.RBRACE)
+                            skip();
+                    }
+                    skipTo(nested ? nestedDeclsSync : declsSync);
+                }
+                if ((currSymb.token == Symbol.Term.RBRACE) || (currSymb.token == Symbol.Term.EOF))
+                    return new AbsDecls(span(beg, begNumSymbs), decls);
+            }
+        }
+    }
+
+    /*
+    Decl -> typ identifier : Type  .
+    Decl -> var identifier : Type  .
+    Decl -> fun identifier ( ParDeclsEps ) : Type BodyEps  .
+     */
+    private AbsDecl parseDecl() {
+        Symbol beg = currSymb;
+        int begNumSymbs = numSymbs;
+        switch (currSymb.token) {
+            case TYP:
+            case VAR: {
+                Symbol.Term token = skip().token;
+                String name = skip(Symbol.Term.IDENTIFIER, "expected").lexeme;
+                skip(Symbol.Term.COLON, "expectred");
+                AbsType type = parseType();
+                if (token == Symbol.Term.VAR)
+                    return new AbsVarDecl(span(beg, begNumSymbs), name, type);
+                else
+                    return new AbsTypDecl(span(beg, begNumSymbs), name, type);
+            }
+            case FUN: {
+                skip();
+                String name = skip(Symbol.Term.IDENTIFIER, "expected").lexeme;
+                skip(Symbol.Term.LPARENTHESIS, "expected");
+                AbsParDecls parDecls = parseParDeclsEps();
+                skip(Symbol.Term.RPARENTHESIS, "expected");
+                skip(Symbol.Term.COLON, "expected");
+                AbsType type = parseType();
+                AbsExpr body = parseBodyEps();
+                if (body == null)
+                    return new AbsFunDecl(span(beg, begNumSymbs), name, parDecls, type);
+                else
+                    return new AbsFunDef(span(beg, begNumSymbs), name, parDecls, type, body);
+            }
+            default:
+                throw error();
+        }
+    }
+
+    /*
+    ParDeclsEps -> .
+    ParDeclsEps -> ParDecls .
+     */
+    private AbsParDecls parseParDeclsEps() {
+        switch (currSymb.token) {
+            case IDENTIFIER:
+                return parseParDecls();
+            case RPARENTHESIS:
+                return new AbsParDecls(new Location(0, 0), new Vector<AbsParDecl>());
+            default:
+                throw error();
+        }
+    }
+
+    /*
+    ParDecls -> ParDecl ParDeclsRest .
+    ParDeclsRest -> .
+    ParDeclsRest -> , ParDecls .
+     */
+    private AbsParDecls parseParDecls() {
+        Symbol beg = currSymb;
+        int begNumSymbs = numSymbs;
+        Vector<AbsParDecl> parDecls = new Vector<AbsParDecl>();
+        while (true) {
+            switch (currSymb.token) {
+                case IDENTIFIER:
+                    parDecls.add(parseParDecl());
+                    break;
+                default:
+                    throw error();
+            }
+            switch (currSymb.token) {
+                case RPARENTHESIS:
+                    return new AbsParDecls(span(beg, begNumSymbs), parDecls);
+                case COMMA:
+                    skip();
+                    break;
+                default:
+                    throw error();
+            }
+        }
+    }
+
+    // ParDecl -> identifier : Type .
+    private AbsParDecl parseParDecl() {
+        Symbol beg = currSymb;
+        int begNumSymbs = numSymbs;
+        switch (currSymb.token) {
+            case IDENTIFIER: {
+                String name = skip().lexeme;
+                skip(Symbol.Term.COLON, "expectred");
+                AbsType type = parseType();
+                return new AbsParDecl(span(beg, begNumSymbs), name, type);
+            }
+            default:
+                throw error();
+        }
+    }
+
+    /*
+    BodyEps -> .
+    BodyEps ->  = Stmts : RelExpr WhereEps .
+     */
+    private AbsExpr parseBodyEps() {
+        Symbol beg = currSymb;
+        int begNumSymbs = numSymbs;
+        switch (currSymb.token) {
+            case TYP:
+            case VAR:
+            case FUN:
+            case RBRACE:
+            case EOF:
+                return null;
+            case ASSIGN: {
+                skip();
+                AbsStmts stmts = parseStmts(false);
+                skip(Symbol.Term.COLON, "expectred");
+                AbsExpr expr = parseRelExpr();
+                AbsDecls decls = parseWhereEps();
+                Location location = span(beg, begNumSymbs);
+                if (decls == null)
+                    decls = new AbsDecls(location, new Vector<AbsDecl>());
+                return new AbsBlockExpr(location, decls, stmts, expr);
+            }
+            default:
+                throw error();
+        }
+    }
+
+    /*
+    WhereEps -> { where Decls } .
+    WhereEps -> .
+     */
+    private AbsDecls parseWhereEps() {
+        switch (currSymb.token) {
+            case TYP:
+            case VAR:
+            case FUN:
+            case RBRACE:
+            case EOF:
+                return null;
+            case LBRACE: {
+                skip();
+                skip(Symbol.Term.WHERE, "expected");
+                AbsDecls decls = parseDecls(true);
+                skip(Symbol.Term.RBRACE, "expected");
+                return decls;
+            }
+            default:
+                throw error();
+        }
+    }
+
+    /*
+    Type -> void | int | char | bool .
+    Type -> arr [ RelExpr ] Type | ptr Type .
+    Type -> identifier | ( Type ).
+     */
+    private AbsType parseType() {
+        Symbol beg = currSymb;
+        int begNumSymbs = numSymbs;
+        switch (currSymb.token) {
+            case IDENTIFIER: {
+                String name = skip().lexeme;
+                return new AbsTypName(span(beg, begNumSymbs), name);
+            }
+            case LPARENTHESIS: {
+                skip();
+                AbsType type = parseType();
+                skip(Symbol.Term.RPARENTHESIS, "expected");
+                return type;
+            }
+            case VOID:
+                skip();
+                return new AbsAtomType(span(beg, begNumSymbs), AbsAtomType.Type.VOID);
+            case INT:
+                skip();
+                return new AbsAtomType(span(beg, begNumSymbs), AbsAtomType.Type.INT);
+            case CHAR:
+                skip();
+                return new AbsAtomType(span(beg, begNumSymbs), AbsAtomType.Type.CHAR);
+            case BOOL:
+                skip();
+                return new AbsAtomType(span(beg, begNumSymbs), AbsAtomType.Type.BOOL);
+            case ARR: {
+                skip();
+                skip(Symbol.Term.LBRACKET, "expected");
+                AbsExpr expr = parseRelExpr();
+                skip(Symbol.Term.RBRACKET, "expected");
+                AbsType type = parseType();
+                return new AbsArrType(span(beg, begNumSymbs), expr, type);
+            }
+            case PTR: {
+                skip();
+                AbsType type = parseType();
+                return new AbsPtrType(span(beg, begNumSymbs), type);
+            }
+            default:
+                throw error();
+        }
+    }
+
+    /**
+     * The operators of the expressions being parsed (binary and prefix ones, the
+     * most recent on top).
+     */
+    private Symbol[] opers = new Symbol[64];
+
+    /**
+     * The number of operators on the stack of operators.
+     */
+    private int numOpers = 0;
+
+    /**
+     * The operands of the binary expressions being parsed (the most recent on
+     * top).
+     */
+    private AbsExpr[] operands = new AbsExpr[64];
+
+    /**
+     * The number of operands on the stack of operands.
+     */
+    private int numOperands = 0;
+
+    /*
+    RelExpr -> AddExpr RelExprRest .
+    RelExprRest -> .
+    RelExprRest -> eql AddExpr | neq AddExpr | leq AddExpr .
+    RelExprRest -> geq AddExpr | lth AddExpr | gth AddExpr .
+    AddExpr -> MulExpr AddExprRest .
+    AddExprRest -> .
+    AddExprRest -> + MulExpr AddExprRest | - MulExpr AddExprRest.
+    MulExpr -> PrefExpr MulExprRest.
+    MulExprRest -> .
+    MulExprRest -> * PrefExpr MulExprRest | / PrefExpr MulExprRest | % PrefExpr MulExprRest .
+     */
+
+    /**
+     * Parses a relational expression by precedence climbing.
+     * <p>
+     * Instead of descending through a function per level of precedence, operators
+     * and operands are kept on explicit stacks, so that each operand and each
+     * operator costs a constant amount of work. An operator is reduced only once
+     * an operator of lower precedence or the end of the expression is reached,
+     * as each binary expression in a chain of operators of the same precedence is
+     * located from its operator to the end of the entire chain. Relational
+     * operators do not associate: a second one ends the expression (and is dealt
+     * with by the caller).
+     */
+    private AbsExpr parseRelExpr() {
+        int operBase = numOpers;
+        boolean relational = false;
+        pushOperand(parsePrefExpr());
+        while (true) {
+            int prec = precedence(currSymb.token);
+            if (prec == 0) {
+                switch (currSymb.token) {
+                    case TYP:
+                    case COLON:
+                    case VAR:
+                    case FUN:
+                    case RPARENTHESIS:
+                    case COMMA:
+                    case ASSIGN:
+                    case RBRACKET:
+                    case LBRACE:
+                    case RBRACE:
+                    case THEN:
+                    case END:
+                    case DO:
+                    case SEMIC:
+                    case ELSE:
+                    case EOF:
+                        break;
+                    default:
+                        throw error();
+                }
+                break;
+            }
+            if (prec == 1) {
+                if (relational)
+                    break;
+                relational = true;
+            }
+            reduce(operBase, prec);
+            pushOper(skip());
+            pushOperand(parsePrefExpr());
+        }
+        reduce(operBase, 0);
+        return operands[--numOperands];
+    }
+
+    /**
+     * Returns the precedence of a binary operator (or 0 if the token is not a
+     * binary operator).
+     */
+    private static int precedence(Symbol.Term token) {
+        switch (token) {
+            case EQU:
+            case NEQ:
+            case LEQ:
+            case GEQ:
+            case LTH:
+            case GTH:
+                return 1;
+            case ADD:
+            case SUB:
+                return 2;
+            case MUL:
+            case DIV:
+            case MOD:
+                return 3;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Reduces the binary operators above {@code operBase} on the stack of
+     * operators of higher precedence than {@code prec}. Operators of the same
+     * precedence on top of the stack form a single left-associative chain
+     * ending with the last symbol consumed.
+     */
+    private void reduce(int operBase, int prec) {
+        while (numOpers > operBase) {
+            int chainPrec = precedence(opers[numOpers - 1].token);
+            if (chainPrec <= prec)
+                return;
+            int chainBase = numOpers - 1;
+            while ((chainBase > operBase) && (precedence(opers[chainBase - 1].token) == chainPrec))
+                chainBase--;
+            int chainLength = numOpers - chainBase;
+            int operandBase = numOperands - chainLength - 1;
+            AbsExpr expr = operands[operandBase];
+            for (int i = 0; i < chainLength; i++) {
+                Symbol operSymb = opers[chainBase + i];
+                expr = new AbsBinExpr(new Location(operSymb, prevSymb), binOper(operSymb.token), expr,
+                        operands[operandBase + 1 + i]);
+            }
+            numOpers = chainBase;
+            numOperands = operandBase;
+            pushOperand(expr);
+        }
+    }
+
+    private static AbsBinExpr.Oper binOper(Symbol.Term token) {
+        switch (token) {
+            case EQU:
+                return AbsBinExpr.Oper.EQU;
+            case NEQ:
+                return AbsBinExpr.Oper.NEQ;
+            case LEQ:
+                return AbsBinExpr.Oper.LEQ;
+            case GEQ:
+                return AbsBinExpr.Oper.GEQ;
+            case LTH:
+                return AbsBinExpr.Oper.LTH;
+            case GTH:
+                return AbsBinExpr.Oper.GTH;
+            case ADD:
+                return AbsBinExpr.Oper.ADD;
+            case SUB:
+                return AbsBinExpr.Oper.SUB;
+            case MUL:
+                return AbsBinExpr.Oper.MUL;
+            case DIV:
+                return AbsBinExpr.Oper.DIV;
+            case MOD:
+                return AbsBinExpr.Oper.MOD;
+            default:
+                throw new Report.InternalError();
+        }
+    }
+
+    private void pushOper(Symbol operSymb) {
+        if (numOpers == opers.length)
+            opers = Arrays.copyOf(opers, 2 * numOpers);
+        opers[numOpers++] = operSymb;
+    }
+
+    private void pushOperand(AbsExpr operand) {
+        if (numOperands == operands.length)
+            operands = Arrays.copyOf(operands, 2 * numOperands);
+        operands[numOperands++] = operand;
+    }
+
+    /*
+    PrefExpr -> PstfExpr | + PrefExpr | - PrefExpr .
+    PrefExpr -> @ PrefExpr | $ PrefExpr .
+     */
+    private AbsExpr parsePrefExpr() {
+        int operBase = numOpers;
+        while (true) {
+            switch (currSymb.token) {
+                case ADD:
+                case SUB:
+                case DATA:
+                case ADDR:
+                    pushOper(skip());
+                    continue;
+                case IDENTIFIER:
+                case LPARENTHESIS:
+                case VOIDCONST:
+                case BOOLCONST:
+                case CHARCONST:
+                case INTCONST:
+                case PTRCONST:
+                case NEW:
+                case DEL:
+                    break;
+                default:
+                    throw error();
+            }
+            break;
+        }
+        AbsExpr expr = parsePstfExpr();
+        // Each prefix expression is located from its operator to the end of its operand.
+        while (numOpers > operBase) {
+            Symbol operSymb = opers[--numOpers];
+            expr = new AbsUnExpr(new Location(operSymb, prevSymb), unOper(operSymb.token), expr);
+        }
+        return expr;
+    }
+
+    private static AbsUnExpr.Oper unOper(Symbol.Term token) {
+        switch (token) {
+            case ADD:
+                return AbsUnExpr.Oper.ADD;
+            case SUB:
+                return AbsUnExpr.Oper.SUB;
+            case DATA:
+                return AbsUnExpr.Oper.DATA;
+            case ADDR:
+                return AbsUnExpr.Oper.ADDR;
+            default:
+                throw new Report.InternalError();
+        }
+    }
+
+    /*
+    PstfExpr -> Expr PstfExprRest .
+    PstfExprRest -> .
+    PstfExprRest -> [ RelExpr ] PstfExprRest .
+     */
+    private AbsExpr parsePstfExpr() {
+        switch (currSymb.token) {
+            case IDENTIFIER:
+            case LPARENTHESIS:
+            case VOIDCONST:
+            case BOOLCONST:
+            case CHARCONST:
+            case INTCONST:
+            case PTRCONST:
+            case NEW:
+            case DEL:
+                break;
+            default:
+                throw error();
+        }
+        AbsExpr expr = parseExpr();
+
+        Vector<Symbol> begSymbs = new Vector<Symbol>();
+        Vector<AbsExpr> idxExprs = new Vector<AbsExpr>();
+        while (true) {
+            switch (currSymb.token) {
+                case TYP:
+                case COLON:
+                case VAR:
+                case FUN:
+                case RPARENTHESIS:
+                case COMMA:
+                case ASSIGN:
+                case RBRACKET:
+                case EQU:
+                case NEQ:
+                case LEQ:
+                case GEQ:
+                case LTH:
+                case GTH:
+                case ADD:
+                case SUB:
+                case MUL:
+                case DIV:
+                case ADDR:
+                case LBRACE:
+                case RBRACE:
+                case THEN:
+                case END:
+                case DO:
+                case SEMIC:
+                case ELSE:
+                case EOF:
+                case MOD:
+                    // Each access is located from its bracket to the end of the entire chain.
+                    for (int i = 0; i < begSymbs.size(); i++)
+                        expr = new AbsArrExpr(new Location(begSymbs.get(i), prevSymb), expr, idxExprs.get(i));
+                    return expr;
+                case LBRACKET:
+                    begSymbs.add(skip());
+                    idxExprs.add(parseRelExpr());
+                    skip(Symbol.Term.RBRACKET, "expected");
+                    break;
+                default:
+                    throw error();
+            }
+        }
+    }
+
+    /*
+    Expr -> AtomExpr | ( RelExpr CastEps ) .
+    CastEps -> .
+    CastEps -> : Type .
+     */
+    private AbsExpr parseExpr() {
+        switch (currSymb.token) {
+            case IDENTIFIER:
+            case VOIDCONST:
+            case BOOLCONST:
+            case CHARCONST:
+            case INTCONST:
+            case PTRCONST:
+            case NEW:
+            case DEL:
+                return parseAtomExpr();
+            case LPARENTHESIS: {
+                skip();
+                AbsExpr expr = parseRelExpr();
+                Symbol beg = currSymb;
+                int begNumSymbs = numSymbs;
+                switch (currSymb.token) {
+                    case COLON: {
+                        skip();
+                        AbsType type = parseType();
+                        expr = new AbsCastExpr(span(beg, begNumSymbs), expr, type);
+                        break;
+                    }
+                    case RPARENTHESIS:
+                        break;
+                    default:
+                        throw error();
+                }
+                skip(Symbol.Term.RPARENTHESIS, "expected");
+                return expr;
+            }
+            default:
+                throw error();
+        }
+    }
+
+    /*
+    AtomExpr -> voidconst | boolconst | charconst | intconst | ptrconst | new ( Type ) | del ( RelExpr ) | identifier CallEps .
+    CallEps -> .
+    CallEps -> ( ArgsEps ) .
+     */
+    private AbsExpr parseAtomExpr() {
+        Symbol beg = currSymb;
+        int begNumSymbs = numSymbs;
+        switch (currSymb.token) {
+            case IDENTIFIER: {
+                String name = skip().lexeme;
+                switch (currSymb.token) {
+                    case TYP:
+                    case COLON:
+                    case VAR:
+                    case FUN:
+                    case RPARENTHESIS:
+                    case COMMA:
+                    case ASSIGN:
+                    case LBRACKET:
+                    case RBRACKET:
+                    case EQU:
+                    case NEQ:
+                    case LEQ:
+                    case GEQ:
+                    case LTH:
+                    case GTH:
+                    case ADD:
+                    case SUB:
+                    case MUL:
+                    case DIV:
+                    case MOD:
+                    case LBRACE:
+                    case RBRACE:
+                    case THEN:
+                    case END:
+                    case DO:
+                    case SEMIC:
+                    case ELSE:
+                    case EOF:
+                        return new AbsVarName(span(beg, begNumSymbs), name);
+                    case LPARENTHESIS: {
+                        skip();
+                        AbsArgs args = parseArgsEps();
+                        skip(Symbol.Term.RPARENTHESIS, "expected");
+                        return new AbsFunName(span(beg, begNumSymbs), name, args);
+                    }
+                    default:
+                        throw error();
+                }
+            }
+            case VOIDCONST:
+                return new AbsAtomExpr(skip(), AbsAtomExpr.Type.VOID, prevSymb.lexeme);
+            case BOOLCONST:
+                return new AbsAtomExpr(skip(), AbsAtomExpr.Type.BOOL, prevSymb.lexeme);
+            case CHARCONST:
+                return new AbsAtomExpr(skip(), AbsAtomExpr.Type.CHAR, prevSymb.lexeme);
+            case INTCONST:
+                return new AbsAtomExpr(skip(), AbsAtomExpr.Type.INT, prevSymb.lexeme);
+            case PTRCONST:
+                return new AbsAtomExpr(skip(), AbsAtomExpr.Type.PTR, prevSymb.lexeme);
+            case NEW: {
+                skip();
+                skip(Symbol.Term.LPARENTHESIS, "expected");
+                AbsType type = parseType();
+                skip(Symbol.Term.RPARENTHESIS, "expected");
+                return new AbsNewExpr(span(beg, begNumSymbs), type);
+            }
+            case DEL: {
+                skip();
+                skip(Symbol.Term.LPARENTHESIS, "expected");
+                AbsExpr expr = parseRelExpr();
+                skip(Symbol.Term.RPARENTHESIS, "expected");
+                return new AbsDelExpr(span(beg, begNumSymbs), expr);
+            }
+            default:
+                throw error();
+        }
+    }
+
+    /*
+    ArgsEps -> .
+    ArgsEps -> Args ArgsRest .
+    Args -> RelExpr .
+    ArgsRest -> , Args ArgsRest .
+    ArgsRest -> .
+     */
+    private AbsArgs parseArgsEps() {
+        Symbol beg = currSymb;
+        int begNumSymbs = numSymbs;
+        switch (currSymb.token) {
+            case RPARENTHESIS:
+                return new AbsArgs(new Location(0, 0), new Vector<AbsExpr>());
+            case IDENTIFIER:
+            case LPARENTHESIS:
+            case ADD:
+            case SUB:
+            case DATA:
+            case ADDR:
+            case VOIDCONST:
+            case BOOLCONST:
+            case CHARCONST:
+            case INTCONST:
+            case PTRCONST:
+            case NEW:
+            case DEL:
+                break;
+            default:
+                throw error();
+        }
+        Vector<AbsExpr> args = new Vector<AbsExpr>();
+        while (true) {
+            switch (currSymb.token) {
+                case IDENTIFIER:
+                case LPARENTHESIS:
+                case ADD:
+                case SUB:
+                case DATA:
+                case ADDR:
+                case VOIDCONST:
+                case INTCONST:
+                case BOOLCONST:
+                case CHARCONST:
+                case PTRCONST:
+                case NEW:
+                case DEL:
+                    args.add(parseRelExpr());
+                    break;
+                default:
+                    throw error();
+            }
+            switch (currSymb.token) {
+                case RPARENTHESIS:
+                    return new AbsArgs(span(beg, begNumSymbs), args);
+                case COMMA:
+                    skip();
+                    break;
+                default:
+                    throw error();
+            }
+        }
+    }
+
+    /*
+    Stmts -> Stmt StmtsRest .
+    StmtsRest -> .
+    StmtsRest -> ; Stmts.
+     */
+    private AbsStmts parseStmts(boolean nested) {
+        Symbol beg = currSymb;
+        int begNumSymbs = numSymbs;
+        Vector<AbsStmt> stmts = new Vector<AbsStmt>();
+        while (true) {
+            try {
+                switch (currSymb.token) {
+                    case IDENTIFIER:
+                    case LPARENTHESIS:
+                    case ADD:
+                    case SUB:
+                    case DATA:
+                    case ADDR:
+                    case VOIDCONST:
+                    case BOOLCONST:
+                    case CHARCONST:
+                    case INTCONST:
+                    case PTRCONST:
+                    case NEW:
+                    case DEL:
+                    case IF:
+                    case WHILE:
+                        stmts.add(parseStmt());
+                        break;
+                    default:
+                        throw error();
+                }
+                switch (currSymb.token) {
+                    case COLON:
+                    case END:
+                    case ELSE:
+                        return new AbsStmts(span(beg, begNumSymbs), stmts);
+                    case SEMIC:
+                        skip();
+                        break;
+                    default:
+                        throw error();
+                }
+            } catch (Panic panic) {
+                numOpers = 0;
+                numOperands = 0;
+                skipTo(nested ? nestedStmtsSync : stmtsSync);
+                switch (currSymb.token) {
+                    case SEMIC:
+                        skip();
+                        break;
+                    case COLON:
+                    case END:
+                    case ELSE:
+                        return new AbsStmts(span(beg, begNumSymbs), stmts);
+                    default:
+                        // The declaration the statements belong to cannot be completed.
+                        throw panic;
+                }
+            }
+        }
+    }
+
+    /**
+     * The symbols the parser recovers at within the list of statements of a
+     * function body.
+     */
+    private static final EnumSet<Symbol.Term> stmtsSync = EnumSet.of(Symbol.Term.SEMIC, Symbol.Term.COLON,
+            Symbol.Term.TYP, Symbol.Term.VAR, Symbol.Term.FUN, Symbol.Term.LBRACE, Symbol.Term.RBRACE);
+
+    /**
+     * The symbols the parser recovers at within the list of statements nested
+     * within a conditional or a loop.
+     */
+    private static final EnumSet<Symbol.Term> nestedStmtsSync = EnumSet.of(Symbol.Term.SEMIC, Symbol.Term.END,
+            Symbol.Term.ELSE, Symbol.Term.COLON, Symbol.Term.TYP, Symbol.Term.VAR, Symbol.Term.FUN,
+            Symbol.Term.LBRACE, Symbol.Term.RBRACE);
+
+    /*
+    Stmt -> RelExpr AssignEps  .
+    Stmt -> if RelExpr then Stmts ElseEps end  .
+    Stmt -> while RelExpr do Stmts end  .
+    AssignEps -> .
+    AssignEps -> = RelExpr .
+    ElseEps -> .
+    ElseEps -> else Stmts .
+     */
+    private AbsStmt parseStmt() {
+        Symbol beg = currSymb;
+        int begNumSymbs = numSymbs;
+        switch (currSymb.token) {
+            case IDENTIFIER:
+            case LPARENTHESIS:
+            case ADD:
+            case SUB:
+            case DATA:
+            case ADDR:
+            case VOIDCONST:
+            case BOOLCONST:
+            case CHARCONST:
+            case INTCONST:
+            case PTRCONST:
+            case NEW:
+            case DEL: {
+                AbsExpr dstExpr = parseRelExpr();
+                switch (currSymb.token) {
+                    case COLON:
+                    case END:
+                    case SEMIC:
+                    case ELSE:
+                        return new AbsExprStmt(span(beg, begNumSymbs), dstExpr);
+                    case ASSIGN: {
+                        skip();
+                        AbsExpr srcExpr = parseRelExpr();
+                        return new AbsAssignStmt(span(beg, begNumSymbs), dstExpr, srcExpr);
+                    }
+                    default:
+                        throw error();
+                }
+            }
+            case IF: {
+                skip();
+                AbsExpr cond = parseCond(Symbol.Term.THEN);
+                skip(Symbol.Term.THEN, "expected");
+                AbsStmts thenStmts = parseStmts(true);
+                AbsStmts elseStmts;
+                switch (currSymb.token) {
+                    case END:
+                        elseStmts = new AbsStmts(new Location(0, 0), new Vector<AbsStmt>());
+                        break;
+                    case ELSE:
+                        skip();
+                        elseStmts = parseStmts(true);
+                        break;
+                    default:
+                        throw error();
+                }
+                skip(Symbol.Term.END, "expected");
+                return new AbsIfStmt(span(beg, begNumSymbs), cond, thenStmts, elseStmts);
+            }
+            case WHILE: {
+                skip();
+                AbsExpr cond = parseCond(Symbol.Term.DO);
+                skip(Symbol.Term.DO, "expected");
+                AbsStmts stmts = parseStmts(true);
+                skip(Symbol.Term.END, "expected");
+                return new AbsWhileStmt(span(beg, begNumSymbs), cond, stmts);
+            }
+            default:
+                throw error();
+        }
+    }
+
+    /**
+     * Parses the condition of a conditional or a loop. After a syntax error
+     * within the condition, the parser recovers at the terminal following the
+     * condition (if found before the end of the statement).
+     */
+    private AbsExpr parseCond(Symbol.Term token) {
+        try {
+            return parseRelExpr();
+        } catch (Panic panic) {
+            numOpers = 0;
+            numOperands = 0;
+            skipTo(EnumSet.of(token, Symbol.Term.SEMIC, Symbol.Term.END, Symbol.Term.COLON, Symbol.Term.TYP,
+                    Symbol.Term.VAR, Symbol.Term.FUN, Symbol.Term.LBRACE, Symbol.Term.RBRACE));
+            if (currSymb.token != token)
+                throw panic;
+            return null;
+        }
+    }
+
+    private java.lang.Error error() {
+        return error(currSymb, "Unexpected '" + currSymb + "' at the end of a program.");
+    }
+
+    /**
+     * Reports a syntax error (unless it is at the same symbol as the previous
+     * one) and returns the error to be thrown: the error itself if no more
+     * errors may be reported, or {@link Panic} otherwise.
+     */
+    private java.lang.Error error(Locatable location, String message) {
+        if (numSymbs != errorNumSymbs) {
+            errors.add(new Report.Error(location, message));
+            errorNumSymbs = numSymbs;
+            if (errors.size() >= maxErrors)
+                return errors.lastElement();
+        }
+        return new Panic();
+    }
+
+    /**
+     * Thrown to unwind the parser to the nearest list it can recover in after a
+     * syntax error has been reported.
+     */
+    @SuppressWarnings("serial")
+    private static class Panic extends java.lang.Error {
+
+        public Panic() {
+            super(null, null, false, false);
+        }
+
+    }
+
+}
@@ -3,6 +3,7 @@
  */
 package compiler.phases.synan;
 
+import java.util.*;
 import compiler.common.logger.*;
 import compiler.data.dertree.*;
 import compiler.data.dertree.visitor.*;
@@ -34,18 +35,43 @@ public class DerLogger implements DerVisitor<Object, Object> {
 		return null;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Internal nodes are traversed in a loop rather than recursively so that the
+	 * chains of nodes representing long lists do not exhaust the stack.
+	 */
 	@Override
 	public Object visit(DerNode node, Object visArg) {
 		if (logger == null)
 			return null;
+		Stack<DerNode> nodes = new Stack<DerNode>();
+		Stack<Integer> indices = new Stack<Integer>();
 		logger.begElement("nont");
 		logger.addAttribute("label", node.label.toString());
-		for (DerTree subTree : node.subtrees()) {
-			subTree.accept(this, visArg);
+		nodes.push(node);
+		indices.push(0);
+		while (!nodes.empty()) {
+			DerNode top = nodes.peek();
+			int index = indices.pop();
+			if (index == top.numSubtrees()) {
+				nodes.pop();
+				if (top.location() != null)
+					top.location().log(logger);
+				logger.endElement();
+				continue;
+			}
+			indices.push(index + 1);
+			DerTree subTree = top.subtree(index);
+			if (subTree instanceof DerNode) {
+				DerNode subNode = (DerNode) subTree;
+				logger.begElement("nont");
+				logger.addAttribute("label", subNode.label.toString());
+				nodes.push(subNode);
+				indices.push(0);
+			} else
+				subTree.accept(this, visArg);
 		}
-		if (node.location() != null)
-			node.location().log(logger);
-		logger.endElement();
 		return null;
 	}
 
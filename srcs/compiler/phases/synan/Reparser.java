@@ -0,0 +1,298 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.synan;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.util.*;
+
+import compiler.common.report.*;
+import compiler.data.symbol.*;
+import compiler.data.abstree.*;
+import compiler.phases.lexan.*;
+
+/**
+ * Incremental lexical and syntax analysis of a source text being edited.
+ * <p>
+ * For each top-level declaration the state of the lexer at its first symbol is
+ * recorded. When a part of the source text is replaced, the lexer is restarted
+ * at the last top-level declaration that the edit might affect (the one
+ * preceding the edit, as the edit might change where it ends) and the
+ * declarations are reparsed one by one until the lexer reaches the first
+ * symbol of an old top-level declaration following the edit in the same line
+ * and column as before. From there on, the rest of the source text is lexed
+ * and parsed exactly as before, so the old declarations are reused and only
+ * their character offsets are adjusted.
+ * <p>
+ * As locations hold absolute line numbers, an edit that changes the number of
+ * lines shifts every subsequent declaration and the reparsing continues to the
+ * end of the source text.
+ *
+ * @author sliva
+ */
+public class Reparser {
+
+    /**
+     * The source text.
+     */
+    private char[] src;
+
+    /**
+     * The abstract syntax tree of the source text (or {@code null} if the source
+     * text contains an error).
+     */
+    private AbsSource source = null;
+
+    /**
+     * The number of top-level declarations.
+     */
+    private int numDecls = 0;
+
+    /**
+     * The indices of the first characters of top-level declarations.
+     */
+    private int[] declStarts = new int[0];
+
+    /**
+     * The indices of the characters following the first symbols of top-level
+     * declarations.
+     */
+    private int[] declHeadEnds = new int[0];
+
+    /**
+     * The lines of top-level declarations.
+     */
+    private int[] declLines = new int[0];
+
+    /**
+     * The indices of the characters the columns of the first lines of top-level
+     * declarations are counted from.
+     */
+    private int[] declLineStarts = new int[0];
+
+    /**
+     * The number of top-level declarations parsed by the last (re)parse.
+     */
+    private int numReparsed = 0;
+
+    /**
+     * Constructs a new incremental parser and parses the entire source text.
+     *
+     * @param src The source text.
+     */
+    public Reparser(char[] src) {
+        this.src = src;
+        reparse(0, Integer.MAX_VALUE, 0, 0);
+    }
+
+    /**
+     * Returns the abstract syntax tree of the current source text.
+     *
+     * @return The abstract syntax tree (or {@code null} if the source text
+     *         contains an error).
+     */
+    public AbsSource source() {
+        return source;
+    }
+
+    /**
+     * Returns the number of top-level declarations parsed by the last edit (or by
+     * the initial parse), i.e., the declarations that have not been reused.
+     *
+     * @return The number of top-level declarations parsed.
+     */
+    public int numReparsed() {
+        return numReparsed;
+    }
+
+    /**
+     * Replaces a part of the source text and updates the abstract syntax tree.
+     * If the new source text contains an error, the error is reported and thrown,
+     * and the next edit reparses the entire source text.
+     *
+     * @param beg  The index of the first character replaced.
+     * @param end  The index of the character following the last character
+     *             replaced.
+     * @param text The replacement.
+     * @return The abstract syntax tree of the new source text.
+     */
+    public AbsSource edit(int beg, int end, String text) {
+        if ((beg < 0) || (beg > end) || (end > src.length))
+            throw new IllegalArgumentException();
+        char[] newSrc = new char[src.length - (end - beg) + text.length()];
+        System.arraycopy(src, 0, newSrc, 0, beg);
+        text.getChars(0, text.length(), newSrc, beg);
+        System.arraycopy(src, end, newSrc, beg + text.length(), src.length - end);
+        src = newSrc;
+
+        if (source == null) {
+            reparse(0, Integer.MAX_VALUE, 0, 0);
+            return source;
+        }
+
+        // The declarations whose first symbols end before the edit are kept, except
+        // for the last one.
+        int lo = 0;
+        int hi = numDecls;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (declHeadEnds[mid] < beg)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        reparse(lo, beg + text.length(), end, text.length() - (end - beg));
+        return source;
+    }
+
+    /**
+     * Reparses the source text starting at the last of the specified number of
+     * top-level declarations kept (or at the beginning of the source text if
+     * none are kept).
+     *
+     * @param numKept The number of top-level declarations kept.
+     * @param editEnd The index of the first character following the edit (in the
+     *                new source text).
+     * @param oldEnd  The index of the first character following the edit (in the
+     *                old source text).
+     * @param delta   The change of the length of the source text.
+     */
+    private void reparse(int numKept, int editEnd, int oldEnd, int delta) {
+        AbsSource oldSource = source;
+        int oldNumDecls = numDecls;
+        int[] oldStarts = declStarts;
+        int[] oldHeadEnds = declHeadEnds;
+        int[] oldLines = declLines;
+        int[] oldLineStarts = declLineStarts;
+        int first = Math.max(numKept - 1, 0);
+
+        source = null;
+        numDecls = first;
+        declStarts = Arrays.copyOf(oldStarts, oldStarts.length);
+        declHeadEnds = Arrays.copyOf(oldHeadEnds, oldStarts.length);
+        declLines = Arrays.copyOf(oldLines, oldStarts.length);
+        declLineStarts = Arrays.copyOf(oldLineStarts, oldStarts.length);
+        Vector<AbsDecl> decls = new Vector<AbsDecl>();
+        for (int decl = 0; decl < first; decl++)
+            decls.add(oldSource.decls.decl(decl));
+
+        int reused = oldNumDecls;
+        numReparsed = 0;
+        try (LexAn lexAn = new LexAn(src)) {
+            if (numKept > 0)
+                lexAn.restart(oldStarts[first], oldLines[first], oldLineStarts[first]);
+            AbsTreeParser parser = new AbsTreeParser(lexAn::lexer);
+            Symbol symb = parser.currSymb();
+            while (symb.token != Symbol.Term.EOF) {
+                int start = lexAn.tokenStart();
+                if (start >= editEnd) {
+                    // Is this an old declaration in the same line and column as before?
+                    int oldStart = start - delta;
+                    int index = Arrays.binarySearch(oldStarts, first, oldNumDecls, oldStart);
+                    if ((oldStart >= oldEnd) && (index >= 0) && (oldLines[index] == lexAn.line())
+                            && (oldStart - oldLineStarts[index] == start - lexAn.lineStart())) {
+                        reused = index;
+                        break;
+                    }
+                }
+                add(start, start + symb.lexeme.length(), lexAn.line(), lexAn.lineStart());
+                decls.add(parser.declParser());
+                numReparsed++;
+                symb = parser.currSymb();
+            }
+            if (decls.isEmpty() && (reused == oldNumDecls)) {
+                // Reports the missing declaration.
+                parser.declParser();
+            }
+        }
+
+        // The rest of the source text is parsed as before.
+        for (int decl = reused; decl < oldNumDecls; decl++) {
+            add(oldStarts[decl] + delta, oldHeadEnds[decl] + delta, oldLines[decl], oldLineStarts[decl] + delta);
+            decls.add(oldSource.decls.decl(decl));
+        }
+
+        Location location = new Location(decls.firstElement(), decls.lastElement());
+        source = new AbsSource(location, new AbsDecls(location, decls));
+    }
+
+    /**
+     * Watches a source file and reparses it incrementally each time it changes,
+     * until it is deleted. Each change is turned into a single edit replacing the
+     * characters between the longest common prefix and the longest common suffix
+     * of the old and the new source text.
+     *
+     * @param srcFileName The name of the source file.
+     */
+    public static void watch(String srcFileName) {
+        Path path = Paths.get(srcFileName);
+        Reparser reparser = null;
+        char[] src = null;
+        FileTime modified = null;
+        while (true) {
+            char[] newSrc;
+            try {
+                FileTime newModified = Files.getLastModifiedTime(path);
+                if (newModified.equals(modified)) {
+                    Thread.sleep(200);
+                    continue;
+                }
+                modified = newModified;
+                newSrc = new String(Files.readAllBytes(path), Charset.defaultCharset()).toCharArray();
+            } catch (NoSuchFileException ___) {
+                return;
+            } catch (IOException ___) {
+                throw new Report.Error("Cannot open source file '" + srcFileName + "'.");
+            } catch (InterruptedException ___) {
+                return;
+            }
+            if ((src != null) && Arrays.equals(src, newSrc))
+                continue;
+
+            long begTime = System.nanoTime();
+            try {
+                if (reparser == null)
+                    reparser = new Reparser(newSrc);
+                else {
+                    int prefix = 0;
+                    while ((prefix < src.length) && (prefix < newSrc.length) && (src[prefix] == newSrc[prefix]))
+                        prefix++;
+                    int suffix = 0;
+                    while ((suffix < src.length - prefix) && (suffix < newSrc.length - prefix)
+                            && (src[src.length - 1 - suffix] == newSrc[newSrc.length - 1 - suffix]))
+                        suffix++;
+                    reparser.edit(prefix, src.length - suffix,
+                            new String(newSrc, prefix, newSrc.length - prefix - suffix));
+                }
+                Report.info(String.format("Reparsed %d of %d declarations in %.1f ms.", reparser.numReparsed(),
+                        reparser.numDecls, (System.nanoTime() - begTime) / 1e6));
+            } catch (Report.Error ___) {
+                // The error has already been reported.
+            }
+            src = newSrc;
+        }
+    }
+
+    /**
+     * Records the state of the lexer at the first symbol of the next top-level
+     * declaration.
+     */
+    private void add(int start, int headEnd, int line, int lineStart) {
+        if (numDecls == declStarts.length) {
+            int length = Math.max(64, 2 * numDecls);
+            declStarts = Arrays.copyOf(declStarts, length);
+            declHeadEnds = Arrays.copyOf(declHeadEnds, length);
+            declLines = Arrays.copyOf(declLines, length);
+            declLineStarts = Arrays.copyOf(declLineStarts, length);
+        }
+        declStarts[numDecls] = start;
+        declHeadEnds[numDecls] = headEnd;
+        declLines[numDecls] = line;
+        declLineStarts[numDecls] = lineStart;
+        numDecls++;
+    }
+
+}
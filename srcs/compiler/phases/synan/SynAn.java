@@ -6,6 +6,7 @@ package compiler.phases.synan;
 import compiler.common.report.*;
 import compiler.data.symbol.*;
 import compiler.data.dertree.*;
+import compiler.data.abstree.*;
 import compiler.phases.*;
 import compiler.phases.lexan.*;
 
@@ -23,21 +24,49 @@ public class SynAn extends Phase {
      */
     public static DerTree derTree = null;
 
+    /**
+     * The abstract syntax tree of the program being compiled (if constructed
+     * directly, i.e., without the derivation tree).
+     */
+    public static AbsSource absTree = null;
+
     /**
      * The lexical analyzer used by this syntax analyzer.
      */
     private final LexAn lexAn;
 
+    /**
+     * The packed token stream the symbols are taken from (or {@code null} if the
+     * lexer produces symbols directly).
+     */
+    private final TokenStream tokens;
+
+    /**
+     * The lexer thread the symbols are taken from (or {@code null} if the lexer
+     * runs in the same thread as the parser).
+     */
+    private final SymbolPipe pipe;
+
     /**
      * Constructs a new phase of syntax analysis.
      */
     public SynAn() {
         super("synan");
         lexAn = new LexAn();
+        if (compiler.Main.cmdLineArgValue("--pipeline") != null) {
+            // Packed tokens materialize their locations lazily, i.e., in the parser's thread.
+            pipe = new SymbolPipe(lexAn, 4096);
+            tokens = null;
+        } else {
+            pipe = null;
+            tokens = compiler.Main.cmdLineArgValue("--packed-tokens") != null ? lexAn.tokens() : null;
+        }
     }
 
     @Override
     public void close() {
+        if (pipe != null)
+            pipe.close();
         lexAn.close();
         super.close();
     }
@@ -48,9 +77,21 @@ public class SynAn extends Phase {
      * This method constructs a derivation tree of the program in the source file.
      * It calls method {@link #parseSource()} that starts a recursive descent parser
      * implementation of an LL(1) parsing algorithm.
+     * <p>
+     * The derivation tree is constructed only if it is going to be logged or if
+     * requested by {@code --der-tree}; otherwise, the abstract syntax tree is
+     * constructed directly by {@link AbsTreeParser} and the derivation tree is
+     * left {@code null}. Only the latter recovers from syntax errors, reporting
+     * up to {@code --max-errors} of them; the derivation tree is constructed
+     * until the first syntax error.
      */
     public void parser() {
-        currSymb = lexAn.lexer();
+        if ((logger == null) && (compiler.Main.cmdLineArgValue("--der-tree") == null)) {
+            String maxErrors = compiler.Main.cmdLineArgValue("--max-errors");
+            absTree = new AbsTreeParser(this::nextSymb, maxErrors == null ? 1 : Integer.parseInt(maxErrors)).parser();
+            return;
+        }
+        currSymb = nextSymb();
         derTree = parseSource();
         if (currSymb.token != Symbol.Term.EOF)
             error();
@@ -61,6 +102,15 @@ public class SynAn extends Phase {
      */
     private Symbol currSymb = null;
 
+    /**
+     * Returns the next input symbol.
+     */
+    private Symbol nextSymb() {
+        if (pipe != null)
+            return pipe.take();
+        return tokens == null ? lexAn.lexer() : tokens.symbol(lexAn.scan());
+    }
+
     /**
      * Appends the current symbol in the lookahead buffer to a derivation tree node
      * (typically the node of the derivation tree that is currently being expanded
@@ -74,7 +124,7 @@ public class SynAn extends Phase {
         if (currSymb == null)
             throw new Report.InternalError();
         node.add(new DerLeaf(currSymb));
-        currSymb = lexAn.lexer();
+        currSymb = nextSymb();
     }
 
     /**
@@ -94,7 +144,7 @@ public class SynAn extends Phase {
             throw new Report.InternalError();
         if (currSymb.token == token) {
             node.add(new DerLeaf(currSymb));
-            currSymb = lexAn.lexer();
+            currSymb = nextSymb();
         } else
             throw new Report.Error(currSymb, errorMsg);
     }
@@ -115,21 +165,42 @@ public class SynAn extends Phase {
         return node;
     }
 
-    // Decls -> Decl DeclsRst .
+    /*
+    Decls -> Decl DeclsRst .
+    DeclsRst -> .
+    DeclsRst -> Decls .
+    The chain of DeclsRst nodes is built in a loop rather than recursively.
+     */
     private DerTree parseDecls() {
         DerNode node = new DerNode(DerNode.Nont.Decls);
-        switch (currSymb.token) {
-            case TYP:
-            case VAR:
-            case FUN:
-                node.add(parseDecl());
-                node.add(parseDeclsRst());
-                break;
-            default:
-                error();
+        DerNode decls = node;
+        while (true) {
+            switch (currSymb.token) {
+                case TYP:
+                case VAR:
+                case FUN:
+                    decls.add(parseDecl());
+                    break;
+                default:
+                    error();
+            }
+            DerNode declsRest = new DerNode(DerNode.Nont.DeclsRest);
+            decls.add(declsRest);
+            switch (currSymb.token) {
+                case TYP:
+                case VAR:
+                case FUN:
+                    decls = new DerNode(DerNode.Nont.Decls);
+                    declsRest.add(decls);
+                    continue;
+                case RBRACE:
+                case EOF:
+                    break;
+                default:
+                    error();
+            }
+            return node;
         }
-
-        return node;
     }
 
     /*
@@ -164,29 +235,6 @@ public class SynAn extends Phase {
         return node;
     }
 
-    /*
-    DeclsRst -> .
-    DeclsRst -> Decls .
-     */
-    private DerNode parseDeclsRst() {
-        DerNode node = new DerNode(DerNode.Nont.DeclsRest);
-        switch (currSymb.token) {
-            case TYP:
-            case VAR:
-            case FUN:
-                node.add(parseDecls());
-                break;
-            case RBRACE:
-            case EOF:
-                break;
-            default:
-                error();
-        }
-
-        return node;
-    }
-
-
     /*
     ParDeclsEps -> .
     ParDeclsEps -> ParDecls .
@@ -206,39 +254,38 @@ public class SynAn extends Phase {
         return node;
     }
 
-    // ParDecls -> ParDecl ParDeclsRest .
-    private DerNode parseParDecls() {
-        DerNode node = new DerNode(DerNode.Nont.ParDecls);
-        switch (currSymb.token) {
-            case IDENTIFIER:
-                node.add(parseParDecl());
-                node.add(parseParDeclsRest());
-                break;
-            default:
-                error();
-        }
-
-        return node;
-    }
-
     /*
+    ParDecls -> ParDecl ParDeclsRest .
     ParDeclsRest -> .
     ParDeclsRest -> , ParDecls .
+    The chain of ParDeclsRest nodes is built in a loop rather than recursively.
      */
-    private DerNode parseParDeclsRest() {
-        DerNode node = new DerNode(DerNode.Nont.ParDeclsRest);
-        switch (currSymb.token) {
-            case RPARENTHESIS:
-                break;
-            case COMMA:
-                add(node);
-                node.add(parseParDecls());
-                break;
-            default:
-                error();
+    private DerNode parseParDecls() {
+        DerNode node = new DerNode(DerNode.Nont.ParDecls);
+        DerNode parDecls = node;
+        while (true) {
+            switch (currSymb.token) {
+                case IDENTIFIER:
+                    parDecls.add(parseParDecl());
+                    break;
+                default:
+                    error();
+            }
+            DerNode parDeclsRest = new DerNode(DerNode.Nont.ParDeclsRest);
+            parDecls.add(parDeclsRest);
+            switch (currSymb.token) {
+                case RPARENTHESIS:
+                    break;
+                case COMMA:
+                    add(parDeclsRest);
+                    parDecls = new DerNode(DerNode.Nont.ParDecls);
+                    parDeclsRest.add(parDecls);
+                    continue;
+                default:
+                    error();
+            }
+            return node;
         }
-
-        return node;
     }
 
     // ParDecl -> identifier : Type .
@@ -757,22 +804,27 @@ public class SynAn extends Phase {
     /*
     ArgsRest -> , Args ArgsRest .
     ArgsRest -> .
+    The chain of ArgsRest nodes is built in a loop rather than recursively.
      */
     private DerNode parseArgsRest() {
         DerNode node = new DerNode(DerNode.Nont.ArgsRest);
-        switch (currSymb.token) {
-            case RPARENTHESIS:
-                break;
-            case COMMA:
-                add(node);
-                node.add(parseArgs());
-                node.add(parseArgsRest());
-                break;
-            default:
-                error();
+        DerNode argsRest = node;
+        while (true) {
+            switch (currSymb.token) {
+                case RPARENTHESIS:
+                    break;
+                case COMMA:
+                    add(argsRest);
+                    argsRest.add(parseArgs());
+                    DerNode nextArgsRest = new DerNode(DerNode.Nont.ArgsRest);
+                    argsRest.add(nextArgsRest);
+                    argsRest = nextArgsRest;
+                    continue;
+                default:
+                    error();
+            }
+            return node;
         }
-
-        return node;
     }
 
     /*
@@ -913,32 +965,54 @@ public class SynAn extends Phase {
         return node;
     }
 
-    // Stmts -> Stmt StmtsRest .
+    /*
+    Stmts -> Stmt StmtsRest .
+    StmtsRest -> .
+    StmtsRest -> ; Stmts.
+    The chain of StmtsRest nodes is built in a loop rather than recursively.
+     */
     private DerNode parseStmts() {
         DerNode node = new DerNode(DerNode.Nont.Stmts);
-        switch (currSymb.token) {
-            case IDENTIFIER:
-            case LPARENTHESIS:
-            case ADD:
-            case SUB:
-            case DATA:
-            case ADDR:
-            case VOIDCONST:
-            case BOOLCONST:
-            case CHARCONST:
-            case INTCONST:
-            case PTRCONST:
-            case NEW:
-            case DEL:
-            case IF:
-            case WHILE:
-                node.add(parseStmt());
-                node.add(parseStmtsRest());
-                break;
-            default:
-                error();
+        DerNode stmts = node;
+        while (true) {
+            switch (currSymb.token) {
+                case IDENTIFIER:
+                case LPARENTHESIS:
+                case ADD:
+                case SUB:
+                case DATA:
+                case ADDR:
+                case VOIDCONST:
+                case BOOLCONST:
+                case CHARCONST:
+                case INTCONST:
+                case PTRCONST:
+                case NEW:
+                case DEL:
+                case IF:
+                case WHILE:
+                    stmts.add(parseStmt());
+                    break;
+                default:
+                    error();
+            }
+            DerNode stmtsRest = new DerNode(DerNode.Nont.StmtsRest);
+            stmts.add(stmtsRest);
+            switch (currSymb.token) {
+                case COLON:
+                case END:
+                case ELSE:
+                    break;
+                case SEMIC:
+                    add(stmtsRest);
+                    stmts = new DerNode(DerNode.Nont.Stmts);
+                    stmtsRest.add(stmts);
+                    continue;
+                default:
+                    error();
+            }
+            return node;
         }
-        return node;
     }
 
     /*
@@ -986,27 +1060,6 @@ public class SynAn extends Phase {
         return node;
     }
 
-    /*
-    StmtsRest -> .
-    StmtsRest -> ; Stmts.
-     */
-    private DerNode parseStmtsRest() {
-        DerNode node = new DerNode(DerNode.Nont.StmtsRest);
-        switch (currSymb.token) {
-            case COLON:
-            case END:
-            case ELSE:
-                break;
-            case SEMIC:
-                add(node);
-                node.add(parseStmts());
-                break;
-            default:
-                error();
-        }
-        return node;
-    }
-
     /*
     AssignEps -> .
     AssignEps -> = RelExpr .